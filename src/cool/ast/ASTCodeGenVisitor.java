@@ -9,208 +9,539 @@ import cool.ast.formal.Formal;
 import cool.ast.local.Local;
 import cool.ast.program.Program;
 import cool.ast.type.TypeId;
-import cool.compiler.Compiler;
+import cool.compiler.AssemblyEmitter;
+import cool.compiler.AssemblyEmitter.Section;
+import cool.compiler.CompilationSession;
+import cool.compiler.CompileProfiler;
+import cool.compiler.FragmentCache;
+import cool.compiler.LiteralPool;
+import cool.mips.Comment;
+import cool.mips.Fragment;
+import cool.mips.InstructionList;
+import cool.mips.Label;
+import cool.mips.Opcode;
+import cool.mips.SymbolPool;
 import cool.structures.*;
-import org.stringtemplate.v4.ST;
 import org.stringtemplate.v4.STGroupFile;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
+import static cool.mips.Register.*;
+
+/**
+ * Generates the code of a program. The basic classes come first, then
+ * each class is generated on its own, as a task on the common fork-join
+ * pool, by a visitor of its own, into a unit of code, already written as
+ * text, that is merged into the emitter once the classes before it are.
+ *
+ * What a sequential run would number across classes is numbered at merge
+ * time instead: each unit numbers its labels from 0, and is shifted past
+ * the labels of the units before it, and constants are interned in a
+ * shared {@link LiteralPool} and numbered as the units that use them are
+ * merged. The output is the same however the classes were scheduled.
+ *
+ * Units thus depend on nothing but their class, and, given a
+ * {@link FragmentCache}, are stored under the
+ * {@link ASTFingerprint fingerprint} of the class, and spliced into
+ * the output of later compilations as they are.
+ */
 public class ASTCodeGenVisitor implements ASTVisitor<ReturnPair> {
-    public static STGroupFile templates = new STGroupFile("cool/cgen.stg");
+    public static final STGroupFile templates = new STGroupFile("cool/cgen.stg");
     static int objectTag = 0;
     static int ioTag = 1;
     static int intTag = 2;
     static int stringTag = 3;
     static int boolTag = 4;
-    static int nextAvailableTag = 5;
-
-    static ST literalConsts; // literal constants
-    ST protObjs; // prototype objects
-    ST dispTabs; // tabele de metode
-    ST inits; // metode de initializare
-    ST methods; // implementarea metodelor din clase
-    ST classNames; // literalii string care au numele de clase
-    ST classObjects; // obiectele existente in program
-    static Map<Integer, String> intLiterals = new HashMap<>();
-    static Map<Boolean, String> boolLiterals = new HashMap<>();
-    static Map<String, String> stringLiterals = new HashMap<>();
-    public static Map<String, List<String>> classMethods = new HashMap<>();
-    public static Map<String, List<String>> classAttributes = new HashMap<>();
-    static int intLiteralCount = 0;
-    static int stringLiteralCount = 0;
-    static int dispatchCount = 0;
-    static ClassNode currentClass;
-
-    public static String generateIntLiteral(int value) {
-        if (!intLiterals.containsKey(value)) {
-            ST int_const = templates.getInstanceOf("intLiteral");
-            int_const.add("count", intLiteralCount++)
-                     .add("value", value);
-
-            literalConsts.add("e", int_const);
-            intLiterals.put(value, "int_const" + (intLiteralCount - 1));
+    static final int FIRST_CLASS_TAG = 5;
+
+    static {
+        // Load eagerly, so that concurrent sessions only ever read the group.
+        templates.load();
+    }
+
+    /**
+     * The code generated for a class, or for the basic classes, in the
+     * order it goes into the sections, with the constants it uses, in the
+     * order it used them. The code is written as text as soon as it is
+     * complete, but for its labels, so that the merge only copies it.
+     */
+    private static final class Unit {
+        final SymbolPool symbols;
+        final List<Section> sections = new ArrayList<>();
+        final List<Fragment> code = new ArrayList<>();
+        final List<LiteralPool.Constant> constants = new ArrayList<>();
+
+        Unit(SymbolPool symbols) {
+            this.symbols = symbols;
+        }
+
+        Unit() {
+            this(new SymbolPool());
         }
+    }
+
+    // Changes with the way units are written to the fragment cache.
+    private static final int UNIT_FORMAT = 1;
+    private static final byte INT_CONSTANT = 0;
+    private static final byte STRING_CONSTANT = 1;
+    private static final Section[] SECTIONS = Section.values();
+    // Classes spanning fewer tokens are generated faster than their code is
+    // read back from the fragment cache, so they are not cached.
+    private static final int MIN_CACHED_TOKENS = 128;
+
+    private final CompilationSession session;
+    private final LiteralPool literals;
+    private final Unit unit = new Unit();
+    private final int classTag;
+    ClassNode currentClass;
+
+    // Only for the visitor of the program, which merges the units.
+    private final AssemblyEmitter emitter;
+    private int mergedLabelCount = 0;
+
+    /**
+     * @param emitter receives the code, section by section, as the code of
+     *                each class is merged.
+     */
+    public ASTCodeGenVisitor(CompilationSession session, AssemblyEmitter emitter) {
+        this.session = session;
+        this.emitter = emitter;
+        this.literals = new LiteralPool();
+        this.classTag = -1;
+    }
+
+    /**
+     * Starts a visitor for a single class, with the given tag.
+     */
+    private ASTCodeGenVisitor(ASTCodeGenVisitor program, int classTag) {
+        this.session = program.session;
+        this.emitter = null;
+        this.literals = program.literals;
+        this.classTag = classTag;
+    }
 
-        return intLiterals.get(value);
+    private InstructionList code() {
+        return new InstructionList(unit.symbols);
     }
-    public static String generateBoolLiteral(boolean value) {
-        return boolLiterals.get(value);
+
+    private void emit(Section section, InstructionList code) {
+        unit.sections.add(section);
+        unit.code.add(AssemblyEmitter.render(code));
+    }
+
+    public Label generateIntLiteral(int value) {
+        var constant = literals.intern(value);
+        unit.constants.add(constant);
+
+        return constant;
+    }
+    public int getIntLiteralCount() {
+        return literals.getIntCount();
+    }
+
+    public int getStringLiteralCount() {
+        return literals.getStringCount();
+    }
+
+    public int getBoolLiteralCount() {
+        return 2;
     }
-    public static String generateStringLiteral(String value) {
-        if (!stringLiterals.containsKey(value)) {
-            ST str_const = templates.getInstanceOf("stringLiteral");
-            str_const.add("count", stringLiteralCount++)
-                     .add("size", 5 + (int) Math.ceil((float) value.length()) / 4)
-                     .add("length", generateIntLiteral(value.length()))
-                     .add("value", "\"" + value + "\"");
 
-            literalConsts.add("e", str_const);
-            stringLiterals.put(value, "str_const" + (stringLiteralCount - 1));
+    public String generateBoolLiteral(boolean value) {
+        return value ? "bool_const1" : "bool_const0";
+    }
+    public Label generateStringLiteral(String value) {
+        var constant = literals.intern(value);
+        unit.constants.add(constant);
+
+        return constant;
+    }
+
+    private static void writeConstant(Label label, DataOutput out) throws IOException {
+        if (label instanceof LiteralPool.IntConstant constant) {
+            out.writeByte(INT_CONSTANT);
+            out.writeInt(constant.getValue());
+        } else if (label instanceof LiteralPool.StringConstant constant) {
+            out.writeByte(STRING_CONSTANT);
+            SymbolPool.writeString(out, constant.getValue());
+        } else {
+            throw new IOException("Label " + label + " cannot be cached");
         }
+    }
 
-        return stringLiterals.get(value);
+    private LiteralPool.Constant readConstant(ByteBuffer in) throws IOException {
+        return switch (in.get()) {
+            case INT_CONSTANT -> literals.intern(in.getInt());
+            case STRING_CONSTANT -> literals.intern(SymbolPool.readString(in));
+            default -> throw new IOException("Malformed constant");
+        };
     }
-    public void generateProtObject(ClassNode classNode) {
-        ST protObj = templates.getInstanceOf("protObj");
-        ST attributes = templates.getInstanceOf("sequence");
 
-        classNode.getClassSymbolWrapper().getClassSymbol().generateAttributes(attributes, classNode.getClassName().getToken().getText());
+    /**
+     * @return {@code unit} as {@link #readUnit} reads it, or null if it
+     *         cannot be written.
+     */
+    private static byte[] writeUnit(Unit unit) {
+        var bytes = new ByteArrayOutputStream();
+
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeInt(UNIT_FORMAT);
+            unit.symbols.writeTo(out, ASTCodeGenVisitor::writeConstant);
+
+            out.writeInt(unit.constants.size());
+            for (var constant : unit.constants)
+                writeConstant(constant, out);
+
+            out.writeInt(unit.code.size());
+            for (int i = 0; i < unit.code.size(); i++) {
+                out.writeByte(unit.sections.get(i).ordinal());
+                unit.code.get(i).writeTo(out);
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a unit written by {@link #writeUnit}, interning its constants
+     * in this compilation's literals.
+     *
+     * @return null if {@code bytes} do not hold a unit.
+     */
+    private Unit readUnit(byte[] bytes) {
+        var in = ByteBuffer.wrap(bytes);
+
+        try {
+            if (in.getInt() != UNIT_FORMAT)
+                return null;
+
+            var read = new Unit(SymbolPool.readFrom(in, this::readConstant));
+
+            int constantCount = in.getInt();
+            for (int i = 0; i < constantCount; i++)
+                read.constants.add(readConstant(in));
+
+            int fragmentCount = in.getInt();
+            for (int i = 0; i < fragmentCount; i++) {
+                int section = Byte.toUnsignedInt(in.get());
+                if (section >= SECTIONS.length)
+                    return null;
+
+                read.sections.add(SECTIONS[section]);
+                read.code.add(Fragment.readFrom(in, read.symbols));
+            }
+
+            return in.hasRemaining() ? null : read;
+        } catch (IOException | BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Generates the code of {@code classNode} into this visitor's unit, or
+     * takes it from the fragment cache, if the session has one and the
+     * class is large enough for that to be faster.
+     */
+    private Unit generate(ClassNode classNode) {
+        FragmentCache cache = session.getFragmentCache();
+        if (cache == null) {
+            classNode.accept(this);
+            return unit;
+        }
+
+        if (classNode.getTokenCount() < MIN_CACHED_TOKENS) {
+            classNode.accept(this);
+            session.getProfiler().count("generated classes", 1);
+            return unit;
+        }
+
+        String fileName = session.getFileName(classNode.getFileId());
+        String key = new ASTFingerprint(classTag, fileName.substring(fileName.lastIndexOf("/") + 1))
+                .fingerprint(classNode);
+
+        byte[] cached = cache.get(key);
+        if (cached != null) {
+            var cachedUnit = readUnit(cached);
+            if (cachedUnit != null) {
+                session.getProfiler().count("cached classes", 1);
+                return cachedUnit;
+            }
+        }
+
+        classNode.accept(this);
+        session.getProfiler().count("generated classes", 1);
 
-        protObj.add("className", classNode.getClassName().getToken().getText())
-                .add("classId", nextAvailableTag++)
-                .add("classDim", classNode.getClassSymbolWrapper().getClassSymbol().numberOfAttributes() + 3)
-                .add("attribs", attributes);
+        byte[] bytes = writeUnit(unit);
+        if (bytes != null)
+            cache.put(key, bytes);
 
-        protObjs.add("e", protObj);
+        return unit;
+    }
 
-        String classLiteralName = generateStringLiteral(classNode.getClassName().getToken().getText());
+    /**
+     * Numbers the constants {@code unit} uses that no unit merged before
+     * it did, adding them to the literal constants, then moves its labels
+     * past those of the units before it and adds its code.
+     */
+    private void merge(Unit unit) {
+        for (var constant : unit.constants)
+            define(constant);
 
-        classNames.add("e", templates.getInstanceOf("attrib")
-                .add("initVal", classLiteralName));
+        unit.symbols.setLabelBase(mergedLabelCount);
+        mergedLabelCount += unit.symbols.getLabelCount();
 
-        classObjects.add("e", templates.getInstanceOf("attrib")
-                .add("initVal", classNode.getClassName().getToken().getText() + "_protObj"));
+        for (int i = 0; i < unit.code.size(); i++)
+            emitter.add(unit.sections.get(i), unit.code.get(i));
+    }
+
+    private void define(LiteralPool.Constant constant) {
+        if (!literals.number(constant))
+            return;
+
+        if (constant instanceof LiteralPool.IntConstant intConstant) {
+            emitter.add(Section.LITERAL_CONSTS, new InstructionList()
+                    .label(constant)
+                    .emit(Opcode.WORD, intTag)
+                    .emit(Opcode.WORD, 4)
+                    .emit(Opcode.WORD_SYMBOL, "Int_dispTab")
+                    .emit(Opcode.WORD, intConstant.getValue()));
+            return;
+        }
+
+        String value = ((LiteralPool.StringConstant) constant).getValue();
+        var length = literals.intern(value.length());
+        define(length);
+
+        emitter.add(Section.LITERAL_CONSTS, new InstructionList()
+                .label(constant)
+                .emit(Opcode.WORD, stringTag)
+                .emit(Opcode.WORD, 5 + (int) Math.ceil((float) value.length()) / 4)
+                .emit(Opcode.WORD_SYMBOL, "String_dispTab")
+                .emit(Opcode.WORD_SYMBOL, length)
+                .emit(Opcode.ASCIIZ, "\"" + value + "\"")
+                .emit(Opcode.ALIGN, 2));
+    }
+
+    /**
+     * @return a prototype object, up to its attributes.
+     */
+    private InstructionList protObjHeader(String className, int classId, int classDim) {
+        return code()
+                .label(className + "_protObj")
+                .emit(Opcode.WORD, classId)
+                .emit(Opcode.WORD, classDim)
+                .emit(Opcode.WORD_SYMBOL, className + "_dispTab");
+    }
+
+    public void generateProtObject(ClassNode classNode) {
+        var classSymbol = classNode.getClassSymbolWrapper().getClassSymbol();
+        var protObj = protObjHeader(classNode.getClassName().getName(), classTag,
+                classSymbol.getLayout().size());
+
+        classSymbol.generateAttributes(protObj, this);
+
+        emit(Section.PROT_OBJS, protObj.blank());
+
+        Label classLiteralName = generateStringLiteral(classNode.getClassName().getName());
+
+        emit(Section.CLASS_NAMES, code().emit(Opcode.WORD_SYMBOL, classLiteralName));
+
+        emit(Section.CLASS_OBJECTS, code()
+                .emit(Opcode.WORD_SYMBOL, classNode.getClassName().getName() + "_protObj"));
     }
     public void generateDispatchTables(ClassNode classNode) {
-        ST dispTab = templates.getInstanceOf("dispatchTable");
-        ST methods = templates.getInstanceOf("sequence");
+        var dispTab = code().label(classNode.getClassName().getName() + "_dispTab");
+
+        classNode.getClassSymbolWrapper().getClassSymbol().generateDispatchTable(dispTab);
+
+        emit(Section.DISP_TABS, dispTab.blank());
+    }
+
+    /**
+     * Saves the caller's registers and sets up the frame of a method or
+     * init routine, with {@code self} in {@code $s0}.
+     */
+    private static void prologue(InstructionList code) {
+        code.emit(Opcode.ADDIU, SP, SP, -12)
+            .emit(Opcode.SW, FP, 12, SP)
+            .emit(Opcode.SW, S0, 8, SP)
+            .emit(Opcode.SW, RA, 4, SP)
+            .emit(Opcode.ADDIU, FP, SP, 4)
+            .emit(Opcode.MOVE, S0, A0);
+    }
+
+    /**
+     * Restores the caller's registers, but does not return.
+     */
+    private static void epilogue(InstructionList code) {
+        code.emit(Opcode.LW, FP, 12, SP)
+            .emit(Opcode.LW, S0, 8, SP)
+            .emit(Opcode.LW, RA, 4, SP)
+            .emit(Opcode.ADDIU, SP, SP, 12);
+    }
 
-        classNode.getClassSymbolWrapper().getClassSymbol().generateDispatchTable(methods, classNode.getClassName().getToken().getText());
+    /**
+     * Pushes {@code $a0} on the stack.
+     */
+    private static void push(InstructionList code) {
+        code.emit(Opcode.SW, A0, 0, SP)
+            .emit(Opcode.ADDIU, SP, SP, -4);
+    }
 
-        dispTab.add("className", classNode.getClassName().getToken().getText())
-               .add("methods", methods);
+    /**
+     * Pops the top of the stack into {@code $t1}.
+     */
+    private static void pop(InstructionList code) {
+        code.emit(Opcode.LW, T1, 4, SP)
+            .emit(Opcode.ADDIU, SP, SP, 4);
+    }
+
+    /**
+     * Jumps to {@code label} if {@code $a0} is not void, and calls
+     * {@code abort} with the file and line otherwise.
+     */
+    private static void checkNotVoid(InstructionList code, Label label, Label fileName, int fileLine,
+                                     String abort) {
+        code.emit(Opcode.BNEZ, A0, label)
+            .emit(Opcode.LA, A0, fileName)
+            .emit(Opcode.LI, T1, fileLine)
+            .emit(Opcode.JAL, abort)
+            .label(label);
+    }
 
-        dispTabs.add("e", dispTab);
+    /**
+     * Appends {@code element} to a sequence of code, preceded by the empty
+     * line it may carry unless it is the {@code first} element.
+     */
+    private static void appendElement(InstructionList sequence, ReturnPair element, boolean first) {
+        if (!first && element.hasLeadingBlank())
+            sequence.blank();
+        sequence.append(element.getCode());
     }
+
     public void generateInits(ClassNode classNode) {
-        ST init = templates.getInstanceOf("init");
-        ST body = templates.getInstanceOf("sequenceSpaced");
+        var classSymbol = classNode.getClassSymbolWrapper().getClassSymbol();
+        var init = code().label(classSymbol.getName() + "_init");
 
-        classNode.getClassSymbolWrapper().getClassSymbol().generateInitMethods(init, body);
+        prologue(init);
+        init.emit(Opcode.JAL, ((ClassSymbol) classSymbol.getDirectParent()).getName() + "_init");
 
-        classNode.getFeatures().forEach(feature -> {
+        boolean first = true;
+        for (var feature : classNode.getFeatures()) {
             if (feature instanceof Field field) {
                 if (field.getInitialExpr() != null) {
-                    ST fieldInit = templates.getInstanceOf("attrInit");
-                    fieldInit.add("initExpr", field.getInitialExpr().accept(this).getSt());
-                    fieldInit.add("offset", classAttributes.get(classNode.getClassName().getToken().getText()).indexOf(field.getFieldId().getToken().getText()) * 4 + 12);
+                    if (!first)
+                        init.blank();
 
-                    body.add("e", fieldInit);
+                    appendElement(init, field.getInitialExpr().accept(this), first);
+                    init.emit(Opcode.SW, A0, ObjectLayout.offset(field.getFieldSymbol().getSlot()), S0);
+                    first = false;
                 }
             }
-        });
+        }
 
-        init.add("attrInit", body);
+        init.emit(Opcode.MOVE, A0, S0);
+        epilogue(init);
+        init.emit(Opcode.JR, RA);
 
-        inits.add("e", init);
+        emit(Section.INITS, init);
 
-        classObjects.add("e", templates.getInstanceOf("attrib")
-                .add("initVal", classNode.getClassName().getToken().getText() + "_init"));
+        emit(Section.CLASS_OBJECTS, code()
+                .emit(Opcode.WORD_SYMBOL, classNode.getClassName().getName() + "_init"));
     }
+    /**
+     * @return the offset from {@code $fp} of the formal in the given slot,
+     *         past the saved registers.
+     */
+    private static int formalOffset(int slot) {
+        return slot * 4 + 12;
+    }
+
+    /**
+     * @return the offset from {@code $fp} of the let variable in the given
+     *         slot.
+     */
+    private static int letOffset(int slot) {
+        return slot * (-4) - 4;
+    }
+
+    /**
+     * Adds to {@code code} a load or store of {@code $a0} where the
+     * variable bound by {@code binding} is kept: attributes in the object,
+     * formals above the frame pointer, let variables below it.
+     *
+     * @return false if the variable has no location of its own.
+     */
+    private static boolean access(InstructionList code, Opcode opcode, Binding binding) {
+        switch (binding.getKind()) {
+            case ATTRIBUTE -> code.emit(opcode, A0, ObjectLayout.offset(binding.getSlot()), S0);
+            case FORMAL -> code.emit(opcode, A0, formalOffset(binding.getSlot()), FP);
+            case LET -> code.emit(opcode, A0, letOffset(binding.getSlot()), FP);
+            default -> {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the offset of a method in the dispatch table of the given
+     *         class.
+     */
+    static int methodOffset(ClassSymbol classSymbol, int nameId) {
+        return classSymbol.getMethodTable().slot(nameId) * 4;
+    }
+
     public void generateNullLiterals() {
         generateIntLiteral(0);
         generateStringLiteral("");
-
-        boolLiterals.put(false, "bool_const0");
-        boolLiterals.put(true, "bool_const1");
     }
     public void generateObjectBasicCode() {
-        ST protObjObj = templates.getInstanceOf("protObj");
-        protObjObj.add("className", "Object")
-                .add("classId", objectTag)
-                .add("classDim", 3);
-
-        protObjs.add("e", protObjObj);
+        emit(Section.PROT_OBJS, protObjHeader("Object", objectTag, 3).blank());
 
         generateStringLiteral("Object");
-
-        ArrayList<String> objMethods = new ArrayList<>(Arrays.asList("abort", "type_name", "copy"));
-        classMethods.put("Object", objMethods);
     }
     public void generateIOBasicCode() {
-        ST protObjIO = templates.getInstanceOf("protObj");
-        protObjIO.add("className", "IO")
-                .add("classId", ioTag)
-                .add("classDim", 3);
-
-        protObjs.add("e", protObjIO);
+        emit(Section.PROT_OBJS, protObjHeader("IO", ioTag, 3).blank());
 
         generateStringLiteral("IO");
-
-        ArrayList<String> ioMethods = new ArrayList<>(Arrays.asList("abort", "type_name", "copy", "out_string", "out_int", "in_string", "in_int"));
-        classMethods.put("IO", ioMethods);
     }
     public void generateIntBasicCode() {
-        ST protObjInt = templates.getInstanceOf("protObj");
-        protObjInt.add("className", "Int")
-                .add("classId", intTag)
-                .add("classDim", 4)
-                .add("attribs", templates.getInstanceOf("sequence")
-                        .add("e", templates.getInstanceOf("attrib")
-                                .add("initVal", "0")));
-
-        protObjs.add("e", protObjInt);
+        emit(Section.PROT_OBJS, protObjHeader("Int", intTag, 4)
+                .emit(Opcode.WORD, 0)
+                .blank());
 
         generateStringLiteral("Int");
-
-        ArrayList<String> intMethods = new ArrayList<>(Arrays.asList("abort", "type_name", "copy"));
-        classMethods.put("Int", intMethods);
     }
     public void generateStringBasicCode() {
-        ST protObjString = templates.getInstanceOf("protObj");
-        protObjString.add("className", "String")
-                .add("classId", stringTag)
-                .add("classDim", 5)
-                .add("attribs", templates.getInstanceOf("attribString")
-                        .add("initVal", "\"\"")
-                        .add("length", generateIntLiteral(0)));
-
-        protObjs.add("e", protObjString);
+        emit(Section.PROT_OBJS, protObjHeader("String", stringTag, 5)
+                .emit(Opcode.WORD_SYMBOL, generateIntLiteral(0))
+                .emit(Opcode.ASCIIZ, "\"\"")
+                .emit(Opcode.ALIGN, 2)
+                .blank());
 
         generateStringLiteral("String");
-
-        ArrayList<String> stringMethods = new ArrayList<>(Arrays.asList("abort", "type_name", "copy", "length", "concat", "substr"));
-        classMethods.put("String", stringMethods);
     }
     public void generateBoolBasicCode() {
-        ST protObjBool = templates.getInstanceOf("protObj");
-        protObjBool.add("className", "Bool")
-                .add("classId", boolTag)
-                .add("classDim", 4)
-                .add("attribs", templates.getInstanceOf("sequence")
-                        .add("e", templates.getInstanceOf("attrib")
-                                .add("initVal", "0")));
-
-        protObjs.add("e", protObjBool);
+        emit(Section.PROT_OBJS, protObjHeader("Bool", boolTag, 4)
+                .emit(Opcode.WORD, 0)
+                .blank());
 
         generateStringLiteral("Bool");
-
-        ArrayList<String> boolMethods = new ArrayList<>(Arrays.asList("abort", "type_name", "copy"));
-        classMethods.put("Bool", boolMethods);
     }
     public void generateBasicCode() {
         generateNullLiterals();
@@ -223,18 +554,26 @@ public class ASTCodeGenVisitor implements ASTVisitor<ReturnPair> {
 
     }
 
-    public ST loadMethodParameters(ArrayList<Expression> params) {
-        ST paramST = templates.getInstanceOf("sequence");
+    /**
+     * @return the code pushing the parameters, last to first; it starts
+     *         with an empty line if there are none.
+     */
+    public ReturnPair loadMethodParameters(ArrayList<Expression> params) {
+        InstructionList paramCode = code();
+        boolean leadingBlank = true;
 
         ArrayList<Expression> copyParams = new ArrayList<>(params);
         Collections.reverse(copyParams);
-        copyParams.forEach(param -> {
-            ST loadParamST = templates.getInstanceOf("loadParam");
-            loadParamST.add("expr", param.accept(this).getSt());
-            paramST.add("e", loadParamST);
-        });
+        for (int i = 0; i < copyParams.size(); i++) {
+            ReturnPair param = copyParams.get(i).accept(this);
+            if (i == 0)
+                leadingBlank = param.hasLeadingBlank();
 
-        return paramST;
+            appendElement(paramCode, param, i == 0);
+            push(paramCode);
+        }
+
+        return new ReturnPair(paramCode, null, leadingBlank);
     }
 
     @Override
@@ -244,6 +583,8 @@ public class ASTCodeGenVisitor implements ASTVisitor<ReturnPair> {
 
     @Override
     public ReturnPair visit(ClassNode classNode) {
+        currentClass = classNode;
+
         generateProtObject(classNode);
         generateDispatchTables(classNode);
         generateInits(classNode);
@@ -258,275 +599,275 @@ public class ASTCodeGenVisitor implements ASTVisitor<ReturnPair> {
 
     @Override
     public ReturnPair visit(Arithmetic arithmetic) {
-        ST arithmeticST = templates.getInstanceOf("arithmeticExpr");
+        InstructionList arithmeticCode = code();
 
-        ST leftST = arithmetic.getLeft().accept(this).getSt();
-        ST rightST = arithmetic.getRight().accept(this).getSt();
+        ReturnPair left = arithmetic.getLeft().accept(this);
+        InstructionList rightCode = arithmetic.getRight().accept(this).getCode();
 
-        arithmeticST.add("leftExpr", leftST);
-        arithmeticST.add("rightExpr", rightST);
+        Opcode op = null;
         switch (arithmetic.getOp().getText()) {
             case "+":
-                arithmeticST.add("op", "add");
+                op = Opcode.ADD;
                 break;
             case "-":
-                arithmeticST.add("op", "sub");
+                op = Opcode.SUB;
                 break;
             case "*":
-                arithmeticST.add("op", "mul");
+                op = Opcode.MUL;
                 break;
             case "/":
-                arithmeticST.add("op", "div");
+                op = Opcode.DIV;
                 break;
         }
 
-        return new ReturnPair(arithmeticST, arithmetic.getComputedReturnType());
+        arithmeticCode.append(left.getCode());
+        push(arithmeticCode);
+        arithmeticCode.append(rightCode)
+                .emit(Opcode.JAL, "Object.copy");
+        pop(arithmeticCode);
+        arithmeticCode.emit(Opcode.LW, T1, 12, T1).comment(Comment.INT_SLOT)
+                .emit(Opcode.LW, T2, 12, A0).comment(Comment.INT_SLOT)
+                .emit(op, T1, T1, T2)
+                .emit(Opcode.SW, T1, 12, A0).comment(Comment.INT_SLOT);
+
+        return new ReturnPair(arithmeticCode, arithmetic.getComputedReturnType(), left.hasLeadingBlank());
     }
 
     @Override
     public ReturnPair visit(Assign assign) {
-        ST assignST = templates.getInstanceOf("assignExpr");
-
-        ST exprST = assign.getExpr().accept(this).getSt();
-        if (assign.getObjectId().getObjectIdSymbol().getIntroducingScope() instanceof ClassSymbol classSymbol) {
-            assignST.add("offset", classAttributes.get(classSymbol.getName()).indexOf(assign.getObjectId().getToken().getText()) * 4 + 12);
-            assignST.add("basePointer", "$s0");
-            assignST.add("expr", exprST);
-
-            return new ReturnPair(assignST, assign.getComputedReturnType());
-        } else if (assign.getObjectId().getObjectIdSymbol().getIntroducingScope() instanceof MethodSymbol methodSymbol) {
-            assignST.add("offset", methodSymbol.getMethod()
-                    .getFormals().stream().map(f -> f.getObjectId().getToken().getText())
-                    .toList().indexOf(assign.getObjectId().getToken().getText()) * 4 + 12);
-            assignST.add("basePointer", "$fp");
-            assignST.add("expr", exprST);
-
-            return new ReturnPair(assignST, assign.getComputedReturnType());
-        } else if (assign.getObjectId().getObjectIdSymbol().getIntroducingScope() instanceof LocalSymbol localSymbol) {
-            int count = 0;
-            LocalSymbol copy = localSymbol;
-
-            while (copy.getParent() instanceof LocalSymbol) {
-                count++;
-                copy = (LocalSymbol) copy.getParent();
-            }
-
-            assignST.add("offset", count * (-4) - 4);
-            assignST.add("basePointer", "$fp");
-            assignST.add("expr", exprST);
+        InstructionList assignCode = code();
 
-            return new ReturnPair(assignST, assign.getComputedReturnType());
-        }
+        ReturnPair expr = assign.getExpr().accept(this);
+        assignCode.append(expr.getCode());
+        if (access(assignCode, Opcode.SW, assign.getObjectId().getBinding()))
+            return new ReturnPair(assignCode, assign.getComputedReturnType(), expr.hasLeadingBlank());
 
         return null;
     }
 
     @Override
     public ReturnPair visit(Block block) {
-        ST blockST = templates.getInstanceOf("sequence");
-        block.getExpressions().forEach(expr -> blockST.add("e", expr.accept(this).getSt()));
+        InstructionList blockCode = code();
+        boolean leadingBlank = false;
+
+        for (int i = 0; i < block.getExpressions().size(); i++) {
+            ReturnPair expr = block.getExpressions().get(i).accept(this);
+            if (i == 0)
+                leadingBlank = expr.hasLeadingBlank();
 
-        return new ReturnPair(blockST, block.getComputedReturnType());
+            appendElement(blockCode, expr, i == 0);
+        }
+
+        return new ReturnPair(blockCode, block.getComputedReturnType(), leadingBlank);
     }
 
     @Override
     public ReturnPair visit(Bool bool) {
-        ST boolSt = templates.getInstanceOf("loadLiteral");
-
-        boolSt.add("value", generateBoolLiteral(Boolean.parseBoolean(bool.getToken().getText())));
+        InstructionList boolCode = code()
+                .emit(Opcode.LA, A0, generateBoolLiteral(Boolean.parseBoolean(bool.getToken().getText())));
 
-        return new ReturnPair(boolSt, bool.getComputedReturnType());
+        return new ReturnPair(boolCode, bool.getComputedReturnType());
     }
 
     @Override
     public ReturnPair visit(Case caseExpr) {
-        ST caseST = templates.getInstanceOf("case");
+        InstructionList caseCode = code()
+                .emit(Opcode.ADDIU, SP, SP, -4).comment(Comment.CASE_LOCALS_ALLOC);
 
-        caseST.add("expr", caseExpr.getCaseExpr().accept(this).getSt());
-        caseST.add("caseLabel", "case" + dispatchCount++);
+        caseCode.append(caseExpr.getCaseExpr().accept(this).getCode());
+        Label caseLabel = unit.symbols.newLabel("case");
 
-        String fileName = Compiler.fileNames.get(currentClass.getParserRuleContext());
-        caseST.add("fileName", generateStringLiteral(fileName.substring(fileName.lastIndexOf("/") + 1)));
-        caseST.add("fileLine", caseExpr.getToken().getLine());
+        String fileName = session.getFileName(currentClass.getFileId());
+        checkNotVoid(caseCode, caseLabel, generateStringLiteral(fileName.substring(fileName.lastIndexOf("/") + 1)),
+                caseExpr.getToken().getLine(), "_case_abort2");
 
-        return new ReturnPair(caseST, caseExpr.getComputedReturnType());
+        return new ReturnPair(caseCode, caseExpr.getComputedReturnType());
     }
 
     @Override
     public ReturnPair visit(ExplicitCall explicitCall) {
-        ST callST = templates.getInstanceOf("explicitCall");
+        InstructionList callCode = code();
 
-        String fileName = Compiler.fileNames.get(currentClass.getParserRuleContext());
+        String fileName = session.getFileName(currentClass.getFileId());
         ReturnPair dispExpr = explicitCall.getDispatchExpr().accept(this);
 
-        callST.add("params", loadMethodParameters(explicitCall.getParams()));
-        callST.add("dispExpr", dispExpr.getSt());
-        callST.add("fileName", generateStringLiteral(fileName.substring(fileName.lastIndexOf("/") + 1)));
-        callST.add("fileLine", explicitCall.getToken().getLine());
-        callST.add("methodOffset", classMethods.get(dispExpr.getType().getClassSymbol().getName()).indexOf(explicitCall.getMethodId().getToken().getText()) * 4);
-        callST.add("dispCount", dispatchCount);
+        ReturnPair params = loadMethodParameters(explicitCall.getParams());
+        callCode.append(params.getCode())
+                .append(dispExpr.getCode());
+        Label dispatchLabel = unit.symbols.newLabel("dispatch");
+        checkNotVoid(callCode, dispatchLabel,
+                generateStringLiteral(fileName.substring(fileName.lastIndexOf("/") + 1)),
+                explicitCall.getToken().getLine(), "_dispatch_abort");
 
-        if (explicitCall.getClassType() == null) {
-            callST.add("dispTable", "lw $t1 8($a0)");
-        } else {
-            callST.add("dispTable", "la $t1 " + explicitCall.getClassType().getToken().getText() + "_dispTab");
-        }
+        if (explicitCall.getClassType() == null)
+            callCode.emit(Opcode.LW, T1, 8, A0);
+        else
+            callCode.emit(Opcode.LA, T1, explicitCall.getClassType().getName() + "_dispTab");
+        callCode.style(InstructionList.Style.BARE).comment(Comment.DISPATCH_TABLE);
 
-        dispatchCount++;
+        callCode.emit(Opcode.LW, T1, methodOffset(dispExpr.getType().getClassSymbol(),
+                        explicitCall.getMethodId().getNameId()), T1).comment(Comment.METHOD_OFFSET)
+                .emit(Opcode.JALR, T1);
 
-        return new ReturnPair(callST, explicitCall.getComputedReturnType());
+        return new ReturnPair(callCode, explicitCall.getComputedReturnType(), params.hasLeadingBlank());
     }
 
     @Override
     public ReturnPair visit(If ifExpr) {
-        ST condExpr = ifExpr.getCond().accept(this).getSt();
-        ST thenExpr = ifExpr.getThenBranch().accept(this).getSt();
-        ST elseExpr = ifExpr.getElseBranch().accept(this).getSt();
-
-        ST ifST = templates.getInstanceOf("if");
-
-        ifST.add("condExpr", condExpr);
-        ifST.add("trueExpr", thenExpr);
-        ifST.add("elseExpr", elseExpr);
-        ifST.add("elseLabel", "else" + dispatchCount++);
-        ifST.add("endifLabel", "endif" + dispatchCount++);
-
-        return new ReturnPair(ifST, ifExpr.getComputedReturnType());
+        ReturnPair condExpr = ifExpr.getCond().accept(this);
+        InstructionList thenExpr = ifExpr.getThenBranch().accept(this).getCode();
+        InstructionList elseExpr = ifExpr.getElseBranch().accept(this).getCode();
+
+        Label elseLabel = unit.symbols.newLabel("else");
+        Label endifLabel = unit.symbols.newLabel("endif");
+
+        InstructionList ifCode = code()
+                .append(condExpr.getCode())
+                .emit(Opcode.LW, T1, 12, A0).comment(Comment.BOOL_SLOT)
+                .emit(Opcode.BEQZ, T1, elseLabel)
+                .append(thenExpr)
+                .emit(Opcode.B, endifLabel)
+                .label(elseLabel)
+                .append(elseExpr)
+                .label(endifLabel);
+
+        return new ReturnPair(ifCode, ifExpr.getComputedReturnType(), condExpr.hasLeadingBlank());
     }
 
     @Override
     public ReturnPair visit(ImplicitCall implicitCall) {
-        ST callST = templates.getInstanceOf("implicitCall");
-
-        String fileName = Compiler.fileNames.get(currentClass.getParserRuleContext());
-
-        callST.add("params", loadMethodParameters(implicitCall.getParams()));
-        callST.add("fileName", generateStringLiteral(fileName.substring(fileName.lastIndexOf("/") + 1)));
-        callST.add("fileLine", implicitCall.getToken().getLine());
-        callST.add("methodOffset", classMethods.get(currentClass.getClassName().getToken().getText()).indexOf(implicitCall.getMethodId().getToken().getText()) * 4);
-        callST.add("dispCount", dispatchCount);
-        dispatchCount++;
-
-        return new ReturnPair(callST, implicitCall.getComputedReturnType());
+        InstructionList callCode = code();
+
+        String fileName = session.getFileName(currentClass.getFileId());
+
+        ReturnPair params = loadMethodParameters(implicitCall.getParams());
+        callCode.append(params.getCode())
+                .emit(Opcode.MOVE, A0, S0);
+        checkNotVoid(callCode, unit.symbols.newLabel("dispatch"),
+                generateStringLiteral(fileName.substring(fileName.lastIndexOf("/") + 1)),
+                implicitCall.getToken().getLine(), "_dispatch_abort");
+        callCode.emit(Opcode.LW, T1, 8, A0).comment(Comment.DISPATCH_TABLE)
+                .emit(Opcode.LW, T1, methodOffset(currentClass.getClassSymbolWrapper().getClassSymbol(),
+                        implicitCall.getMethodId().getNameId()), T1).comment(Comment.METHOD_OFFSET)
+                .emit(Opcode.JALR, T1);
+
+        return new ReturnPair(callCode, implicitCall.getComputedReturnType(), params.hasLeadingBlank());
     }
 
     @Override
     public ReturnPair visit(Int intExpr) {
-        ST intST = templates.getInstanceOf("loadLiteral");
+        InstructionList intCode = code()
+                .emit(Opcode.LA, A0, generateIntLiteral(Integer.parseInt(intExpr.getToken().getText())));
 
-        intST.add("value", generateIntLiteral(Integer.parseInt(intExpr.getToken().getText())));
-
-        return new ReturnPair(intST, intExpr.getComputedReturnType());
+        return new ReturnPair(intCode, intExpr.getComputedReturnType());
     }
 
     @Override
     public ReturnPair visit(Let let) {
-        ST letST = templates.getInstanceOf("let");
+        int nrLocals = let.getLocals().size() * 4;
+        InstructionList letCode = code()
+                .emit(Opcode.ADDIU, SP, SP, -nrLocals).comment(Comment.LOCALS_ALLOC);
 
-        letST.add("nrLocals", let.getLocals().size() * 4);
+        for (int slot = 0; slot < let.getLocals().size(); slot++) {
+            Local local = let.getLocals().get(slot);
 
-        ST locals = templates.getInstanceOf("sequence");
-        let.getLocals().forEach(local -> {
             if (local.getAssignExpr() != null) {
-                locals.add("e", local.getAssignExpr().accept(this).getSt());
+                appendElement(letCode, local.getAssignExpr().accept(this), slot == 0);
             } else {
-                ST literalLocal = templates.getInstanceOf("loadLiteral");
-
-                switch (local.getTypeId().getToken().getText()) {
-                    case "Int" -> literalLocal.add("value", generateIntLiteral(0));
-                    case "Bool" -> literalLocal.add("value", generateBoolLiteral(false));
-                    case "String" -> literalLocal.add("value", generateStringLiteral(""));
-                    default -> literalLocal.add("value", "0");
+                switch (local.getTypeId().getNameId()) {
+                    case Names.INT -> letCode.emit(Opcode.LA, A0, generateIntLiteral(0));
+                    case Names.BOOL -> letCode.emit(Opcode.LA, A0, generateBoolLiteral(false));
+                    case Names.STRING -> letCode.emit(Opcode.LA, A0, generateStringLiteral(""));
+                    default -> letCode.emit(Opcode.LA, A0, "0");
                 }
-
-                locals.add("e", literalLocal);
             }
 
-            ST assignST = templates.getInstanceOf("assignExpr");
-            assignST.add("offset", (let.getLocals().indexOf(local) + 1) * (-4));
-            assignST.add("basePointer", "$fp");
-
-            locals.add("e", assignST);
-        });
+            // The store follows the value as an element of its own.
+            letCode.blank()
+                   .emit(Opcode.SW, A0, letOffset(slot), FP);
+        }
 
-        letST.add("body", let.getLetExpr().accept(this).getSt());
-        letST.add("inits", locals);
+        letCode.append(let.getLetExpr().accept(this).getCode())
+               .emit(Opcode.ADDIU, SP, SP, nrLocals).comment(Comment.LOCALS_FREE);
 
-        return new ReturnPair(letST, let.getComputedReturnType());
+        return new ReturnPair(letCode, let.getComputedReturnType());
     }
 
     @Override
     public ReturnPair visit(New newExpr) {
-        if (newExpr.getTypeId().getToken().getText().equals("SELF_TYPE")) {
-            ST newSelfTypeST = templates.getInstanceOf("newSelfType");
-
-            return new ReturnPair(newSelfTypeST, newExpr.getComputedReturnType());
+        if (newExpr.getTypeId().getNameId() == Names.SELF_TYPE) {
+            InstructionList newSelfTypeCode = code()
+                    .emit(Opcode.LA, T1, "class_objTab")
+                    .emit(Opcode.LW, T2, 0, S0).comment(Comment.CLASS_TAG)
+                    .emit(Opcode.SLL, T2, T2, 3).comment(Comment.TIMES_8)
+                    .emit(Opcode.ADDU, T1, T1, T2).comment(Comment.CLASS_OBJ_ENTRY)
+                    .emit(Opcode.SW, T1, 0, SP)
+                    .emit(Opcode.ADDIU, SP, SP, -4)
+                    .emit(Opcode.LW, A0, 0, T1).comment(Comment.PROT_OBJ)
+                    .emit(Opcode.JAL, "Object.copy")
+                    .emit(Opcode.LW, T1, 4, SP)
+                    .emit(Opcode.ADDIU, SP, SP, 4)
+                    .emit(Opcode.LW, T1, 4, T1).comment(Comment.INIT)
+                    .emit(Opcode.JALR, T1);
+
+            return new ReturnPair(newSelfTypeCode, newExpr.getComputedReturnType());
         } else {
-            ST newST = templates.getInstanceOf("new");
+            InstructionList newCode = code()
+                    .emit(Opcode.LA, A0, newExpr.getTypeId().getName() + "_protObj")
+                    .emit(Opcode.JAL, "Object.copy")
+                    .emit(Opcode.JAL, newExpr.getTypeId().getName() + "_init");
 
-            newST.add("protObject", newExpr.getTypeId().getToken().getText() + "_protObj");
-            newST.add("initFunc", newExpr.getTypeId().getToken().getText() + "_init");
-
-            return new ReturnPair(newST, newExpr.getComputedReturnType());
+            return new ReturnPair(newCode, newExpr.getComputedReturnType());
         }
     }
 
     @Override
     public ReturnPair visit(Logical logical) {
-        ST leftST = logical.getLeft().accept(this).getSt();
-        ST rightST = logical.getRight().accept(this).getSt();
+        ReturnPair left = logical.getLeft().accept(this);
+        InstructionList rightCode = logical.getRight().accept(this).getCode();
+
+        InstructionList logicalCode = code().append(left.getCode());
+        push(logicalCode);
+        logicalCode.append(rightCode);
+        pop(logicalCode);
+
         if (logical.getOp().getText().equals("=")) {
-            ST eqST = templates.getInstanceOf("equality");
+            Label eqLabel = unit.symbols.newLabel("eq");
 
-            eqST.add("leftExpr", leftST);
-            eqST.add("rightExpr", rightST);
-            eqST.add("eqLabel", "eq" + dispatchCount++);
+            logicalCode.emit(Opcode.MOVE, T2, A0)
+                    .emit(Opcode.LA, A0, "bool_const1")
+                    .emit(Opcode.BEQ, T1, T2, eqLabel)
+                    .emit(Opcode.LA, A1, "bool_const0")
+                    .emit(Opcode.JAL, "equality_test")
+                    .label(eqLabel);
 
-            return new ReturnPair(eqST, logical.getComputedReturnType());
+            return new ReturnPair(logicalCode, logical.getComputedReturnType(), left.hasLeadingBlank());
         }
 
-        ST relST = templates.getInstanceOf("compare");
-        relST.add("leftExpr", leftST);
-        relST.add("rightExpr", rightST);
-        relST.add("relLabel", "compare" + dispatchCount++);
+        Label relLabel = unit.symbols.newLabel("compare");
 
-        if (logical.getOp().getText().equals("<"))
-            relST.add("op", "blt");
-        else
-            relST.add("op", "ble");
+        logicalCode.emit(Opcode.LW, T1, 12, T1).comment(Comment.INT_SLOT)
+                .emit(Opcode.LW, T2, 12, A0).comment(Comment.INT_SLOT)
+                .emit(Opcode.LA, A0, "bool_const1")
+                .emit(logical.getOp().getText().equals("<") ? Opcode.BLT : Opcode.BLE, T1, T2, relLabel)
+                .emit(Opcode.LA, A0, "bool_const0")
+                .label(relLabel);
 
-        return new ReturnPair(relST, logical.getComputedReturnType());
+        return new ReturnPair(logicalCode, logical.getComputedReturnType(), left.hasLeadingBlank());
     }
 
     @Override
     public ReturnPair visit(ObjectId objectId) {
-        ST idST = templates.getInstanceOf("loadAttrib");
-        if (objectId.getToken().getText().equals("self"))
-            return new ReturnPair(new ST("\tmove $a0 $s0"), objectId.getComputedReturnType());
-
-        if (objectId.getObjectIdSymbol().getIntroducingScope() instanceof ClassSymbol classSymbol) {
-            idST.add("offset", classAttributes.get(classSymbol.getName()).indexOf(objectId.getToken().getText()) * 4 + 12);
-            idST.add("basePointer", "$s0");
-        } else if (objectId.getObjectIdSymbol().getIntroducingScope() instanceof MethodSymbol methodSymbol) {
-            idST.add("offset", methodSymbol.getMethod()
-                    .getFormals().stream().map(f -> f.getObjectId().getToken().getText())
-                    .toList().indexOf(objectId.getToken().getText()) * 4 + 12);
-            idST.add("basePointer", "$fp");
-        } else if (objectId.getObjectIdSymbol().getIntroducingScope() instanceof LocalSymbol localSymbol) {
-            int count = 0;
-            LocalSymbol copy = localSymbol;
-
-            while (copy.getParent() instanceof LocalSymbol) {
-                count++;
-                copy = (LocalSymbol) copy.getParent();
-            }
+        InstructionList idCode = code();
+        if (objectId.getNameId() == Names.SELF) {
+            idCode.emit(Opcode.MOVE, A0, S0).style(InstructionList.Style.TABBED);
 
-            idST.add("offset", count * (-4) - 4);
-            idST.add("basePointer", "$fp");
+            return new ReturnPair(idCode, objectId.getComputedReturnType());
         }
 
+        access(idCode, Opcode.LW, objectId.getBinding());
 
-        return new ReturnPair(idST, objectId.getComputedReturnType());
+        return new ReturnPair(idCode, objectId.getComputedReturnType());
     }
 
     @Override
@@ -536,51 +877,72 @@ public class ASTCodeGenVisitor implements ASTVisitor<ReturnPair> {
 
     @Override
     public ReturnPair visit(Str str) {
-        ST strST = templates.getInstanceOf("loadLiteral");
-
-        strST.add("value", generateStringLiteral(str.getToken().getText()));
+        InstructionList strCode = code()
+                .emit(Opcode.LA, A0, generateStringLiteral(str.getToken().getText()));
 
-        return new ReturnPair(strST, str.getComputedReturnType());
+        return new ReturnPair(strCode, str.getComputedReturnType());
     }
 
     @Override
     public ReturnPair visit(Unary unary) {
         if (unary.getToken().getText().equals("isvoid")) {
-            ST exprST = unary.getExpr().accept(this).getSt();
-
-            ST isVoidST = templates.getInstanceOf("isvoid");
-            isVoidST.add("expr", exprST);
-            isVoidST.add("isvoidCount", "isvoid" + dispatchCount++);
-
-            return new ReturnPair(isVoidST, unary.getComputedReturnType());
+            ReturnPair expr = unary.getExpr().accept(this);
+            Label isvoidLabel = unit.symbols.newLabel("isvoid");
+
+            InstructionList isVoidCode = code()
+                    .append(expr.getCode())
+                    .emit(Opcode.MOVE, T1, A0)
+                    .emit(Opcode.LA, A0, "bool_const1")
+                    .emit(Opcode.BEQZ, T1, isvoidLabel)
+                    .emit(Opcode.LA, A0, "bool_const0")
+                    .label(isvoidLabel);
+
+            return new ReturnPair(isVoidCode, unary.getComputedReturnType(), expr.hasLeadingBlank());
         } else if (unary.getToken().getText().equals("not")) {
-            ST exprST = unary.getExpr().accept(this).getSt();
-
-            ST notST = templates.getInstanceOf("not");
-            notST.add("expr", exprST);
-            notST.add("notCount", "not" + dispatchCount++);
-
-            return new ReturnPair(notST, unary.getComputedReturnType());
+            ReturnPair expr = unary.getExpr().accept(this);
+            Label notLabel = unit.symbols.newLabel("not");
+
+            InstructionList notCode = code()
+                    .append(expr.getCode())
+                    .emit(Opcode.LW, T1, 12, A0).comment(Comment.BOOL_SLOT)
+                    .emit(Opcode.LA, A0, "bool_const1")
+                    .emit(Opcode.BEQZ, T1, notLabel)
+                    .emit(Opcode.LA, A0, "bool_const0")
+                    .label(notLabel);
+
+            return new ReturnPair(notCode, unary.getComputedReturnType(), expr.hasLeadingBlank());
         }
 
-        ST exprST = unary.getExpr().accept(this).getSt();
+        ReturnPair expr = unary.getExpr().accept(this);
 
-        ST tildaCpopST = templates.getInstanceOf("tildaCpop");
-        tildaCpopST.add("expr", exprST);
+        InstructionList negCode = code()
+                .append(expr.getCode())
+                .emit(Opcode.JAL, "Object.copy")
+                .emit(Opcode.LW, T1, 12, A0).comment(Comment.INT_SLOT)
+                .emit(Opcode.NEG, T1, T1)
+                .emit(Opcode.SW, T1, 12, A0).comment(Comment.INT_SLOT);
 
-        return new ReturnPair(tildaCpopST, unary.getComputedReturnType());
+        return new ReturnPair(negCode, unary.getComputedReturnType(), expr.hasLeadingBlank());
     }
 
     @Override
     public ReturnPair visit(While whileExpr) {
-        ST whileST = templates.getInstanceOf("while");
-
-        whileST.add("condition", whileExpr.getCondExpr().accept(this).getSt());
-        whileST.add("body", whileExpr.getInsideExpr().accept(this).getSt());
-        whileST.add("whileLabel", "while" + dispatchCount++);
-        whileST.add("endWhileLabel", "endwhile" + dispatchCount++);
-
-        return new ReturnPair(whileST, whileExpr.getComputedReturnType());
+        InstructionList condition = whileExpr.getCondExpr().accept(this).getCode();
+        InstructionList body = whileExpr.getInsideExpr().accept(this).getCode();
+        Label whileLabel = unit.symbols.newLabel("while");
+        Label endWhileLabel = unit.symbols.newLabel("endwhile");
+
+        InstructionList whileCode = code()
+                .label(whileLabel)
+                .append(condition)
+                .emit(Opcode.LW, T1, 12, A0).comment(Comment.BOOL_SLOT)
+                .emit(Opcode.BEQZ, T1, endWhileLabel)
+                .append(body)
+                .emit(Opcode.B, whileLabel)
+                .label(endWhileLabel)
+                .emit(Opcode.MOVE, A0, ZERO);
+
+        return new ReturnPair(whileCode, whileExpr.getComputedReturnType());
     }
 
     @Override
@@ -590,13 +952,17 @@ public class ASTCodeGenVisitor implements ASTVisitor<ReturnPair> {
 
     @Override
     public ReturnPair visit(Method method) {
-        ST methodST = templates.getInstanceOf("methodDeclare");
-        methodST.add("className", ((ClassSymbol) method.getMethodSymbol().getParent()).getName());
-        methodST.add("methodName", method.getMethodId().getToken().getText());
-        methodST.add("body", method.getInsideExpr().accept(this).getSt());
-        methodST.add("nrParams", new ST("\taddiu $sp $sp " + method.getFormals().size() * 4));
+        InstructionList methodCode = code()
+                .label(((ClassSymbol) method.getMethodSymbol().getParent()).getName()
+                        + "." + method.getMethodId().getName());
+
+        prologue(methodCode);
+        methodCode.append(method.getInsideExpr().accept(this).getCode());
+        epilogue(methodCode);
+        methodCode.emit(Opcode.ADDIU, SP, SP, method.getFormals().size() * 4).style(InstructionList.Style.TABBED)
+                .emit(Opcode.JR, RA);
 
-        methods.add("e", methodST);
+        emit(Section.METHODS, methodCode);
 
         return null;
     }
@@ -613,30 +979,68 @@ public class ASTCodeGenVisitor implements ASTVisitor<ReturnPair> {
 
     @Override
     public ReturnPair visit(Program program) {
-        literalConsts = templates.getInstanceOf("sequenceSpaced");
-        protObjs = templates.getInstanceOf("sequence");
-        dispTabs = templates.getInstanceOf("sequence");
-        inits = templates.getInstanceOf("sequenceSpaced");
-        methods = templates.getInstanceOf("sequence");
-        classNames = templates.getInstanceOf("sequence");
-        classObjects = templates.getInstanceOf("sequence");
-
-        generateBasicCode();
-
-        for (ClassNode cls : program.getClasses())
-            cls.accept(this);
-
-        //assembly-ing it all together. HA! get it?
-        var programST = templates.getInstanceOf("program");
-        programST.add("literalConsts", literalConsts);
-        programST.add("protObjs", protObjs);
-        programST.add("dispTabs", dispTabs);
-        programST.add("inits", inits);
-        programST.add("methods", methods);
-        programST.add("classNames", classNames);
-        programST.add("classObjects", classObjects);
-
-        return new ReturnPair(programST, null);
+        CompileProfiler profiler = session.getProfiler();
+        var classes = program.getClasses();
+
+        var basicPhase = profiler.phase("ASTCodeGenVisitor", "basic classes");
+        try {
+            generateBasicCode();
+            merge(unit);
+        } finally {
+            basicPhase.end();
+        }
+
+        // Only so many classes are generated ahead of the one being merged,
+        // so that the code waiting to be merged stays bounded however many
+        // classes there are: enough to keep the pool busy while the merge
+        // catches up.
+        int window = 2 * ForkJoinPool.commonPool().getParallelism();
+        var tasks = new ArrayList<ForkJoinTask<Unit>>(classes.size());
+        for (int i = 0; i < Math.min(window, classes.size()); i++)
+            tasks.add(generateLater(classes, i));
+
+        // Merge in class order, as the classes are done, dropping the code
+        // of each once it is in the emitter.
+        try {
+            for (int i = 0; i < classes.size(); i++) {
+                Unit classUnit = tasks.get(i).join();
+                tasks.set(i, null);
+                if (i + window < classes.size())
+                    tasks.add(generateLater(classes, i + window));
+
+                var phase = profiler.phase("merge", classes.get(i).getClassName().getName());
+                try {
+                    merge(classUnit);
+                } finally {
+                    phase.end();
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            for (var task : tasks)
+                if (task != null)
+                    task.cancel(false);
+            throw e;
+        }
+
+        return null;
+    }
+
+    /**
+     * Starts generating the code of the {@code i}th class in the pool.
+     */
+    private ForkJoinTask<Unit> generateLater(List<ClassNode> classes, int i) {
+        var classNode = classes.get(i);
+        var visitor = new ASTCodeGenVisitor(this, FIRST_CLASS_TAG + i);
+        CompileProfiler profiler = session.getProfiler();
+
+        return ForkJoinPool.commonPool().submit(() -> {
+            var phase = profiler.phase("ASTCodeGenVisitor", classNode.getClassName().getName());
+            try {
+                return visitor.generate(classNode);
+            } finally {
+                phase.end();
+            }
+        });
     }
 
     @Override
@@ -0,0 +1,259 @@
+package cool.ast;
+
+import cool.ast.branch.Branch;
+import cool.ast.classNode.ClassNode;
+import cool.ast.expression.*;
+import cool.ast.feature.Field;
+import cool.ast.feature.Method;
+import cool.ast.formal.Formal;
+import cool.ast.local.Local;
+import cool.ast.program.Program;
+import cool.ast.type.TypeId;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts the nodes of an AST, by node kind.
+ */
+public class ASTCountVisitor implements ASTVisitor<Void> {
+    private final Map<String, Integer> counts = new TreeMap<>();
+    private int total = 0;
+
+    public Map<String, Integer> getCounts() {
+        return counts;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    private void count(ASTNode node) {
+        counts.merge(node.getClass().getSimpleName(), 1, Integer::sum);
+        total++;
+    }
+
+    private void visitOptional(ASTNode node) {
+        if (node != null)
+            node.accept(this);
+    }
+
+    @Override
+    public Void visit(Branch branch) {
+        count(branch);
+        branch.getObjectId().accept(this);
+        branch.getTypeId().accept(this);
+        branch.getBranch().accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(ClassNode classNode) {
+        count(classNode);
+        classNode.getClassName().accept(this);
+        visitOptional(classNode.getParentName());
+        classNode.getFeatures().forEach(feature -> feature.accept(this));
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Arithmetic arithmetic) {
+        count(arithmetic);
+        arithmetic.getLeft().accept(this);
+        arithmetic.getRight().accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Assign assign) {
+        count(assign);
+        assign.getObjectId().accept(this);
+        assign.getExpr().accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Block block) {
+        count(block);
+        block.getExpressions().forEach(expression -> expression.accept(this));
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Bool bool) {
+        count(bool);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Case caseExpr) {
+        count(caseExpr);
+        caseExpr.getCaseExpr().accept(this);
+        caseExpr.getBranches().forEach(branch -> branch.accept(this));
+
+        return null;
+    }
+
+    @Override
+    public Void visit(ExplicitCall explicitCall) {
+        count(explicitCall);
+        explicitCall.getDispatchExpr().accept(this);
+        visitOptional(explicitCall.getClassType());
+        explicitCall.getMethodId().accept(this);
+        explicitCall.getParams().forEach(param -> param.accept(this));
+
+        return null;
+    }
+
+    @Override
+    public Void visit(If ifExpr) {
+        count(ifExpr);
+        ifExpr.getCond().accept(this);
+        ifExpr.getThenBranch().accept(this);
+        ifExpr.getElseBranch().accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(ImplicitCall implicitCall) {
+        count(implicitCall);
+        implicitCall.getMethodId().accept(this);
+        implicitCall.getParams().forEach(param -> param.accept(this));
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Int intExpr) {
+        count(intExpr);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Let let) {
+        count(let);
+        let.getLocals().forEach(local -> local.accept(this));
+        let.getLetExpr().accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(New newExpr) {
+        count(newExpr);
+        newExpr.getTypeId().accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Logical logical) {
+        count(logical);
+        logical.getLeft().accept(this);
+        logical.getRight().accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(ObjectId objectId) {
+        count(objectId);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Paren paren) {
+        count(paren);
+        paren.getExpr().accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Str str) {
+        count(str);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Unary unary) {
+        count(unary);
+        unary.getExpr().accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(While whileExpr) {
+        count(whileExpr);
+        whileExpr.getCondExpr().accept(this);
+        whileExpr.getInsideExpr().accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Field field) {
+        count(field);
+        field.getFieldId().accept(this);
+        field.getTypeId().accept(this);
+        visitOptional(field.getInitialExpr());
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Method method) {
+        count(method);
+        method.getMethodId().accept(this);
+        method.getFormals().forEach(formal -> formal.accept(this));
+        method.getReturnType().accept(this);
+        method.getInsideExpr().accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Local local) {
+        count(local);
+        local.getObjectId().accept(this);
+        local.getTypeId().accept(this);
+        visitOptional(local.getAssignExpr());
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Formal formal) {
+        count(formal);
+        formal.getObjectId().accept(this);
+        formal.getTypeId().accept(this);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Program program) {
+        count(program);
+        program.getClasses().forEach(classNode -> classNode.accept(this));
+
+        return null;
+    }
+
+    @Override
+    public Void visit(TypeId typeId) {
+        count(typeId);
+
+        return null;
+    }
+}
@@ -9,22 +9,41 @@ import cool.ast.formal.Formal;
 import cool.ast.local.Local;
 import cool.ast.program.Program;
 import cool.ast.type.TypeId;
+import cool.compiler.AnalysisCache;
+import cool.compiler.CompilationSession;
+import cool.compiler.CompileProfiler;
+import cool.compiler.Diagnostics;
 import cool.structures.*;
 
 public class ASTDefinitionVisitor implements ASTVisitor<Void> {
+    private final SymbolTable symbolTable;
+    private final CompileProfiler profiler;
+    private final Diagnostics diagnostics;
+    // Null unless classes unchanged since the last compilation are kept.
+    private final AnalysisCache analysis;
     Scope currentScope = null;
+    private ClassSymbol currentClass = null;
+    // The formals, let and case variables in scope.
+    private final ScopeStack scopes = new ScopeStack();
+
+    public ASTDefinitionVisitor(CompilationSession session) {
+        this.symbolTable = session.getSymbolTable();
+        this.profiler = session.getProfiler();
+        this.diagnostics = session.getDiagnostics();
+        this.analysis = session.getAnalysisCache();
+    }
 
     @Override
     public Void visit(Branch branch) {
-        if (branch.getObjectId().getToken().getText().equals("self")) {
-            SymbolTable.error(branch.getParserRuleContext(),
+        if (branch.getObjectId().getNameId() == Names.SELF) {
+            symbolTable.error(branch.getFileId(),
                     branch.getObjectId().getToken(), "Case variable has illegal name self");
             return null;
         }
 
-        if (branch.getTypeId().getToken().getText().equals("SELF_TYPE")) {
-            SymbolTable.error(branch.getParserRuleContext(),
-                    branch.getTypeId().getToken(), "Case variable " + branch.getObjectId().getToken().getText() + " has illegal type SELF_TYPE");
+        if (branch.getTypeId().getNameId() == Names.SELF_TYPE) {
+            symbolTable.error(branch.getFileId(),
+                    branch.getTypeId().getToken(), "Case variable " + branch.getObjectId().getName() + " has illegal type SELF_TYPE");
             return null;
         }
 
@@ -35,25 +54,28 @@ public class ASTDefinitionVisitor implements ASTVisitor<Void> {
 
     @Override
     public Void visit(ClassNode classNode) {
-        if (classNode.getClassName().getToken().getText().equals("SELF_TYPE")) {
-            SymbolTable.error(classNode.getParserRuleContext(), classNode.getClassName().getToken(), "Class has illegal name SELF_TYPE");
+        if (classNode.getClassName().getNameId() == Names.SELF_TYPE) {
+            symbolTable.error(classNode.getFileId(), classNode.getClassName().getToken(), "Class has illegal name SELF_TYPE");
             return null;
         }
 
-        ClassSymbol classSymbol = new ClassSymbol(classNode.getClassName().getToken().getText());
-        ClassSymbolWrapper classSymbolWrapper = new ClassSymbolWrapper(classSymbol, false);
+        ClassSymbol classSymbol = analysis != null
+                ? analysis.defineClass(classNode.getClassName().getName(), symbolTable.getGlobals())
+                : new ClassSymbol(classNode.getClassName().getName(), symbolTable.getGlobals());
+        ClassSymbolWrapper classSymbolWrapper = ClassSymbolWrapper.of(classSymbol, false);
         classNode.setClassSymbolWrapper(classSymbolWrapper);
 
         if (!currentScope.add(classSymbol)) {
-            SymbolTable.error(classNode.getParserRuleContext(),
+            symbolTable.error(classNode.getFileId(),
                     classNode.getClassName().getToken(), "Class " + classSymbol.getName() + " is redefined");
             return null;
         }
 
         currentScope = classSymbol;
+        currentClass = classSymbol;
 
         FieldSymbol selfField = new FieldSymbol("self");
-        selfField.setTypeSymbol(new ClassSymbolWrapper(classSymbol, true));
+        selfField.setTypeSymbol(ClassSymbolWrapper.of(classSymbol, true));
         classSymbol.addField(selfField);
 
         classNode.getFeatures().forEach(feature -> feature.accept(this));
@@ -73,8 +95,8 @@ public class ASTDefinitionVisitor implements ASTVisitor<Void> {
 
     @Override
     public Void visit(Assign assign) {
-        if (assign.getObjectId().getToken().getText().equals("self")) {
-            SymbolTable.error(assign.getParserRuleContext(), assign.getObjectId().getToken(),
+        if (assign.getObjectId().getNameId() == Names.SELF) {
+            symbolTable.error(assign.getFileId(), assign.getObjectId().getToken(),
                     "Cannot assign to self");
             return null;
         }
@@ -101,17 +123,15 @@ public class ASTDefinitionVisitor implements ASTVisitor<Void> {
         caseExpr.getCaseExpr().accept(this);
 
         for (Branch branch : caseExpr.getBranches()) {
-            BranchSymbol branchSymbol = new BranchSymbol(branch.getObjectId().getToken().getText());
-
-            branchSymbol.setParent(currentScope);
+            BranchSymbol branchSymbol = new BranchSymbol(branch.getObjectId().getName());
             branch.setBranchSymbol(branchSymbol);
 
-            currentScope = branchSymbol;
-            currentScope.add(branchSymbol);
+            int mark = scopes.mark();
+            scopes.push(branchSymbol, Binding.Kind.CASE, 0);
 
             branch.accept(this);
 
-            currentScope = currentScope.getParent();
+            scopes.reset(mark);
         }
 
         return null;
@@ -122,8 +142,6 @@ public class ASTDefinitionVisitor implements ASTVisitor<Void> {
         explicitCall.getParams().forEach(param -> param.accept(this));
         explicitCall.getDispatchExpr().accept(this);
 
-        explicitCall.setResolutionScope(currentScope);
-
         return null;
     }
 
@@ -139,7 +157,7 @@ public class ASTDefinitionVisitor implements ASTVisitor<Void> {
     @Override
     public Void visit(ImplicitCall implicitCall) {
         implicitCall.getParams().forEach(param -> param.accept(this));
-        implicitCall.setResolutionScope(currentScope);
+        implicitCall.setEnclosingClass(currentClass);
 
         return null;
     }
@@ -151,31 +169,30 @@ public class ASTDefinitionVisitor implements ASTVisitor<Void> {
 
     @Override
     public Void visit(Let let) {
-        for (Local local : let.getLocals()) {
-            LocalSymbol localSymbol = new LocalSymbol(local.getObjectId().getToken().getText());
+        int mark = scopes.mark();
 
-            localSymbol.setParent(currentScope);
+        for (Local local : let.getLocals()) {
+            LocalSymbol localSymbol = new LocalSymbol(local.getObjectId().getName());
             local.setLocalSymbol(localSymbol);
 
+            // The variable is in scope only after its initialization.
             local.accept(this);
 
-            currentScope = localSymbol;
-            currentScope.add(localSymbol);
+            Binding outer = scopes.top();
+            int slot = outer != null && outer.getKind() == Binding.Kind.LET ? outer.getSlot() + 1 : 0;
+            scopes.push(localSymbol, Binding.Kind.LET, slot);
         }
 
         let.getLetExpr().accept(this);
 
-        for (Local ignored : let.getLocals()) {
-            currentScope = currentScope.getParent();
-        }
-
+        scopes.reset(mark);
 
         return null;
     }
 
     @Override
     public Void visit(New newExpr) {
-        newExpr.setResolutionScope(currentScope);
+        newExpr.setEnclosingClass(currentClass);
         return null;
     }
 
@@ -189,9 +206,10 @@ public class ASTDefinitionVisitor implements ASTVisitor<Void> {
 
     @Override
     public Void visit(ObjectId objectId) {
-        ObjectIdSymbol objectIdSymbol = new ObjectIdSymbol(objectId.getToken().getText());
-        objectId.setResolutionScope(currentScope);
-        objectId.setObjectIdSymbol(objectIdSymbol);
+        // Attributes are bound by the resolution passes, once the class
+        // hierarchy is known.
+        objectId.setEnclosingClass(currentClass);
+        objectId.setBinding(scopes.lookup(objectId.getNameId()));
 
         return null;
     }
@@ -223,16 +241,16 @@ public class ASTDefinitionVisitor implements ASTVisitor<Void> {
     public Void visit(Field field) {
         ClassSymbol currentClass = (ClassSymbol) currentScope;
 
-        if (field.getFieldId().getToken().getText().equals("self")) {
-            SymbolTable.error(field.getParserRuleContext(), field.getFieldId().getToken(),
+        if (field.getFieldId().getNameId() == Names.SELF) {
+            symbolTable.error(field.getFileId(), field.getFieldId().getToken(),
                     "Class " + currentClass.getName() + " has attribute with illegal name self");
             return null;
         }
 
-        FieldSymbol fieldSymbol = new FieldSymbol(field.getFieldId().getToken().getText(), currentClass);
+        FieldSymbol fieldSymbol = new FieldSymbol(field.getFieldId().getName(), currentClass);
 
         if (!currentClass.addField(fieldSymbol)) {
-            SymbolTable.error(field.getParserRuleContext(), field.getFieldId().getToken(),
+            symbolTable.error(field.getFileId(), field.getFieldId().getToken(),
                     "Class " + currentClass.getName() + " redefines attribute " + fieldSymbol.getName());
             return null;
         }
@@ -249,11 +267,11 @@ public class ASTDefinitionVisitor implements ASTVisitor<Void> {
 
     @Override
     public Void visit(Method method) {
-        MethodSymbol methodSymbol = new MethodSymbol(method.getMethodId().getToken().getText(), method);
+        MethodSymbol methodSymbol = new MethodSymbol(method.getMethodId().getName(), method);
         ClassSymbol currentClass = (ClassSymbol) currentScope;
 
         if (!currentClass.addMethod(methodSymbol)) {
-            SymbolTable.error(method.getParserRuleContext(), method.getMethodId().getToken(),
+            symbolTable.error(method.getFileId(), method.getMethodId().getToken(),
                     "Class " + currentClass.getName() + " redefines method " + methodSymbol.getName());
             return null;
         }
@@ -265,8 +283,19 @@ public class ASTDefinitionVisitor implements ASTVisitor<Void> {
         currentScope = methodSymbol;
 
         method.getFormals().forEach(formal -> formal.accept(this));
+
+        int mark = scopes.mark();
+        var formals = method.getFormals();
+        for (int slot = 0; slot < formals.size(); slot++) {
+            // Of formals of the same name, only the first is defined.
+            Symbol formalSymbol = methodSymbol.lookup(formals.get(slot).getObjectId().getNameId(), true);
+            if (formalSymbol instanceof FormalSymbol && scopes.lookup(formalSymbol.getNameId()) == null)
+                scopes.push(formalSymbol, Binding.Kind.FORMAL, slot);
+        }
+
         method.getInsideExpr().accept(this);
 
+        scopes.reset(mark);
         currentScope = currentScope.getParent();
 
         return null;
@@ -274,10 +303,10 @@ public class ASTDefinitionVisitor implements ASTVisitor<Void> {
 
     @Override
     public Void visit(Local local) {
-        local.setResolutionScope(currentScope);
+        local.setEnclosingClass(currentClass);
 
-        if (local.getObjectId().getToken().getText().equals("self")) {
-            SymbolTable.error(local.getParserRuleContext(),
+        if (local.getObjectId().getNameId() == Names.SELF) {
+            symbolTable.error(local.getFileId(),
                     local.getObjectId().getToken(), "Let variable has illegal name self");
             return null;
         }
@@ -292,25 +321,24 @@ public class ASTDefinitionVisitor implements ASTVisitor<Void> {
     @Override
     public Void visit(Formal formal) {
         MethodSymbol currentMethod = (MethodSymbol) currentScope;
-        FormalSymbol formalSymbol = new FormalSymbol(formal.getObjectId().getToken().getText(), currentMethod);
-        String typeName = formal.getTypeId().getToken().getText();
+        FormalSymbol formalSymbol = new FormalSymbol(formal.getObjectId().getName(), currentMethod);
 
-        if (formal.getObjectId().getToken().getText().equals("self")) {
-            SymbolTable.error(formal.getParserRuleContext(), formal.getObjectId().getToken(),
+        if (formal.getObjectId().getNameId() == Names.SELF) {
+            symbolTable.error(formal.getFileId(), formal.getObjectId().getToken(),
                     "Method " + currentMethod.getName() + " of class " + currentMethod.getMethod().getClassSymbol().getName() + " has formal parameter with illegal name self");
             return null;
         }
 
         if (!currentMethod.add(formalSymbol)) {
-            SymbolTable.error(formal.getParserRuleContext(), formal.getToken(),
+            symbolTable.error(formal.getFileId(), formal.getToken(),
                     "Method " + currentMethod.getName() + " of class " + currentMethod.getMethod().getClassSymbol().getName()
                             + " redefines formal parameter " + formalSymbol.getName());
 
             return null;
         }
 
-        if (typeName.equals("SELF_TYPE")) {
-            SymbolTable.error(formal.getParserRuleContext(), formal.getTypeId().getToken(),
+        if (formal.getTypeId().getNameId() == Names.SELF_TYPE) {
+            symbolTable.error(formal.getFileId(), formal.getTypeId().getToken(),
                     "Method " + currentMethod.getName() + " of class " + currentMethod.getMethod().getClassSymbol().getName()
                             + " has formal parameter " + formalSymbol.getName() + " with illegal type SELF_TYPE");
 
@@ -326,9 +354,24 @@ public class ASTDefinitionVisitor implements ASTVisitor<Void> {
 
     @Override
     public Void visit(Program program) {
-        currentScope = SymbolTable.globals;
-
-        program.getClasses().forEach(classNode -> classNode.accept(this));
+        currentScope = symbolTable.getGlobals();
+
+        var classes = program.getClasses();
+        for (int i = 0; i < classes.size(); i++) {
+            int classIndex = i;
+            ClassNode classNode = classes.get(classIndex);
+
+            var span = profiler.span("ASTDefinitionVisitor", classNode.getClassName().getName());
+            try {
+                if (analysis == null)
+                    diagnostics.withinUnit(classIndex, () -> classNode.accept(this));
+                else
+                    diagnostics.withinUnit(classIndex, () -> analysis.check(classIndex, () -> classNode.accept(this),
+                            () -> currentScope.add(classNode.getClassSymbolWrapper().getClassSymbol())));
+            } finally {
+                span.end();
+            }
+        }
 
         return null;
     }
@@ -0,0 +1,387 @@
+package cool.ast;
+
+import cool.ast.branch.Branch;
+import cool.ast.classNode.ClassNode;
+import cool.ast.expression.*;
+import cool.ast.feature.Field;
+import cool.ast.feature.Method;
+import cool.ast.formal.Formal;
+import cool.ast.local.Local;
+import cool.ast.program.Program;
+import cool.ast.type.TypeId;
+import cool.structures.Binding;
+import cool.structures.ClassSymbol;
+import cool.structures.MethodSymbol;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Hashes what the code generated for a class depends on: its typed AST
+ * and, of the rest of the program, what code generation reads of it while
+ * generating the class, i.e. the class tag, the source file name, the
+ * object layout, the dispatch table and the offsets of the methods it
+ * calls. Two classes with the same fingerprint get the same code, but for
+ * the numbering of labels and constants, which is done at merge time.
+ *
+ * Only what reaches the code is hashed, so that editing a class leaves the
+ * fingerprints of unrelated ones alone: the file name and lines, for
+ * instance, only count where they end up in the code, in the arguments of
+ * the abort routines.
+ *
+ * Fingerprints are taken class by class, so the nodes are walked from
+ * {@link #fingerprint}, by a visitor only ever given the nodes within a
+ * class.
+ */
+public class ASTFingerprint {
+    // Changes whenever the code generated from the same inputs does, so
+    // that fragments of older compilers are not used.
+    private static final int FORMAT_VERSION = 1;
+
+    // What is hashed, collected first, as the digest is slow to update a
+    // little at a time.
+    private byte[] buffer = new byte[1024];
+    private int length = 0;
+    private final int classTag;
+    private final String fileName;
+    private ClassSymbol currentClass;
+    private final Hasher hasher = new Hasher();
+
+    /**
+     * @param fileName the name of the class's file, without its directory.
+     */
+    public ASTFingerprint(int classTag, String fileName) {
+        this.classTag = classTag;
+        this.fileName = fileName;
+    }
+
+    /**
+     * @return the fingerprint of {@code classNode}, in hex.
+     */
+    public String fingerprint(ClassNode classNode) {
+        currentClass = classNode.getClassSymbolWrapper().getClassSymbol();
+        var layout = currentClass.getLayout();
+        var methodTable = currentClass.getMethodTable();
+
+        write(FORMAT_VERSION);
+        // The code is kept as text, with the newlines it was written with.
+        write(System.lineSeparator());
+        write(classTag);
+        write(currentClass.getName());
+        write(((ClassSymbol) currentClass.getDirectParent()).getName());
+
+        write(layout.size());
+        write(layout.attributeCount());
+        for (int slot = 0; slot < layout.attributeCount(); slot++)
+            write(layout.getDefault(slot).ordinal());
+
+        write(methodTable.slotCount());
+        for (int slot = 0; slot < methodTable.slotCount(); slot++) {
+            var method = (MethodSymbol) methodTable.getSlot(slot);
+            write(((ClassSymbol) method.getParent()).getName() + "." + method.getName());
+        }
+
+        hashAll(classNode.getFeatures());
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No SHA-256 in this runtime", e);
+        }
+
+        digest.update(buffer, 0, length);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void reserve(int bytes) {
+        if (length + bytes > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + bytes));
+    }
+
+    private void write(int value) {
+        reserve(Integer.BYTES);
+        buffer[length++] = (byte) (value >>> 24);
+        buffer[length++] = (byte) (value >>> 16);
+        buffer[length++] = (byte) (value >>> 8);
+        buffer[length++] = (byte) value;
+    }
+
+    /**
+     * Writes {@code value} as its length and chars, two bytes each.
+     */
+    private void write(String value) {
+        write(value.length());
+
+        reserve(value.length() * 2);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            buffer[length++] = (byte) (c >>> 8);
+            buffer[length++] = (byte) c;
+        }
+    }
+
+    /**
+     * Writes the kind of {@code node} and its token, so that neither nodes
+     * nor operators of different kinds hash the same.
+     */
+    private void node(ASTNode node) {
+        write(node.getClass().getSimpleName());
+        write(node.getToken().getText());
+    }
+
+    /**
+     * Writes where {@code node} is, as the code reports it on an abort.
+     */
+    private void position(ASTNode node) {
+        write(fileName);
+        write(node.getToken().getLine());
+    }
+
+    private void binding(Binding binding) {
+        write(binding.getKind().ordinal());
+        write(binding.getSlot());
+    }
+
+    private void hashOptional(ASTNode node) {
+        if (node == null)
+            write(-1);
+        else
+            hash(node);
+    }
+
+    private void hashAll(List<? extends ASTNode> nodes) {
+        write(nodes.size());
+        nodes.forEach(this::hash);
+    }
+
+    private void hash(ASTNode node) {
+        node.accept(hasher);
+    }
+
+    /**
+     * Hashes a node within a class, and the nodes under it, each starting
+     * with {@link #node}.
+     */
+    private class Hasher implements ASTVisitor<Void> {
+        @Override
+        public Void visit(Branch branch) {
+            node(branch);
+            hash(branch.getObjectId());
+            hash(branch.getTypeId());
+            hash(branch.getBranch());
+
+            return null;
+        }
+
+        @Override
+        public Void visit(ClassNode classNode) {
+            throw new IllegalStateException("Classes are fingerprinted through fingerprint(ClassNode)");
+        }
+
+        @Override
+        public Void visit(Arithmetic arithmetic) {
+            node(arithmetic);
+            write(arithmetic.getOp().getText());
+            hash(arithmetic.getLeft());
+            hash(arithmetic.getRight());
+
+            return null;
+        }
+
+        @Override
+        public Void visit(Assign assign) {
+            node(assign);
+            binding(assign.getObjectId().getBinding());
+            hash(assign.getExpr());
+
+            return null;
+        }
+
+        @Override
+        public Void visit(Block block) {
+            node(block);
+            hashAll(block.getExpressions());
+
+            return null;
+        }
+
+        @Override
+        public Void visit(Bool bool) {
+            node(bool);
+
+            return null;
+        }
+
+        @Override
+        public Void visit(Case caseExpr) {
+            node(caseExpr);
+            position(caseExpr);
+            hash(caseExpr.getCaseExpr());
+            hashAll(caseExpr.getBranches());
+
+            return null;
+        }
+
+        @Override
+        public Void visit(ExplicitCall explicitCall) {
+            var dispatchClass = explicitCall.getDispatchExpr().getComputedReturnType().getClassSymbol();
+
+            node(explicitCall);
+            position(explicitCall);
+            hash(explicitCall.getDispatchExpr());
+            hashOptional(explicitCall.getClassType());
+            write(ASTCodeGenVisitor.methodOffset(dispatchClass, explicitCall.getMethodId().getNameId()));
+            hashAll(explicitCall.getParams());
+
+            return null;
+        }
+
+        @Override
+        public Void visit(If ifExpr) {
+            node(ifExpr);
+            hash(ifExpr.getCond());
+            hash(ifExpr.getThenBranch());
+            hash(ifExpr.getElseBranch());
+
+            return null;
+        }
+
+        @Override
+        public Void visit(ImplicitCall implicitCall) {
+            node(implicitCall);
+            position(implicitCall);
+            write(ASTCodeGenVisitor.methodOffset(currentClass, implicitCall.getMethodId().getNameId()));
+            hashAll(implicitCall.getParams());
+
+            return null;
+        }
+
+        @Override
+        public Void visit(Int intExpr) {
+            node(intExpr);
+
+            return null;
+        }
+
+        @Override
+        public Void visit(Let let) {
+            node(let);
+            hashAll(let.getLocals());
+            hash(let.getLetExpr());
+
+            return null;
+        }
+
+        @Override
+        public Void visit(New newExpr) {
+            node(newExpr);
+            hash(newExpr.getTypeId());
+
+            return null;
+        }
+
+        @Override
+        public Void visit(Logical logical) {
+            node(logical);
+            write(logical.getOp().getText());
+            hash(logical.getLeft());
+            hash(logical.getRight());
+
+            return null;
+        }
+
+        @Override
+        public Void visit(ObjectId objectId) {
+            node(objectId);
+            if (objectId.getBinding() != null)
+                binding(objectId.getBinding());
+            else
+                write(-1);
+
+            return null;
+        }
+
+        @Override
+        public Void visit(Paren paren) {
+            node(paren);
+            hash(paren.getExpr());
+
+            return null;
+        }
+
+        @Override
+        public Void visit(Str str) {
+            node(str);
+
+            return null;
+        }
+
+        @Override
+        public Void visit(Unary unary) {
+            node(unary);
+            hash(unary.getExpr());
+
+            return null;
+        }
+
+        @Override
+        public Void visit(While whileExpr) {
+            node(whileExpr);
+            hash(whileExpr.getCondExpr());
+            hash(whileExpr.getInsideExpr());
+
+            return null;
+        }
+
+        @Override
+        public Void visit(Field field) {
+            node(field);
+            write(field.getFieldSymbol().getSlot());
+            hashOptional(field.getInitialExpr());
+
+            return null;
+        }
+
+        @Override
+        public Void visit(Method method) {
+            node(method);
+            write(((ClassSymbol) method.getMethodSymbol().getParent()).getName());
+            write(method.getFormals().size());
+            hash(method.getInsideExpr());
+
+            return null;
+        }
+
+        @Override
+        public Void visit(Local local) {
+            node(local);
+            hash(local.getTypeId());
+            hashOptional(local.getAssignExpr());
+
+            return null;
+        }
+
+        @Override
+        public Void visit(Formal formal) {
+            node(formal);
+
+            return null;
+        }
+
+        @Override
+        public Void visit(Program program) {
+            throw new IllegalStateException("Programs are fingerprinted class by class");
+        }
+
+        @Override
+        public Void visit(TypeId typeId) {
+            node(typeId);
+
+            return null;
+        }
+    }
+}
@@ -10,25 +10,38 @@ import cool.ast.formal.Formal;
 import cool.ast.local.Local;
 import cool.ast.program.Program;
 import cool.ast.type.TypeId;
+import cool.compiler.AnalysisCache;
+import cool.compiler.CompilationSession;
+import cool.compiler.CompileProfiler;
+import cool.compiler.Diagnostics;
 import cool.structures.*;
 
-import java.util.Arrays;
-import java.util.List;
-
 public class ASTFirstResolutionVisitor implements ASTVisitor<Void> {
+    private final SymbolTable symbolTable;
+    private final CompileProfiler profiler;
+    private final Diagnostics diagnostics;
+    // Null unless classes unchanged since the last compilation are kept.
+    private final AnalysisCache analysis;
+
+    public ASTFirstResolutionVisitor(CompilationSession session) {
+        this.symbolTable = session.getSymbolTable();
+        this.profiler = session.getProfiler();
+        this.diagnostics = session.getDiagnostics();
+        this.analysis = session.getAnalysisCache();
+    }
 
     @Override
     public Void visit(Branch branch) {
         if (branch.getBranchSymbol() != null) {
-            String branchType = branch.getTypeId().getToken().getText();
-            ClassSymbol branchClassSymbol = (ClassSymbol) SymbolTable.globals.lookup(branchType, false);
+            String branchType = branch.getTypeId().getName();
+            ClassSymbol branchClassSymbol = (ClassSymbol) symbolTable.getGlobals().lookup(branch.getTypeId().getNameId(), false);
 
-            if (branchClassSymbol == null && !branchType.equals("SELF_TYPE")) {
-                SymbolTable.error(branch.getParserRuleContext(), branch.getTypeId().getToken(), "Case variable "
-                        + branch.getObjectId().getToken().getText() + " has undefined type " + branchType);
+            if (branchClassSymbol == null && branch.getTypeId().getNameId() != Names.SELF_TYPE) {
+                symbolTable.error(branch.getFileId(), branch.getTypeId().getToken(), "Case variable "
+                        + branch.getObjectId().getName() + " has undefined type " + branchType);
                 return null;
             } else {
-                ClassSymbolWrapper classSymbolWrapper = new ClassSymbolWrapper(branchClassSymbol, false);
+                ClassSymbolWrapper classSymbolWrapper = ClassSymbolWrapper.of(branchClassSymbol, false);
                 branch.getBranchSymbol().setTypeSymbol(classSymbolWrapper);
             }
         }
@@ -41,26 +54,27 @@ public class ASTFirstResolutionVisitor implements ASTVisitor<Void> {
     @Override
     public Void visit(ClassNode classNode) {
         if (classNode.getParentName() != null) {
-            String parentName = classNode.getParentName().getToken().getText();
-            List<String> illegalParents = Arrays.asList("Int", "String", "Bool", "SELF_TYPE", "Object");
-            if (illegalParents.contains(parentName)) {
-                SymbolTable.error(classNode.getParserRuleContext(), classNode.getParentName().getToken(), "Class "
-                        + classNode.getClassName().getToken().getText() + " has illegal parent " + parentName);
+            String parentName = classNode.getParentName().getName();
+            int parentId = classNode.getParentName().getNameId();
+            if (parentId == Names.INT || parentId == Names.STRING || parentId == Names.BOOL
+                    || parentId == Names.SELF_TYPE || parentId == Names.OBJECT) {
+                symbolTable.error(classNode.getFileId(), classNode.getParentName().getToken(), "Class "
+                        + classNode.getClassName().getName() + " has illegal parent " + parentName);
 
                 return null;
             }
 
-            if (SymbolTable.globals.lookup(parentName, false) == null) {
-                SymbolTable.error(classNode.getParserRuleContext(), classNode.getParentName().getToken(),
-                        "Class " + classNode.getClassName().getToken().getText() + " has undefined parent " + parentName);
+            if (symbolTable.getGlobals().lookup(classNode.getParentName().getNameId(), false) == null) {
+                symbolTable.error(classNode.getFileId(), classNode.getParentName().getToken(),
+                        "Class " + classNode.getClassName().getName() + " has undefined parent " + parentName);
 
                 return null;
             }
 
-            classNode.getClassSymbolWrapper().getClassSymbol().setDirectParent((ClassSymbol) SymbolTable.globals.lookup(parentName, false));
+            classNode.getClassSymbolWrapper().getClassSymbol().setDirectParent((ClassSymbol) symbolTable.getGlobals().lookup(classNode.getParentName().getNameId(), false));
         } else {
             if (classNode.getClassSymbolWrapper() != null) {
-                classNode.getClassSymbolWrapper().getClassSymbol().setDirectParent((ClassSymbol) SymbolTable.globals.lookup("Object", false));
+                classNode.getClassSymbolWrapper().getClassSymbol().setDirectParent((ClassSymbol) symbolTable.getGlobals().lookup(Names.OBJECT, false));
             }
         }
 
@@ -122,18 +136,14 @@ public class ASTFirstResolutionVisitor implements ASTVisitor<Void> {
 
     @Override
     public Void visit(ImplicitCall implicitCall) {
-        Scope resolutionScope = implicitCall.getResolutionScope();
+        ClassSymbol selfClassSymbol = implicitCall.getEnclosingClass();
 
-        if (resolutionScope != null) {
-            FieldSymbol selfSymbol = (FieldSymbol) resolutionScope.lookup("self", true);
-            ClassSymbolWrapper selfClassSymbolWrapper = selfSymbol.getTypeSymbol();
-            ClassSymbol selfClassSymbol = selfClassSymbolWrapper.getClassSymbol();
+        if (selfClassSymbol != null) {
 
-
-            MethodSymbol methodSymbol = (MethodSymbol) selfClassSymbol.lookupMethod(implicitCall.getMethodId().getToken().getText());
+            MethodSymbol methodSymbol = (MethodSymbol) selfClassSymbol.lookupMethod(implicitCall.getMethodId().getNameId());
             if (methodSymbol == null) {
-                SymbolTable.error(implicitCall.getParserRuleContext(), implicitCall.getMethodId().getToken(),
-                        "Undefined method " + implicitCall.getMethodId().getToken().getText() + " in class " + selfClassSymbol.getName());
+                symbolTable.error(implicitCall.getFileId(), implicitCall.getMethodId().getToken(),
+                        "Undefined method " + implicitCall.getMethodId().getName() + " in class " + selfClassSymbol.getName());
                 return null;
             }
         }
@@ -158,26 +168,20 @@ public class ASTFirstResolutionVisitor implements ASTVisitor<Void> {
 
     @Override
     public Void visit(New newExpr) {
-        ClassSymbol newExprClassSymbol = (ClassSymbol) SymbolTable.globals.lookup(newExpr.getTypeId().getToken().getText(), false);
+        ClassSymbol newExprClassSymbol = (ClassSymbol) symbolTable.getGlobals().lookup(newExpr.getTypeId().getNameId(), false);
 
-        if (newExprClassSymbol == null && !newExpr.getTypeId().getToken().getText().equals("SELF_TYPE")) {
-            SymbolTable.error(newExpr.getParserRuleContext(), newExpr.getTypeId().getToken(),
-                    "new is used with undefined type " + newExpr.getTypeId().getToken().getText());
+        if (newExprClassSymbol == null && newExpr.getTypeId().getNameId() != Names.SELF_TYPE) {
+            symbolTable.error(newExpr.getFileId(), newExpr.getTypeId().getToken(),
+                    "new is used with undefined type " + newExpr.getTypeId().getName());
             return null;
         } else {
             ClassSymbolWrapper classSymbolWrapper;
 
-            if (newExpr.getTypeId().getToken().getText().equals("SELF_TYPE")) {
-                Scope initialScope = newExpr.getResolutionScope();
-
-                while (initialScope != null && !(initialScope instanceof ClassSymbol)) {
-                    initialScope = initialScope.getParent();
-                }
-
-                classSymbolWrapper = new ClassSymbolWrapper((ClassSymbol) initialScope, true);
+            if (newExpr.getTypeId().getNameId() == Names.SELF_TYPE) {
+                classSymbolWrapper = ClassSymbolWrapper.of(newExpr.getEnclosingClass(), true);
 
             } else {
-                classSymbolWrapper = new ClassSymbolWrapper(newExprClassSymbol, false);
+                classSymbolWrapper = ClassSymbolWrapper.of(newExprClassSymbol, false);
             }
 
             newExpr.setClassSymbolWrapper(classSymbolWrapper);
@@ -195,27 +199,17 @@ public class ASTFirstResolutionVisitor implements ASTVisitor<Void> {
 
     @Override
     public Void visit(ObjectId objectId) {
-        if (objectId.getResolutionScope() != null) {
-            if (objectId.getResolutionScope().lookup(objectId.getToken().getText(), true) == null) {
-                SymbolTable.error(objectId.getParserRuleContext(), objectId.getToken(), "Undefined identifier " + objectId.getToken().getText());
+        // Identifiers not bound to a formal, let or case variable when
+        // defined refer to attributes, or to nothing.
+        if (objectId.getEnclosingClass() != null && objectId.getBinding() == null) {
+            Symbol symbol = objectId.getEnclosingClass().lookupField(objectId.getNameId());
+
+            if (symbol == null) {
+                symbolTable.error(objectId.getFileId(), objectId.getToken(), "Undefined identifier " + objectId.getName());
                 return null;
-            } else {
-                Symbol symbol = objectId.getResolutionScope().lookup(objectId.getToken().getText(), true);
-
-                if (symbol instanceof LocalSymbol) {
-                    objectId.getObjectIdSymbol().setTypeSymbol(((LocalSymbol) symbol).getTypeSymbol());
-                    objectId.getObjectIdSymbol().setIntroducingScope(((LocalSymbol) symbol));
-                } else if (symbol instanceof FieldSymbol) {
-                    objectId.getObjectIdSymbol().setTypeSymbol(((FieldSymbol) symbol).getTypeSymbol());
-                    objectId.getObjectIdSymbol().setIntroducingScope(((FieldSymbol) symbol).getIntroducingClass());
-                } else if (symbol instanceof BranchSymbol) {
-                    objectId.getObjectIdSymbol().setTypeSymbol(((BranchSymbol) symbol).getTypeSymbol());
-                    objectId.getObjectIdSymbol().setIntroducingScope(((BranchSymbol) symbol));
-                } else if (symbol instanceof FormalSymbol) {
-                    objectId.getObjectIdSymbol().setTypeSymbol(((FormalSymbol) symbol).getTypeSymbol());
-                    objectId.getObjectIdSymbol().setIntroducingScope(((FormalSymbol) symbol).getIntroducingMethod());
-                }
             }
+
+            objectId.setBinding(((FieldSymbol) symbol).getBinding());
         }
 
         return null;
@@ -247,20 +241,20 @@ public class ASTFirstResolutionVisitor implements ASTVisitor<Void> {
     @Override
     public Void visit(Field field) {
         if (field.getFieldSymbol() != null) {
-            String fieldType = field.getTypeId().getToken().getText();
-            ClassSymbol fieldClassSymbol = (ClassSymbol) SymbolTable.globals.lookup(fieldType, false);
+            String fieldType = field.getTypeId().getName();
+            ClassSymbol fieldClassSymbol = (ClassSymbol) symbolTable.getGlobals().lookup(field.getTypeId().getNameId(), false);
 
-            if (fieldClassSymbol == null && !fieldType.equals("SELF_TYPE")) {
-                SymbolTable.error(field.getParserRuleContext(), field.getTypeId().getToken(), "Class " + field.getClassSymbol().getName()
-                        + " has attribute " + field.getFieldId().getToken().getText() + " with undefined type " + fieldType);
+            if (fieldClassSymbol == null && field.getTypeId().getNameId() != Names.SELF_TYPE) {
+                symbolTable.error(field.getFileId(), field.getTypeId().getToken(), "Class " + field.getClassSymbol().getName()
+                        + " has attribute " + field.getFieldId().getName() + " with undefined type " + fieldType);
                 return null;
             } else {
                 ClassSymbolWrapper classSymbolWrapper;
 
-                if (fieldType.equals("SELF_TYPE")) {
-                    classSymbolWrapper = new ClassSymbolWrapper(field.getClassSymbol(), true);
+                if (field.getTypeId().getNameId() == Names.SELF_TYPE) {
+                    classSymbolWrapper = ClassSymbolWrapper.of(field.getClassSymbol(), true);
                 } else {
-                    classSymbolWrapper = new ClassSymbolWrapper(fieldClassSymbol, false);
+                    classSymbolWrapper = ClassSymbolWrapper.of(fieldClassSymbol, false);
                 }
 
                 field.getFieldSymbol().setTypeSymbol(classSymbolWrapper);
@@ -277,20 +271,20 @@ public class ASTFirstResolutionVisitor implements ASTVisitor<Void> {
     @Override
     public Void visit(Method method) {
         if (method.getMethodSymbol() != null) {
-            String returnType = method.getReturnType().getToken().getText();
-            ClassSymbol returnClassSymbol = (ClassSymbol) SymbolTable.globals.lookup(returnType, false);
+            String returnType = method.getReturnType().getName();
+            ClassSymbol returnClassSymbol = (ClassSymbol) symbolTable.getGlobals().lookup(method.getReturnType().getNameId(), false);
 
-            if (returnClassSymbol == null && !returnType.equals("SELF_TYPE")) {
-                SymbolTable.error(method.getParserRuleContext(), method.getReturnType().getToken(), "Class " + method.getClassSymbol().getName()
-                        + " has method " + method.getMethodId().getToken().getText() + " with undefined return type " + returnType);
+            if (returnClassSymbol == null && method.getReturnType().getNameId() != Names.SELF_TYPE) {
+                symbolTable.error(method.getFileId(), method.getReturnType().getToken(), "Class " + method.getClassSymbol().getName()
+                        + " has method " + method.getMethodId().getName() + " with undefined return type " + returnType);
                 return null;
             } else {
                 ClassSymbolWrapper classSymbolWrapper;
 
-                if (returnType.equals("SELF_TYPE")) {
-                    classSymbolWrapper = new ClassSymbolWrapper(method.getClassSymbol(), true);
+                if (method.getReturnType().getNameId() == Names.SELF_TYPE) {
+                    classSymbolWrapper = ClassSymbolWrapper.of(method.getClassSymbol(), true);
                 } else {
-                    classSymbolWrapper = new ClassSymbolWrapper(returnClassSymbol, false);
+                    classSymbolWrapper = ClassSymbolWrapper.of(returnClassSymbol, false);
                 }
 
                 method.getMethodSymbol().setTypeSymbol(classSymbolWrapper);
@@ -298,11 +292,11 @@ public class ASTFirstResolutionVisitor implements ASTVisitor<Void> {
 
             ClassSymbol parentClassSymbol = (ClassSymbol) method.getClassSymbol().getDirectParent();
             if (parentClassSymbol != null) {
-                MethodSymbol parentMethodSymbol = (MethodSymbol) parentClassSymbol.lookup(method.getMethodId().getToken().getText(), false);
+                MethodSymbol parentMethodSymbol = (MethodSymbol) parentClassSymbol.lookup(method.getMethodId().getNameId(), false);
 
                 if (parentMethodSymbol != null && method.getFormals().size() != parentMethodSymbol.getMethod().getFormals().size()) {
-                    SymbolTable.error(method.getParserRuleContext(), method.getMethodId().getToken(), "Class " + method.getClassSymbol().getName()
-                            + " overrides method " + method.getMethodId().getToken().getText() + " with different number of formal parameters");
+                    symbolTable.error(method.getFileId(), method.getMethodId().getToken(), "Class " + method.getClassSymbol().getName()
+                            + " overrides method " + method.getMethodId().getName() + " with different number of formal parameters");
                     return null;
                 }
 
@@ -312,22 +306,22 @@ public class ASTFirstResolutionVisitor implements ASTVisitor<Void> {
                         Formal parentFormal = parentMethodSymbol.getMethod().getFormals().get(i);
 
                         if (formal.getTypeId() != null && parentFormal.getTypeId() != null) {
-                            if (!formal.getTypeId().getToken().getText().equals(parentFormal.getTypeId().getToken().getText())) {
-                                SymbolTable.error(method.getParserRuleContext(), formal.getTypeId().getToken(),
-                                        "Class " + method.getClassSymbol().getName() + " overrides method " + method.getMethodId().getToken().getText()
-                                                + " but changes type of formal parameter " + formal.getObjectId().getToken().getText() + " from "
-                                                + parentFormal.getTypeId().getToken().getText() + " to " + formal.getTypeId().getToken().getText());
+                            if (!formal.getTypeId().getName().equals(parentFormal.getTypeId().getName())) {
+                                symbolTable.error(method.getFileId(), formal.getTypeId().getToken(),
+                                        "Class " + method.getClassSymbol().getName() + " overrides method " + method.getMethodId().getName()
+                                                + " but changes type of formal parameter " + formal.getObjectId().getName() + " from "
+                                                + parentFormal.getTypeId().getName() + " to " + formal.getTypeId().getName());
                                 return null;
                             }
                         }
                     }
 
                     if (method.getReturnType() != null && parentMethodSymbol.getMethod().getReturnType() != null) {
-                        if (!method.getReturnType().getToken().getText().equals(parentMethodSymbol.getMethod().getReturnType().getToken().getText())) {
-                            SymbolTable.error(method.getParserRuleContext(), method.getReturnType().getToken(),
-                                    "Class " + method.getClassSymbol().getName() + " overrides method " + method.getMethodId().getToken().getText()
-                                            + " but changes return type from " + parentMethodSymbol.getMethod().getReturnType().getToken().getText()
-                                            + " to " + method.getReturnType().getToken().getText());
+                        if (!method.getReturnType().getName().equals(parentMethodSymbol.getMethod().getReturnType().getName())) {
+                            symbolTable.error(method.getFileId(), method.getReturnType().getToken(),
+                                    "Class " + method.getClassSymbol().getName() + " overrides method " + method.getMethodId().getName()
+                                            + " but changes return type from " + parentMethodSymbol.getMethod().getReturnType().getName()
+                                            + " to " + method.getReturnType().getName());
                             return null;
                         }
                     }
@@ -344,26 +338,20 @@ public class ASTFirstResolutionVisitor implements ASTVisitor<Void> {
     @Override
     public Void visit(Local local) {
         if (local.getLocalSymbol() != null) {
-            String localType = local.getTypeId().getToken().getText();
-            ClassSymbol localClassSymbol = (ClassSymbol) SymbolTable.globals.lookup(localType, false);
+            String localType = local.getTypeId().getName();
+            ClassSymbol localClassSymbol = (ClassSymbol) symbolTable.getGlobals().lookup(local.getTypeId().getNameId(), false);
 
-            if (localClassSymbol == null && !localType.equals("SELF_TYPE")) {
-                SymbolTable.error(local.getParserRuleContext(), local.getTypeId().getToken(),
-                        "Let variable " + local.getObjectId().getToken().getText() + " has undefined type " + localType);
+            if (localClassSymbol == null && local.getTypeId().getNameId() != Names.SELF_TYPE) {
+                symbolTable.error(local.getFileId(), local.getTypeId().getToken(),
+                        "Let variable " + local.getObjectId().getName() + " has undefined type " + localType);
                 return null;
             } else {
                 ClassSymbolWrapper classSymbolWrapper;
 
-                if (localType.equals("SELF_TYPE")) {
-                    Scope initialScope = local.getResolutionScope();
-
-                    while (initialScope != null && !(initialScope instanceof ClassSymbol)) {
-                        initialScope = initialScope.getParent();
-                    }
-
-                    classSymbolWrapper = new ClassSymbolWrapper((ClassSymbol) initialScope, true);
+                if (local.getTypeId().getNameId() == Names.SELF_TYPE) {
+                    classSymbolWrapper = ClassSymbolWrapper.of(local.getEnclosingClass(), true);
                 } else {
-                    classSymbolWrapper = new ClassSymbolWrapper(localClassSymbol, false);
+                    classSymbolWrapper = ClassSymbolWrapper.of(localClassSymbol, false);
                 }
 
                 local.getLocalSymbol().setTypeSymbol(classSymbolWrapper);
@@ -380,16 +368,16 @@ public class ASTFirstResolutionVisitor implements ASTVisitor<Void> {
     @Override
     public Void visit(Formal formal) {
         if (formal.getFormalSymbol() != null) {
-            String returnType = formal.getTypeId().getToken().getText();
-            ClassSymbol returnClassSymbol = (ClassSymbol) SymbolTable.globals.lookup(returnType, false);
+            String returnType = formal.getTypeId().getName();
+            ClassSymbol returnClassSymbol = (ClassSymbol) symbolTable.getGlobals().lookup(formal.getTypeId().getNameId(), false);
 
             if (returnClassSymbol == null) {
-                SymbolTable.error(formal.getParserRuleContext(), formal.getTypeId().getToken(), "Method " + formal.getMethodSymbol().getName()
+                symbolTable.error(formal.getFileId(), formal.getTypeId().getToken(), "Method " + formal.getMethodSymbol().getName()
                         + " of class " + formal.getMethodSymbol().getMethod().getClassSymbol().getName() + " has formal parameter "
                         + formal.getFormalSymbol().getName() + " with undefined type " + returnType);
                 return null;
             } else {
-                ClassSymbolWrapper classSymbolWrapper = new ClassSymbolWrapper(returnClassSymbol, false);
+                ClassSymbolWrapper classSymbolWrapper = ClassSymbolWrapper.of(returnClassSymbol, false);
                 formal.getFormalSymbol().setTypeSymbol(classSymbolWrapper);
             }
         }
@@ -399,7 +387,28 @@ public class ASTFirstResolutionVisitor implements ASTVisitor<Void> {
 
     @Override
     public Void visit(Program program) {
-        program.getClasses().forEach(classNode -> classNode.accept(this));
+        var classes = program.getClasses();
+        for (int i = 0; i < classes.size(); i++) {
+            int classIndex = i;
+            ClassNode classNode = classes.get(classIndex);
+
+            // A class kept is linked where it was, for the lookups of the
+            // classes after it to see the same links.
+            var span = profiler.span("ASTFirstResolutionVisitor", classNode.getClassName().getName());
+            try {
+                if (analysis == null)
+                    diagnostics.withinUnit(classIndex, () -> classNode.accept(this));
+                else
+                    diagnostics.withinUnit(classIndex, () -> analysis.check(classIndex, () -> classNode.accept(this),
+                            () -> classNode.getClassSymbolWrapper().getClassSymbol()
+                                    .setDirectParent(analysis.getParent(classIndex))));
+            } finally {
+                span.end();
+            }
+        }
+
+        // All parents are known now.
+        symbolTable.buildHierarchy();
 
         return null;
     }
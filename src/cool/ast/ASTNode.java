@@ -1,25 +1,30 @@
 package cool.ast;
 
 import cool.structures.ClassSymbolWrapper;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 public abstract class ASTNode {
+    // File id of nodes that do not come from source, e.g. the methods of
+    // the basic classes.
+    public static final int NO_FILE = -1;
+
     private final Token token;
-    private final ParserRuleContext parserRuleContext;
+    // Index of the node's source file among the compiled files; the token
+    // gives the line and column.
+    private final int fileId;
     private ClassSymbolWrapper computedReturnType;
 
-    public ASTNode(Token token, ParserRuleContext parserRuleContext) {
+    public ASTNode(Token token, int fileId) {
         this.token = token;
-        this.parserRuleContext = parserRuleContext;
+        this.fileId = fileId;
     }
 
     public Token getToken() {
         return token;
     }
 
-    public ParserRuleContext getParserRuleContext() {
-        return parserRuleContext;
+    public int getFileId() {
+        return fileId;
     }
 
     public ClassSymbolWrapper getComputedReturnType() {
@@ -9,11 +9,18 @@ import cool.ast.formal.Formal;
 import cool.ast.local.Local;
 import cool.ast.program.Program;
 import cool.ast.type.TypeId;
+import cool.compiler.CompilationSession;
 import cool.structures.*;
 
-import java.util.ArrayList;
-
 public class ASTSecondResolutionVisitor implements ASTVisitor<Void> {
+    private final CompilationSession session;
+    private final SymbolTable symbolTable;
+
+    public ASTSecondResolutionVisitor(CompilationSession session) {
+        this.session = session;
+        this.symbolTable = session.getSymbolTable();
+    }
+
     @Override
     public Void visit(Branch branch) {
         return null;
@@ -24,26 +31,14 @@ public class ASTSecondResolutionVisitor implements ASTVisitor<Void> {
         if (classNode.getClassSymbolWrapper() != null) {
             ClassSymbol classSymbol = classNode.getClassSymbolWrapper().getClassSymbol();
 
-            if (classSymbol != null && classNode.getParentName() != null) {
-                ClassSymbol parentClassSymbol = (ClassSymbol) classSymbol.getDirectParent();
+            if (classSymbol != null && symbolTable.getHierarchy().isInCycle(classSymbol)) {
+                symbolTable.error(classNode.getFileId(), classNode.getClassName().getToken(),
+                        "Inheritance cycle for class " + classNode.getClassName().getName());
 
-                if (parentClassSymbol != null) {
-                    if (parentClassSymbol.isInCycle(classSymbol)) {
-                        SymbolTable.error(classNode.getParserRuleContext(), classNode.getClassName().getToken(),
-                                "Inheritance cycle for class " + classNode.getClassName().getToken().getText());
-
-                        return null;
-                    }
-                }
+                return null;
             }
         }
 
-        ASTCodeGenVisitor.classMethods.put(classNode.getClassName().getToken().getText(), new ArrayList<>());
-        ASTCodeGenVisitor.classAttributes.put(classNode.getClassName().getToken().getText(), new ArrayList<>());
-
-        classNode.getClassSymbolWrapper().getClassSymbol().populateFields(classNode.getClassName().getToken().getText());
-        classNode.getClassSymbolWrapper().getClassSymbol().populateMethods(classNode.getClassName().getToken().getText());
-
         classNode.getFeatures().forEach(feature -> feature.accept(this));
 
         return null;
@@ -138,14 +133,14 @@ public class ASTSecondResolutionVisitor implements ASTVisitor<Void> {
     public Void visit(Field field) {
         if (field.getFieldSymbol() != null) {
             if (field.getClassSymbol().getDirectParent() != null) {
-                ClassSymbol parentClassSymbol = (ClassSymbol) SymbolTable.globals.lookup(((ClassSymbol) field.getClassSymbol().getDirectParent()).getName(), false);
+                ClassSymbol parentClassSymbol = (ClassSymbol) symbolTable.getGlobals().lookup(((ClassSymbol) field.getClassSymbol().getDirectParent()).getNameId(), false);
 
                 if (parentClassSymbol != null) {
-                    FieldSymbol parentFieldSymbol = (FieldSymbol) parentClassSymbol.lookup(field.getFieldId().getToken().getText(), true);
+                    FieldSymbol parentFieldSymbol = (FieldSymbol) parentClassSymbol.lookup(field.getFieldId().getNameId(), true);
 
                     if (parentFieldSymbol != null) {
-                        SymbolTable.error(field.getParserRuleContext(), field.getFieldId().getToken(), "Class " + field.getClassSymbol().getName() +
-                                " redefines inherited attribute " + field.getFieldId().getToken().getText());
+                        symbolTable.error(field.getFileId(), field.getFieldId().getToken(), "Class " + field.getClassSymbol().getName() +
+                                " redefines inherited attribute " + field.getFieldId().getName());
                         return null;
                     }
                 }
@@ -176,7 +171,14 @@ public class ASTSecondResolutionVisitor implements ASTVisitor<Void> {
 
     @Override
     public Void visit(Program program) {
-        program.getClasses().forEach(classNode -> classNode.accept(this));
+        for (ClassNode classNode : program.getClasses()) {
+            var span = session.getProfiler().span("ASTSecondResolutionVisitor", classNode.getClassName().getName());
+            try {
+                classNode.accept(this);
+            } finally {
+                span.end();
+            }
+        }
 
         return null;
     }
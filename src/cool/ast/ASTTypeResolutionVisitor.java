@@ -9,9 +9,18 @@ import cool.ast.formal.Formal;
 import cool.ast.local.Local;
 import cool.ast.program.Program;
 import cool.ast.type.TypeId;
+import cool.compiler.CompilationSession;
+import cool.compiler.CompileProfiler;
 import cool.structures.*;
 
 public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper> {
+    private final SymbolTable symbolTable;
+    private final CompileProfiler profiler;
+
+    public ASTTypeResolutionVisitor(CompilationSession session) {
+        this.symbolTable = session.getSymbolTable();
+        this.profiler = session.getProfiler();
+    }
 
     @Override
     public ClassSymbolWrapper visit(Branch branch) {
@@ -41,32 +50,32 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
         if (left != null && right != null) {
             ClassSymbol rightType = right.getClassSymbol();
             ClassSymbol leftType = left.getClassSymbol();
-            ClassSymbol intClass = (ClassSymbol) SymbolTable.globals.lookup("Int", false);
+            ClassSymbol intClass = (ClassSymbol) symbolTable.getGlobals().lookup(Names.INT, false);
 
             if (leftType != intClass) {
                 if (left.isSelfType()) {
-                    SymbolTable.error(arithmetic.getParserRuleContext(), arithmetic.getLeft().getToken(),
+                    symbolTable.error(arithmetic.getFileId(), arithmetic.getLeft().getToken(),
                             "Operand of " + arithmetic.getOp().getText() + " has type SELF_TYPE instead of Int");
                 } else {
-                    SymbolTable.error(arithmetic.getParserRuleContext(), arithmetic.getLeft().getToken(),
+                    symbolTable.error(arithmetic.getFileId(), arithmetic.getLeft().getToken(),
                             "Operand of " + arithmetic.getOp().getText() + " has type " + leftType.getName() + " instead of Int");
 
                 }
 
-                ClassSymbolWrapper computedReturnType = new ClassSymbolWrapper(intClass, false);
+                ClassSymbolWrapper computedReturnType = ClassSymbolWrapper.of(intClass, false);
                 arithmetic.setComputedReturnType(computedReturnType);
 
                 return computedReturnType;
             } else if (rightType != intClass) {
                 if (right.isSelfType()) {
-                    SymbolTable.error(arithmetic.getParserRuleContext(), arithmetic.getRight().getToken(),
+                    symbolTable.error(arithmetic.getFileId(), arithmetic.getRight().getToken(),
                             "Operand of " + arithmetic.getOp().getText() + " has type SELF_TYPE instead of Int");
                 } else {
-                    SymbolTable.error(arithmetic.getParserRuleContext(), arithmetic.getRight().getToken(),
+                    symbolTable.error(arithmetic.getFileId(), arithmetic.getRight().getToken(),
                             "Operand of " + arithmetic.getOp().getText() + " has type " + rightType.getName() + " instead of Int");
                 }
 
-                ClassSymbolWrapper computedReturnType = new ClassSymbolWrapper(intClass, false);
+                ClassSymbolWrapper computedReturnType = ClassSymbolWrapper.of(intClass, false);
                 arithmetic.setComputedReturnType(computedReturnType);
 
                 return computedReturnType;
@@ -86,25 +95,25 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
         if (exprType != null) {
             ClassSymbol exprClass = exprType.getClassSymbol();
 
-            if (assign.getObjectId().getObjectIdSymbol() != null) {
-                ClassSymbolWrapper objectIdType = assign.getObjectId().getObjectIdSymbol().getTypeSymbol();
+            if (assign.getObjectId().getBinding() != null) {
+                ClassSymbolWrapper objectIdType = assign.getObjectId().getBinding().getTypeSymbol();
 
                 if (objectIdType != null) {
                     ClassSymbol objectIdClass = objectIdType.getClassSymbol();
 
                     if (!exprClass.isChildOf(objectIdClass) || (objectIdType.isSelfType() && !exprType.isSelfType())) {
                         if (exprType.isSelfType()) {
-                            SymbolTable.error(assign.getParserRuleContext(), assign.getExpr().getToken(),
+                            symbolTable.error(assign.getFileId(), assign.getExpr().getToken(),
                                     "Type SELF_TYPE of assigned expression is incompatible with declared type "
-                                            + objectIdClass.getName() + " of identifier " + assign.getObjectId().getToken().getText());
+                                            + objectIdClass.getName() + " of identifier " + assign.getObjectId().getName());
                         } else if (objectIdType.isSelfType()) {
-                            SymbolTable.error(assign.getParserRuleContext(), assign.getExpr().getToken(),
+                            symbolTable.error(assign.getFileId(), assign.getExpr().getToken(),
                                     "Type " + exprClass.getName() + " of assigned expression is incompatible with declared type "
-                                            + "SELF_TYPE of identifier " + assign.getObjectId().getToken().getText());
+                                            + "SELF_TYPE of identifier " + assign.getObjectId().getName());
                         } else {
-                            SymbolTable.error(assign.getParserRuleContext(), assign.getExpr().getToken(),
+                            symbolTable.error(assign.getFileId(), assign.getExpr().getToken(),
                                     "Type " + exprClass.getName() + " of assigned expression is incompatible with declared type "
-                                            + objectIdClass.getName() + " of identifier " + assign.getObjectId().getToken().getText());
+                                            + objectIdClass.getName() + " of identifier " + assign.getObjectId().getName());
                         }
                     }
                 }
@@ -131,7 +140,7 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
 
     @Override
     public ClassSymbolWrapper visit(Bool bool) {
-        ClassSymbolWrapper computedReturnType = new ClassSymbolWrapper((ClassSymbol) SymbolTable.globals.lookup("Bool", false), false);
+        ClassSymbolWrapper computedReturnType = ClassSymbolWrapper.of((ClassSymbol) symbolTable.getGlobals().lookup(Names.BOOL, false), false);
         bool.setComputedReturnType(computedReturnType);
 
         return computedReturnType;
@@ -150,19 +159,12 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
                 if (finalType == null) {
                     finalType = branchClass;
                 } else {
-                    int finalTypeParents = finalType.countParents();
-                    int branchTypeParents = branchClass.countParents();
-
-                    if (finalTypeParents > branchTypeParents) {
-                        finalType = finalType.leastUpperBound(branchClass);
-                    } else {
-                        finalType = branchClass.leastUpperBound(finalType);
-                    }
+                    finalType = symbolTable.join(finalType, branchClass);
                 }
             }
         }
 
-        ClassSymbolWrapper computedReturnType = new ClassSymbolWrapper(finalType, false);
+        ClassSymbolWrapper computedReturnType = ClassSymbolWrapper.of(finalType, false);
         caseExpr.setComputedReturnType(computedReturnType);
 
         return computedReturnType;
@@ -174,17 +176,17 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
 
         if (dispatchExprType != null) {
             if (explicitCall.getClassType() == null) {
-                MethodSymbol methodSymbol = (MethodSymbol) dispatchExprType.getClassSymbol().lookupMethod(explicitCall.getMethodId().getToken().getText());
+                MethodSymbol methodSymbol = (MethodSymbol) dispatchExprType.getClassSymbol().lookupMethod(explicitCall.getMethodId().getNameId());
 
                 if (methodSymbol == null) {
-                    SymbolTable.error(explicitCall.getParserRuleContext(), explicitCall.getMethodId().getToken(), "Undefined method " +
-                            explicitCall.getMethodId().getToken().getText() + " in class " + dispatchExprType.getClassSymbol().getName());
+                    symbolTable.error(explicitCall.getFileId(), explicitCall.getMethodId().getToken(), "Undefined method " +
+                            explicitCall.getMethodId().getName() + " in class " + dispatchExprType.getClassSymbol().getName());
 
                     return null;
                 } else {
                     if (methodSymbol.getMethod().getFormals().size() != explicitCall.getParams().size()) {
-                        SymbolTable.error(explicitCall.getParserRuleContext(), explicitCall.getMethodId().getToken(), "Method " +
-                                explicitCall.getMethodId().getToken().getText() + " of class " + dispatchExprType.getClassSymbol().getName() + " is applied to wrong number of arguments");
+                        symbolTable.error(explicitCall.getFileId(), explicitCall.getMethodId().getToken(), "Method " +
+                                explicitCall.getMethodId().getName() + " of class " + dispatchExprType.getClassSymbol().getName() + " is applied to wrong number of arguments");
 
                         return null;
                     }
@@ -195,7 +197,7 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
                         ClassSymbol formalClass = methodSymbol.getMethod().getFormals().get(i).getFormalSymbol().getTypeSymbol().getClassSymbol();
 
                         if (!paramClass.isChildOf(formalClass)) {
-                            SymbolTable.error(explicitCall.getParserRuleContext(), explicitCall.getParams().get(i).getToken(),
+                            symbolTable.error(explicitCall.getFileId(), explicitCall.getParams().get(i).getToken(),
                                     "In call to method " + methodSymbol.getName() + " of class " + dispatchExprType.getClassSymbol().getName() + ", actual type " +
                                             paramClass.getName() + " of formal parameter " + methodSymbol.getMethod().getFormals().get(i).getFormalSymbol().getName() +
                                             " is incompatible with declared type " + formalClass.getName());
@@ -213,39 +215,39 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
                     }
                 }
             } else {
-                if (explicitCall.getClassType().getToken().getText().equals("SELF_TYPE")) {
-                    SymbolTable.error(explicitCall.getParserRuleContext(), explicitCall.getClassType().getToken(),
+                if (explicitCall.getClassType().getNameId() == Names.SELF_TYPE) {
+                    symbolTable.error(explicitCall.getFileId(), explicitCall.getClassType().getToken(),
                             "Type of static dispatch cannot be SELF_TYPE");
 
                     return null;
                 }
 
-                ClassSymbol classType = (ClassSymbol) SymbolTable.globals.lookup(explicitCall.getClassType().getToken().getText(), false);
+                ClassSymbol classType = (ClassSymbol) symbolTable.getGlobals().lookup(explicitCall.getClassType().getNameId(), false);
                 if (classType == null) {
-                    SymbolTable.error(explicitCall.getParserRuleContext(), explicitCall.getClassType().getToken(),
-                            "Type " + explicitCall.getClassType().getToken().getText() + " of static dispatch is undefined");
+                    symbolTable.error(explicitCall.getFileId(), explicitCall.getClassType().getToken(),
+                            "Type " + explicitCall.getClassType().getName() + " of static dispatch is undefined");
 
                     return null;
                 }
 
                 if (!dispatchExprType.getClassSymbol().isChildOf(classType)) {
-                    SymbolTable.error(explicitCall.getParserRuleContext(), explicitCall.getClassType().getToken(), "Type " +
+                    symbolTable.error(explicitCall.getFileId(), explicitCall.getClassType().getToken(), "Type " +
                             classType.getName() + " of static dispatch is not a superclass of type " + dispatchExprType.getClassSymbol().getName());
 
                     return null;
                 }
 
-                MethodSymbol methodSymbol = (MethodSymbol) classType.lookupMethod(explicitCall.getMethodId().getToken().getText());
+                MethodSymbol methodSymbol = (MethodSymbol) classType.lookupMethod(explicitCall.getMethodId().getNameId());
 
                 if (methodSymbol == null) {
-                    SymbolTable.error(explicitCall.getParserRuleContext(), explicitCall.getMethodId().getToken(), "Undefined method " +
-                            explicitCall.getMethodId().getToken().getText() + " in class " + classType.getName());
+                    symbolTable.error(explicitCall.getFileId(), explicitCall.getMethodId().getToken(), "Undefined method " +
+                            explicitCall.getMethodId().getName() + " in class " + classType.getName());
 
                     return null;
                 } else {
                     if (methodSymbol.getMethod().getFormals().size() != explicitCall.getParams().size()) {
-                        SymbolTable.error(explicitCall.getParserRuleContext(), explicitCall.getMethodId().getToken(),
-                                "Method " + explicitCall.getMethodId().getToken().getText() + " of class "
+                        symbolTable.error(explicitCall.getFileId(), explicitCall.getMethodId().getToken(),
+                                "Method " + explicitCall.getMethodId().getName() + " of class "
                                         + dispatchExprType.getClassSymbol().getName() + " is applied to wrong number of arguments");
 
                         return null;
@@ -257,7 +259,7 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
                         ClassSymbol formalClass = methodSymbol.getMethod().getFormals().get(i).getFormalSymbol().getTypeSymbol().getClassSymbol();
 
                         if (!paramClass.isChildOf(formalClass)) {
-                            SymbolTable.error(explicitCall.getParserRuleContext(), explicitCall.getParams().get(i).getToken(),
+                            symbolTable.error(explicitCall.getFileId(), explicitCall.getParams().get(i).getToken(),
                                     "In call to method " + methodSymbol.getName() + " of class " + dispatchExprType.getClassSymbol().getName() + ", actual type " +
                                             paramClass.getName() + " of formal parameter " + methodSymbol.getMethod().getFormals().get(i).getFormalSymbol().getName() +
                                             " is incompatible with declared type " + formalClass.getName());
@@ -281,13 +283,13 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
     @Override
     public ClassSymbolWrapper visit(If ifExpr) {
         ClassSymbolWrapper condExprType = ifExpr.getCond().accept(this);
-        ClassSymbol boolClass = (ClassSymbol) SymbolTable.globals.lookup("Bool", false);
+        ClassSymbol boolClass = (ClassSymbol) symbolTable.getGlobals().lookup(Names.BOOL, false);
 
         if (condExprType != null) {
             ClassSymbol condExprClass = condExprType.getClassSymbol();
 
             if (condExprClass != boolClass) {
-                SymbolTable.error(ifExpr.getParserRuleContext(), ifExpr.getCond().getToken(),
+                symbolTable.error(ifExpr.getFileId(), ifExpr.getCond().getToken(),
                         "If condition has type " + condExprClass.getName() + " instead of Bool");
             }
         }
@@ -299,32 +301,14 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
             ClassSymbol thenExprClass = thenExprType.getClassSymbol();
             ClassSymbol elseExprClass = elseExprType.getClassSymbol();
 
-            int thenExprParents = thenExprClass.countParents();
-            int elseExprParents = elseExprClass.countParents();
-
-            if (thenExprParents > elseExprParents) {
-                boolean isSelfType = false;
-                ClassSymbol result = thenExprClass.leastUpperBound(elseExprClass);
-                if (result == thenExprClass && result == elseExprClass && thenExprType.isSelfType()) {
-                    isSelfType = true;
-                }
-
-                ClassSymbolWrapper computedReturnType = new ClassSymbolWrapper(thenExprClass.leastUpperBound(elseExprClass), isSelfType);
-                ifExpr.setComputedReturnType(computedReturnType);
-
-                return computedReturnType;
-            } else {
-                boolean isSelfType = false;
-                ClassSymbol result = elseExprClass.leastUpperBound(thenExprClass);
-                if (result == thenExprClass && result == elseExprClass && elseExprType.isSelfType()) {
-                    isSelfType = true;
-                }
-
-                ClassSymbolWrapper computedReturnType = new ClassSymbolWrapper(elseExprClass.leastUpperBound(thenExprClass), isSelfType);
-                ifExpr.setComputedReturnType(computedReturnType);
+            // Both branches being of the same class, the if is SELF_TYPE
+            // if the else branch is.
+            ClassSymbolWrapper computedReturnType = thenExprClass == elseExprClass
+                    ? elseExprType
+                    : symbolTable.join(thenExprClass, elseExprClass).getType();
+            ifExpr.setComputedReturnType(computedReturnType);
 
-                return computedReturnType;
-            }
+            return computedReturnType;
         }
 
         return null;
@@ -332,15 +316,14 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
 
     @Override
     public ClassSymbolWrapper visit(ImplicitCall implicitCall) {
-        if (implicitCall.getResolutionScope() != null) {
-            FieldSymbol selfSymbol = (FieldSymbol) implicitCall.getResolutionScope().lookup("self", true);
-            ClassSymbolWrapper selfClassSymbolWrapper = selfSymbol.getTypeSymbol();
-            MethodSymbol methodSymbol = (MethodSymbol) selfClassSymbolWrapper.getClassSymbol().lookupMethod(implicitCall.getMethodId().getToken().getText());
+        if (implicitCall.getEnclosingClass() != null) {
+            ClassSymbolWrapper selfClassSymbolWrapper = implicitCall.getEnclosingClass().getSelfType();
+            MethodSymbol methodSymbol = (MethodSymbol) selfClassSymbolWrapper.getClassSymbol().lookupMethod(implicitCall.getMethodId().getNameId());
 
             if (methodSymbol != null) {
                 if (methodSymbol.getMethod().getFormals().size() != implicitCall.getParams().size()) {
-                    SymbolTable.error(implicitCall.getParserRuleContext(), implicitCall.getMethodId().getToken(),
-                            "Method " + implicitCall.getMethodId().getToken().getText() + " of class "
+                    symbolTable.error(implicitCall.getFileId(), implicitCall.getMethodId().getToken(),
+                            "Method " + implicitCall.getMethodId().getName() + " of class "
                                     + selfClassSymbolWrapper.getClassSymbol().getName() + " is applied to wrong number of arguments");
 
                     return null;
@@ -352,7 +335,7 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
                     ClassSymbol formalClass = methodSymbol.getMethod().getFormals().get(i).getFormalSymbol().getTypeSymbol().getClassSymbol();
 
                     if (!paramClass.isChildOf(formalClass)) {
-                        SymbolTable.error(implicitCall.getParserRuleContext(), implicitCall.getParams().get(i).getToken(),
+                        symbolTable.error(implicitCall.getFileId(), implicitCall.getParams().get(i).getToken(),
                                 "In call to method " + methodSymbol.getName() + " of class " + selfClassSymbolWrapper.getClassSymbol().getName() + ", actual type " +
                                         paramClass.getName() + " of formal parameter " + methodSymbol.getMethod().getFormals().get(i).getFormalSymbol().getName() +
                                         " is incompatible with declared type " + formalClass.getName());
@@ -374,7 +357,7 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
 
     @Override
     public ClassSymbolWrapper visit(Int intExpr) {
-        ClassSymbolWrapper computedReturnType = new ClassSymbolWrapper((ClassSymbol) SymbolTable.globals.lookup("Int", false), false);
+        ClassSymbolWrapper computedReturnType = ClassSymbolWrapper.of((ClassSymbol) symbolTable.getGlobals().lookup(Names.INT, false), false);
         intExpr.setComputedReturnType(computedReturnType);
 
         return computedReturnType;
@@ -404,24 +387,24 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
         if (left != null && right != null) {
             ClassSymbol rightType = right.getClassSymbol();
             ClassSymbol leftType = left.getClassSymbol();
-            ClassSymbol intClass = (ClassSymbol) SymbolTable.globals.lookup("Int", false);
-            ClassSymbol boolClass = (ClassSymbol) SymbolTable.globals.lookup("Bool", false);
-            ClassSymbol stringClass = (ClassSymbol) SymbolTable.globals.lookup("String", false);
+            ClassSymbol intClass = (ClassSymbol) symbolTable.getGlobals().lookup(Names.INT, false);
+            ClassSymbol boolClass = (ClassSymbol) symbolTable.getGlobals().lookup(Names.BOOL, false);
+            ClassSymbol stringClass = (ClassSymbol) symbolTable.getGlobals().lookup(Names.STRING, false);
 
             if (!logical.getOp().getText().equals("=")) {
                 if (leftType != intClass) {
-                    SymbolTable.error(logical.getParserRuleContext(), logical.getLeft().getToken(),
+                    symbolTable.error(logical.getFileId(), logical.getLeft().getToken(),
                             "Operand of " + logical.getOp().getText() + " has type " + leftType.getName() + " instead of Int");
 
-                    ClassSymbolWrapper computedReturnType = new ClassSymbolWrapper(boolClass, false);
+                    ClassSymbolWrapper computedReturnType = ClassSymbolWrapper.of(boolClass, false);
                     logical.setComputedReturnType(computedReturnType);
 
                     return computedReturnType;
                 } else if (rightType != intClass) {
-                    SymbolTable.error(logical.getParserRuleContext(), logical.getRight().getToken(),
+                    symbolTable.error(logical.getFileId(), logical.getRight().getToken(),
                             "Operand of " + logical.getOp().getText() + " has type " + rightType.getName() + " instead of Int");
 
-                    ClassSymbolWrapper computedReturnType = new ClassSymbolWrapper(boolClass, false);
+                    ClassSymbolWrapper computedReturnType = ClassSymbolWrapper.of(boolClass, false);
                     logical.setComputedReturnType(computedReturnType);
 
                     return computedReturnType;
@@ -430,10 +413,10 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
                 if (leftType == intClass || leftType == boolClass || leftType == stringClass
                     || rightType == intClass || rightType == boolClass || rightType == stringClass) {
                     if (leftType != rightType) {
-                        SymbolTable.error(logical.getParserRuleContext(), logical.getOp(),
+                        symbolTable.error(logical.getFileId(), logical.getOp(),
                                 "Cannot compare " + leftType.getName() + " with " + rightType.getName());
 
-                        ClassSymbolWrapper computedReturnType = new ClassSymbolWrapper(boolClass, false);
+                        ClassSymbolWrapper computedReturnType = ClassSymbolWrapper.of(boolClass, false);
                         logical.setComputedReturnType(computedReturnType);
 
                         return computedReturnType;
@@ -441,7 +424,7 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
                 }
             }
 
-            ClassSymbolWrapper computedReturnType = new ClassSymbolWrapper(boolClass, false);
+            ClassSymbolWrapper computedReturnType = ClassSymbolWrapper.of(boolClass, false);
             logical.setComputedReturnType(computedReturnType);
 
             return computedReturnType;
@@ -452,28 +435,19 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
 
     @Override
     public ClassSymbolWrapper visit(ObjectId objectId) {
-        if (objectId.getResolutionScope() != null) {
-            Symbol symbol = objectId.getResolutionScope().lookup(objectId.getToken().getText(), true);
-
-            if (symbol != null) {
-                if (symbol instanceof LocalSymbol) {
-                    objectId.getObjectIdSymbol().setTypeSymbol(((LocalSymbol) symbol).getTypeSymbol());
-                } else if (symbol instanceof FieldSymbol) {
-                    objectId.getObjectIdSymbol().setTypeSymbol(((FieldSymbol) symbol).getTypeSymbol());
-                } else if (symbol instanceof FormalSymbol) {
-                    objectId.getObjectIdSymbol().setTypeSymbol(((FormalSymbol) symbol).getTypeSymbol());
-                } else if (symbol instanceof BranchSymbol) {
-                    objectId.getObjectIdSymbol().setTypeSymbol(((BranchSymbol) symbol).getTypeSymbol());
-                }
-            }
-        }
+        if (objectId.getEnclosingClass() == null)
+            return null;
 
-        if (objectId.getObjectIdSymbol() != null) {
-            objectId.setComputedReturnType(objectId.getObjectIdSymbol().getTypeSymbol());
-            return objectId.getObjectIdSymbol().getTypeSymbol();
-        }
+        // An attribute inherited from a class linked after the first
+        // resolution looked for it.
+        if (objectId.getBinding() == null
+                && objectId.getEnclosingClass().lookupField(objectId.getNameId()) instanceof FieldSymbol fieldSymbol)
+            objectId.setBinding(fieldSymbol.getBinding());
 
-        return null;
+        ClassSymbolWrapper type = objectId.getBinding() == null ? null : objectId.getBinding().getTypeSymbol();
+        objectId.setComputedReturnType(type);
+
+        return type;
     }
 
     @Override
@@ -486,7 +460,7 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
 
     @Override
     public ClassSymbolWrapper visit(Str str) {
-        ClassSymbolWrapper computedReturnType = new ClassSymbolWrapper((ClassSymbol) SymbolTable.globals.lookup("String", false), false);
+        ClassSymbolWrapper computedReturnType = ClassSymbolWrapper.of((ClassSymbol) symbolTable.getGlobals().lookup(Names.STRING, false), false);
         str.setComputedReturnType(computedReturnType);
 
         return computedReturnType;
@@ -494,8 +468,8 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
 
     @Override
     public ClassSymbolWrapper visit(Unary unary) {
-        ClassSymbol intClass = (ClassSymbol) SymbolTable.globals.lookup("Int", false);
-        ClassSymbol boolClass = (ClassSymbol) SymbolTable.globals.lookup("Bool", false);
+        ClassSymbol intClass = (ClassSymbol) symbolTable.getGlobals().lookup(Names.INT, false);
+        ClassSymbol boolClass = (ClassSymbol) symbolTable.getGlobals().lookup(Names.BOOL, false);
         ClassSymbolWrapper exprType = unary.getExpr().accept(this);
 
         if (exprType != null) {
@@ -503,25 +477,25 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
 
             if (unary.getToken().getText().equals("not")) {
                 if (exprClass != boolClass) {
-                    SymbolTable.error(unary.getParserRuleContext(), unary.getExpr().getToken(),
+                    symbolTable.error(unary.getFileId(), unary.getExpr().getToken(),
                             "Operand of " + unary.getToken().getText() + " has type " + exprClass.getName() + " instead of Bool");
 
-                    ClassSymbolWrapper computedReturnType = new ClassSymbolWrapper(boolClass, false);
+                    ClassSymbolWrapper computedReturnType = ClassSymbolWrapper.of(boolClass, false);
                     unary.setComputedReturnType(computedReturnType);
 
                     return computedReturnType;
                 }
             } else if (unary.getToken().getText().equals("isvoid")) {
-                ClassSymbolWrapper computedReturnType = new ClassSymbolWrapper(boolClass, false);
+                ClassSymbolWrapper computedReturnType = ClassSymbolWrapper.of(boolClass, false);
                 unary.setComputedReturnType(computedReturnType);
 
                 return computedReturnType;
             } else {
                 if (exprClass != intClass) {
-                    SymbolTable.error(unary.getParserRuleContext(), unary.getExpr().getToken(),
+                    symbolTable.error(unary.getFileId(), unary.getExpr().getToken(),
                             "Operand of " + unary.getToken().getText() + " has type " + exprClass.getName() + " instead of Int");
 
-                    ClassSymbolWrapper computedReturnType = new ClassSymbolWrapper(intClass, false);
+                    ClassSymbolWrapper computedReturnType = ClassSymbolWrapper.of(intClass, false);
                     unary.setComputedReturnType(computedReturnType);
 
                     return computedReturnType;
@@ -538,24 +512,24 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
     @Override
     public ClassSymbolWrapper visit(While whileExpr) {
         ClassSymbolWrapper condExprType = whileExpr.getCondExpr().accept(this);
-        ClassSymbol objectClass = (ClassSymbol) SymbolTable.globals.lookup("Object", false);
+        ClassSymbol objectClass = (ClassSymbol) symbolTable.getGlobals().lookup(Names.OBJECT, false);
 
         if (condExprType != null) {
             ClassSymbol condExprClass = condExprType.getClassSymbol();
-            ClassSymbol boolClass = (ClassSymbol) SymbolTable.globals.lookup("Bool", false);
+            ClassSymbol boolClass = (ClassSymbol) symbolTable.getGlobals().lookup(Names.BOOL, false);
 
             if (condExprClass != boolClass) {
-                SymbolTable.error(whileExpr.getParserRuleContext(), whileExpr.getCondExpr().getToken(),
+                symbolTable.error(whileExpr.getFileId(), whileExpr.getCondExpr().getToken(),
                         "While condition has type " + condExprClass.getName() + " instead of Bool");
 
-                ClassSymbolWrapper computedReturnType = new ClassSymbolWrapper(objectClass, false);
+                ClassSymbolWrapper computedReturnType = ClassSymbolWrapper.of(objectClass, false);
                 whileExpr.setComputedReturnType(computedReturnType);
 
                 return computedReturnType;
             }
         }
 
-        ClassSymbolWrapper computedReturnType = new ClassSymbolWrapper(objectClass, false);
+        ClassSymbolWrapper computedReturnType = ClassSymbolWrapper.of(objectClass, false);
         whileExpr.setComputedReturnType(computedReturnType);
 
         return computedReturnType;
@@ -575,15 +549,15 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
 
                     if (!initialExprClass.isChildOf(objectIdClass)) {
                         if (objectIdType.isSelfType()) {
-                            SymbolTable.error(field.getParserRuleContext(), field.getInitialExpr().getToken(),
+                            symbolTable.error(field.getFileId(), field.getInitialExpr().getToken(),
                                     "Type " + initialExprClass.getName() + " of initialization expression of attribute "
                                             + field.getFieldSymbol().getName() + " is incompatible with declared type SELF_TYPE");
                         } else if (initialExprType.isSelfType()) {
-                            SymbolTable.error(field.getParserRuleContext(), field.getInitialExpr().getToken(),
+                            symbolTable.error(field.getFileId(), field.getInitialExpr().getToken(),
                                     "Type SELF_TYPE of initialization expression of attribute "
                                             + field.getFieldSymbol().getName() + " is incompatible with declared type " + objectIdClass.getName());
                         } else {
-                            SymbolTable.error(field.getParserRuleContext(), field.getInitialExpr().getToken(),
+                            symbolTable.error(field.getFileId(), field.getInitialExpr().getToken(),
                                     "Type " + initialExprClass.getName() + " of initialization expression of attribute "
                                             + field.getFieldSymbol().getName() + " is incompatible with declared type " + objectIdClass.getName());
                         }
@@ -610,10 +584,10 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
 
                 if (!returnClass.isChildOf(objectIdClass) || (method.getMethodSymbol().getTypeSymbol().isSelfType() && !returnType.isSelfType())) {
                     if (method.getMethodSymbol().getTypeSymbol().isSelfType()) {
-                        SymbolTable.error(method.getParserRuleContext(), method.getInsideExpr().getToken(), "Type " + returnClass.getName() +
+                        symbolTable.error(method.getFileId(), method.getInsideExpr().getToken(), "Type " + returnClass.getName() +
                                 " of the body of method " + method.getMethodSymbol().getName() + " is incompatible with declared return type SELF_TYPE");
                     } else {
-                        SymbolTable.error(method.getParserRuleContext(), method.getInsideExpr().getToken(), "Type " + returnClass.getName() +
+                        symbolTable.error(method.getFileId(), method.getInsideExpr().getToken(), "Type " + returnClass.getName() +
                                 " of the body of method " + method.getMethodSymbol().getName() + " is incompatible with declared return type " + objectIdClass.getName());
                     }
 
@@ -640,7 +614,7 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
                     ClassSymbol objectIdClass = objectIdType.getClassSymbol();
 
                     if (!exprClass.isChildOf(objectIdClass)) {
-                        SymbolTable.error(local.getParserRuleContext(), local.getAssignExpr().getToken(),
+                        symbolTable.error(local.getFileId(), local.getAssignExpr().getToken(),
                                 "Type " + exprClass.getName() + " of initialization expression of identifier "
                                         + local.getLocalSymbol().getName() + " is incompatible with declared type " + objectIdClass.getName());
 
@@ -663,7 +637,14 @@ public class ASTTypeResolutionVisitor implements ASTVisitor<ClassSymbolWrapper>
 
     @Override
     public ClassSymbolWrapper visit(Program program) {
-        program.getClasses().forEach(classNode -> classNode.accept(this));
+        for (ClassNode classNode : program.getClasses()) {
+            var span = profiler.span("ASTTypeResolutionVisitor", classNode.getClassName().getName());
+            try {
+                classNode.accept(this);
+            } finally {
+                span.end();
+            }
+        }
 
         return null;
     }
@@ -1,23 +1,35 @@
 package cool.ast;
 
+import cool.mips.InstructionList;
 import cool.structures.ClassSymbolWrapper;
-import org.stringtemplate.v4.ST;
 
 public class ReturnPair {
-    ST st;
+    InstructionList code;
     ClassSymbolWrapper type;
+    // Whether the code is preceded by an empty line when it follows
+    // another element of a sequence, as the code templates had it.
+    boolean leadingBlank;
 
-    public ReturnPair(ST st, ClassSymbolWrapper type) {
-        this.st = st;
+    public ReturnPair(InstructionList code, ClassSymbolWrapper type) {
+        this(code, type, false);
+    }
+
+    public ReturnPair(InstructionList code, ClassSymbolWrapper type, boolean leadingBlank) {
+        this.code = code;
         this.type = type;
+        this.leadingBlank = leadingBlank;
+    }
+
+    public InstructionList getCode() {
+        return code;
     }
 
-    public ST getSt() {
-        return st;
+    public void setCode(InstructionList code) {
+        this.code = code;
     }
 
-    public void setSt(ST st) {
-        this.st = st;
+    public boolean hasLeadingBlank() {
+        return leadingBlank;
     }
 
     public ClassSymbolWrapper getType() {
@@ -6,7 +6,6 @@ import cool.ast.expression.Expression;
 import cool.ast.expression.ObjectId;
 import cool.ast.type.TypeId;
 import cool.structures.BranchSymbol;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 public class Branch extends ASTNode {
@@ -15,9 +14,9 @@ public class Branch extends ASTNode {
     private final Expression branch;
     private BranchSymbol branchSymbol;
 
-    public Branch(Token token, ParserRuleContext parserRuleContext,
+    public Branch(Token token, int fileId,
                   ObjectId objectId, TypeId typeId, Expression branch) {
-        super(token, parserRuleContext);
+        super(token, fileId);
         this.objectId = objectId;
         this.typeId = typeId;
         this.branch = branch;
@@ -7,7 +7,6 @@ import cool.ast.type.TypeId;
 import cool.structures.ClassSymbol;
 import cool.structures.ClassSymbolWrapper;
 import cool.structures.Scope;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 import java.util.ArrayList;
@@ -16,13 +15,16 @@ public class ClassNode extends ASTNode {
     private final TypeId className;
     private final TypeId parentName;
     private final ArrayList<Feature> features;
+    // How many tokens the class spans in its source, a measure of its size.
+    private final int tokenCount;
     private ClassSymbolWrapper classSymbolWrapper;
-    public ClassNode(Token token, ParserRuleContext parserRuleContext,
-                     TypeId className, TypeId parentName, ArrayList<Feature> features) {
-        super(token, parserRuleContext);
+    public ClassNode(Token token, int fileId,
+                     TypeId className, TypeId parentName, ArrayList<Feature> features, int tokenCount) {
+        super(token, fileId);
         this.className = className;
         this.parentName = parentName;
         this.features = features;
+        this.tokenCount = tokenCount;
     }
 
     public TypeId getClassName() {
@@ -37,6 +39,10 @@ public class ClassNode extends ASTNode {
         return features;
     }
 
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
     public ClassSymbolWrapper getClassSymbolWrapper() {
         return classSymbolWrapper;
     }
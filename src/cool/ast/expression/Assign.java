@@ -1,16 +1,15 @@
 package cool.ast.expression;
 
 import cool.ast.ASTVisitor;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 public class Assign extends Expression {
     private final ObjectId objectId;
     private final Expression expr;
 
-    public Assign(Token token, ParserRuleContext parserRuleContext,
+    public Assign(Token token, int fileId,
                   ObjectId objectId, Expression expr) {
-        super(token, parserRuleContext);
+        super(token, fileId);
         this.objectId = objectId;
         this.expr = expr;
     }
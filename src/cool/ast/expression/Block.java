@@ -1,7 +1,6 @@
 package cool.ast.expression;
 
 import cool.ast.ASTVisitor;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 import java.util.ArrayList;
@@ -9,8 +8,8 @@ import java.util.ArrayList;
 public class Block extends Expression {
     private final ArrayList<Expression> expressions;
 
-    public Block(Token token, ParserRuleContext parserRuleContext, ArrayList<Expression> expressions) {
-        super(token, parserRuleContext);
+    public Block(Token token, int fileId, ArrayList<Expression> expressions) {
+        super(token, fileId);
         this.expressions = expressions;
     }
 
@@ -2,7 +2,6 @@ package cool.ast.expression;
 
 import cool.ast.ASTVisitor;
 import cool.ast.branch.Branch;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 import java.util.ArrayList;
@@ -11,9 +10,9 @@ public class Case extends Expression {
     private final Expression caseExpr;
     private final ArrayList<Branch> branches;
 
-    public Case(Token token, ParserRuleContext parserRuleContext,
+    public Case(Token token, int fileId,
                 Expression caseExpr, ArrayList<Branch> branches) {
-        super(token, parserRuleContext);
+        super(token, fileId);
         this.caseExpr = caseExpr;
         this.branches = branches;
     }
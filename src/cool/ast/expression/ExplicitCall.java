@@ -2,8 +2,6 @@ package cool.ast.expression;
 
 import cool.ast.ASTVisitor;
 import cool.ast.type.TypeId;
-import cool.structures.Scope;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 import java.util.ArrayList;
@@ -14,11 +12,9 @@ public class ExplicitCall extends Expression {
     private final ObjectId methodId;
     private final ArrayList<Expression> params;
 
-    private Scope resolutionScope;
-
-    public ExplicitCall(Token token, ParserRuleContext parserRuleContext, Expression dispatchExpr,
+    public ExplicitCall(Token token, int fileId, Expression dispatchExpr,
                         TypeId classType, ObjectId methodId, ArrayList<Expression> params) {
-        super(token, parserRuleContext);
+        super(token, fileId);
         this.dispatchExpr = dispatchExpr;
         this.classType = classType;
         this.methodId = methodId;
@@ -41,14 +37,6 @@ public class ExplicitCall extends Expression {
         return params;
     }
 
-    public Scope getResolutionScope() {
-        return resolutionScope;
-    }
-
-    public void setResolutionScope(Scope resolutionScope) {
-        this.resolutionScope = resolutionScope;
-    }
-
 
     @Override
     public <T> T accept(ASTVisitor<T> visitor) {
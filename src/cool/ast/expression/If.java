@@ -1,7 +1,6 @@
 package cool.ast.expression;
 
 import cool.ast.ASTVisitor;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 public class If extends Expression {
@@ -9,9 +8,9 @@ public class If extends Expression {
     private final Expression thenBranch;
     private final Expression elseBranch;
 
-    public If(Token token, ParserRuleContext parserRuleContext, Expression cond,
+    public If(Token token, int fileId, Expression cond,
               Expression thenBranch, Expression elseBranch) {
-        super(token, parserRuleContext);
+        super(token, fileId);
         this.cond = cond;
         this.thenBranch = thenBranch;
         this.elseBranch = elseBranch;
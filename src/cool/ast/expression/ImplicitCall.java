@@ -1,8 +1,7 @@
 package cool.ast.expression;
 
 import cool.ast.ASTVisitor;
-import cool.structures.Scope;
-import org.antlr.v4.runtime.ParserRuleContext;
+import cool.structures.ClassSymbol;
 import org.antlr.v4.runtime.Token;
 
 import java.util.ArrayList;
@@ -11,11 +10,11 @@ public class ImplicitCall extends Expression {
     private final ObjectId methodId;
     private final ArrayList<Expression> params;
 
-    private Scope resolutionScope;
+    private ClassSymbol enclosingClass;
 
-    public ImplicitCall(Token token, ParserRuleContext parserRuleContext,
+    public ImplicitCall(Token token, int fileId,
                         ObjectId methodId, ArrayList<Expression> params) {
-        super(token, parserRuleContext);
+        super(token, fileId);
         this.methodId = methodId;
         this.params = params;
     }
@@ -28,12 +27,12 @@ public class ImplicitCall extends Expression {
         return params;
     }
 
-    public Scope getResolutionScope() {
-        return resolutionScope;
+    public ClassSymbol getEnclosingClass() {
+        return enclosingClass;
     }
 
-    public void setResolutionScope(Scope resolutionScope) {
-        this.resolutionScope = resolutionScope;
+    public void setEnclosingClass(ClassSymbol enclosingClass) {
+        this.enclosingClass = enclosingClass;
     }
 
 
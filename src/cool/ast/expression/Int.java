@@ -1,12 +1,11 @@
 package cool.ast.expression;
 
 import cool.ast.ASTVisitor;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 public class Int extends Expression {
-    public Int(Token token, ParserRuleContext parserRuleContext) {
-        super(token, parserRuleContext);
+    public Int(Token token, int fileId) {
+        super(token, fileId);
     }
 
     @Override
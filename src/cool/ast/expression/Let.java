@@ -2,7 +2,6 @@ package cool.ast.expression;
 
 import cool.ast.ASTVisitor;
 import cool.ast.local.Local;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 import java.util.ArrayList;
@@ -10,9 +9,9 @@ import java.util.ArrayList;
 public class Let extends Expression {
     private final ArrayList<Local> locals;
     private final Expression letExpr;
-    public Let(Token token, ParserRuleContext parserRuleContext,
+    public Let(Token token, int fileId,
                ArrayList<Local> locals, Expression letExpr) {
-        super(token, parserRuleContext);
+        super(token, fileId);
         this.locals = locals;
         this.letExpr = letExpr;
     }
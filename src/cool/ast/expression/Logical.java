@@ -1,7 +1,6 @@
 package cool.ast.expression;
 
 import cool.ast.ASTVisitor;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 public class Logical extends Expression {
@@ -9,9 +8,9 @@ public class Logical extends Expression {
     private final Expression left;
     private final Expression right;
 
-    public Logical(Token token, ParserRuleContext parserRuleContext,
+    public Logical(Token token, int fileId,
                    Token op, Expression left, Expression right) {
-        super(token, parserRuleContext);
+        super(token, fileId);
         this.op = op;
         this.left = left;
         this.right = right;
@@ -2,19 +2,18 @@ package cool.ast.expression;
 
 import cool.ast.ASTVisitor;
 import cool.ast.type.TypeId;
+import cool.structures.ClassSymbol;
 import cool.structures.ClassSymbolWrapper;
-import cool.structures.Scope;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 public class New extends Expression {
     private final TypeId typeId;
     private ClassSymbolWrapper classSymbolWrapper;
 
-    private Scope resolutionScope;
+    private ClassSymbol enclosingClass;
 
-    public New(Token token, ParserRuleContext parserRuleContext, TypeId typeId) {
-        super(token, parserRuleContext);
+    public New(Token token, int fileId, TypeId typeId) {
+        super(token, fileId);
         this.typeId = typeId;
     }
 
@@ -30,12 +29,12 @@ public class New extends Expression {
         this.classSymbolWrapper = classSymbolWrapper;
     }
 
-    public Scope getResolutionScope() {
-        return resolutionScope;
+    public ClassSymbol getEnclosingClass() {
+        return enclosingClass;
     }
 
-    public void setResolutionScope(Scope resolutionScope) {
-        this.resolutionScope = resolutionScope;
+    public void setEnclosingClass(ClassSymbol enclosingClass) {
+        this.enclosingClass = enclosingClass;
     }
 
     @Override
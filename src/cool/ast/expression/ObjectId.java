@@ -1,17 +1,27 @@
 package cool.ast.expression;
 
 import cool.ast.ASTVisitor;
-import cool.structures.ObjectIdSymbol;
-import cool.structures.Scope;
-import org.antlr.v4.runtime.ParserRuleContext;
+import cool.structures.Binding;
+import cool.structures.ClassSymbol;
+import cool.structures.Names;
 import org.antlr.v4.runtime.Token;
 
 public class ObjectId extends Expression {
-    private Scope resolutionScope;
-    private ObjectIdSymbol objectIdSymbol;
+    private final int nameId;
+    private ClassSymbol enclosingClass;
+    private Binding binding;
 
-    public ObjectId(Token token, ParserRuleContext parserRuleContext) {
-        super(token, parserRuleContext);
+    public ObjectId(Token token, int fileId) {
+        super(token, fileId);
+        this.nameId = Names.id(token.getText());
+    }
+
+    public int getNameId() {
+        return nameId;
+    }
+
+    public String getName() {
+        return Names.name(nameId);
     }
 
     @Override
@@ -19,19 +29,26 @@ public class ObjectId extends Expression {
         return visitor.visit(this);
     }
 
-    public Scope getResolutionScope() {
-        return resolutionScope;
+    /**
+     * @return the class whose body the identifier is in, or null if it is
+     *         not an expression being analysed.
+     */
+    public ClassSymbol getEnclosingClass() {
+        return enclosingClass;
     }
 
-    public void setResolutionScope(Scope resolutionScope) {
-        this.resolutionScope = resolutionScope;
+    public void setEnclosingClass(ClassSymbol enclosingClass) {
+        this.enclosingClass = enclosingClass;
     }
 
-    public ObjectIdSymbol getObjectIdSymbol() {
-        return objectIdSymbol;
+    /**
+     * @return what the identifier refers to, or null if it is not resolved.
+     */
+    public Binding getBinding() {
+        return binding;
     }
 
-    public void setObjectIdSymbol(ObjectIdSymbol objectIdSymbol) {
-        this.objectIdSymbol = objectIdSymbol;
+    public void setBinding(Binding binding) {
+        this.binding = binding;
     }
 }
@@ -1,14 +1,13 @@
 package cool.ast.expression;
 
 import cool.ast.ASTVisitor;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 public class Paren extends Expression {
     private final Expression expr;
 
-    public Paren(Token token, ParserRuleContext parserRuleContext, Expression expr) {
-        super(token, parserRuleContext);
+    public Paren(Token token, int fileId, Expression expr) {
+        super(token, fileId);
         this.expr = expr;
     }
 
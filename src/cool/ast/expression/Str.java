@@ -1,12 +1,11 @@
 package cool.ast.expression;
 
 import cool.ast.ASTVisitor;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 public class Str extends Expression {
-    public Str(Token token, ParserRuleContext parserRuleContext) {
-        super(token, parserRuleContext);
+    public Str(Token token, int fileId) {
+        super(token, fileId);
     }
 
     @Override
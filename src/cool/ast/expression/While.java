@@ -1,16 +1,15 @@
 package cool.ast.expression;
 
 import cool.ast.ASTVisitor;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 public class While extends Expression {
     private final Expression condExpr;
     private final Expression insideExpr;
 
-    public While(Token token, ParserRuleContext parserRuleContext,
+    public While(Token token, int fileId,
                  Expression condExpr, Expression insideExpr) {
-        super(token, parserRuleContext);
+        super(token, fileId);
         this.condExpr = condExpr;
         this.insideExpr = insideExpr;
     }
@@ -6,7 +6,6 @@ import cool.ast.expression.ObjectId;
 import cool.ast.type.TypeId;
 import cool.structures.ClassSymbol;
 import cool.structures.FieldSymbol;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 public class Field extends Feature {
@@ -16,9 +15,9 @@ public class Field extends Feature {
     private FieldSymbol fieldSymbol;
     private ClassSymbol classSymbol;
 
-    public Field(Token token, ParserRuleContext parserRuleContext,
+    public Field(Token token, int fileId,
                  ObjectId fieldId, TypeId typeId, Expression initialExpr) {
-        super(token, parserRuleContext);
+        super(token, fileId);
         this.fieldId = fieldId;
         this.typeId = typeId;
         this.initialExpr = initialExpr;
@@ -7,7 +7,6 @@ import cool.ast.formal.Formal;
 import cool.ast.type.TypeId;
 import cool.structures.ClassSymbol;
 import cool.structures.MethodSymbol;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 import java.util.ArrayList;
@@ -20,9 +19,9 @@ public class Method extends Feature {
     private MethodSymbol methodSymbol;
     private ClassSymbol classSymbol;
 
-    public Method(Token token, ParserRuleContext parserRuleContext, ObjectId methodId,
+    public Method(Token token, int fileId, ObjectId methodId,
                   ArrayList<Formal> formals, TypeId returnType, Expression insideExpr) {
-        super(token, parserRuleContext);
+        super(token, fileId);
         this.methodId = methodId;
         this.formals = formals;
         this.returnType = returnType;
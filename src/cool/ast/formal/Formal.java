@@ -6,7 +6,6 @@ import cool.ast.expression.ObjectId;
 import cool.ast.type.TypeId;
 import cool.structures.FormalSymbol;
 import cool.structures.MethodSymbol;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 public class Formal extends ASTNode {
@@ -15,9 +14,9 @@ public class Formal extends ASTNode {
     private MethodSymbol methodSymbol;
     private FormalSymbol formalSymbol;
 
-    public Formal(Token token, ParserRuleContext parserRuleContext,
+    public Formal(Token token, int fileId,
                   ObjectId objectId, TypeId typeId) {
-        super(token, parserRuleContext);
+        super(token, fileId);
         this.objectId = objectId;
         this.typeId = typeId;
     }
@@ -5,9 +5,8 @@ import cool.ast.ASTVisitor;
 import cool.ast.expression.Expression;
 import cool.ast.expression.ObjectId;
 import cool.ast.type.TypeId;
+import cool.structures.ClassSymbol;
 import cool.structures.LocalSymbol;
-import cool.structures.Scope;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 public class Local extends ASTNode {
@@ -15,11 +14,11 @@ public class Local extends ASTNode {
     private final TypeId typeId;
     private final Expression assignExpr;
     private LocalSymbol localSymbol;
-    private Scope resolutionScope;
+    private ClassSymbol enclosingClass;
 
-    public Local(Token token, ParserRuleContext parserRuleContext,
+    public Local(Token token, int fileId,
                  ObjectId objectId, TypeId typeId, Expression assignExpr) {
-        super(token, parserRuleContext);
+        super(token, fileId);
         this.objectId = objectId;
         this.typeId = typeId;
         this.assignExpr = assignExpr;
@@ -45,12 +44,12 @@ public class Local extends ASTNode {
         return localSymbol;
     }
 
-    public Scope getResolutionScope() {
-        return resolutionScope;
+    public ClassSymbol getEnclosingClass() {
+        return enclosingClass;
     }
 
-    public void setResolutionScope(Scope resolutionScope) {
-        this.resolutionScope = resolutionScope;
+    public void setEnclosingClass(ClassSymbol enclosingClass) {
+        this.enclosingClass = enclosingClass;
     }
 
     @Override
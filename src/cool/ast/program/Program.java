@@ -3,7 +3,6 @@ package cool.ast.program;
 import cool.ast.ASTNode;
 import cool.ast.ASTVisitor;
 import cool.ast.classNode.ClassNode;
-import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 
 import java.util.ArrayList;
@@ -11,8 +10,8 @@ import java.util.ArrayList;
 public class Program extends ASTNode {
     private final ArrayList<ClassNode> classes;
 
-    public Program(Token token, ParserRuleContext parserRuleContext, ArrayList<ClassNode> classes) {
-        super(token, parserRuleContext);
+    public Program(Token token, int fileId, ArrayList<ClassNode> classes) {
+        super(token, fileId);
         this.classes = classes;
     }
 
@@ -2,12 +2,23 @@ package cool.ast.type;
 
 import cool.ast.ASTNode;
 import cool.ast.ASTVisitor;
-import org.antlr.v4.runtime.ParserRuleContext;
+import cool.structures.Names;
 import org.antlr.v4.runtime.Token;
 
 public class TypeId extends ASTNode {
-    public TypeId(Token token, ParserRuleContext parserRuleContext) {
-        super(token, parserRuleContext);
+    private final int nameId;
+
+    public TypeId(Token token, int fileId) {
+        super(token, fileId);
+        this.nameId = Names.id(token.getText());
+    }
+
+    public int getNameId() {
+        return nameId;
+    }
+
+    public String getName() {
+        return Names.name(nameId);
     }
 
     @Override
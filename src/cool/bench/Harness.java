@@ -0,0 +1,223 @@
+package cool.bench;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A small benchmark harness in the spirit of JMH, which this project has no
+ * build to pull in. Every benchmark gets warm-up iterations, then measured
+ * iterations; the score is the average time per operation with a 99.9%
+ * confidence interval, next to the bytes allocated per operation (what
+ * JMH's gc profiler calls gc.alloc.rate.norm). Allocation is summed over
+ * all threads, so that of the phases running in the common pool counts;
+ * what other threads allocate meanwhile counts too.
+ *
+ * Run each benchmark class in a fresh JVM, so that JIT decisions made for
+ * one benchmark do not leak into the next.
+ */
+public class Harness {
+    // Results are written here so that the JIT cannot drop the work.
+    public static volatile Object sink;
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private record Result(String name, int count, double meanNanos, double errorNanos, double bytesPerOp) {
+    }
+
+    /**
+     * The bytes each live thread had allocated at some point.
+     */
+    private record Allocations(long[] ids, long[] bytes) {
+        // What counting allocates itself, when nothing else does.
+        private static final long OVERHEAD = overhead();
+
+        private static long overhead() {
+            long least = Long.MAX_VALUE;
+            for (int i = 0; i < 100; i++)
+                least = Math.min(least, now().counted());
+
+            return least;
+        }
+
+        static Allocations now() {
+            long[] ids = threads.getAllThreadIds();
+            return new Allocations(ids, threads.getThreadAllocatedBytes(ids));
+        }
+
+        /**
+         * @return the bytes allocated since, by the threads still alive and
+         *         those started since, less what taking the counts does;
+         *         what threads that have ended allocated is lost.
+         */
+        long since() {
+            return Math.max(0, counted() - OVERHEAD);
+        }
+
+        private long counted() {
+            var later = now();
+            var before = new HashMap<Long, Long>();
+            for (int i = 0; i < ids.length; i++)
+                if (bytes[i] >= 0)
+                    before.put(ids[i], bytes[i]);
+
+            long total = 0;
+            for (int i = 0; i < later.ids().length; i++)
+                if (later.bytes()[i] >= 0)
+                    total += later.bytes()[i] - before.getOrDefault(later.ids()[i], 0L);
+
+            return total;
+        }
+    }
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final List<Result> results = new ArrayList<>();
+
+    public Harness(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000;
+    }
+
+    /**
+     * Benchmarks a cheap operation, called back to back for the length of
+     * each iteration.
+     */
+    public void run(String name, Supplier<?> operation) {
+        run(name, () -> null, state -> operation.get(), true);
+    }
+
+    /**
+     * Benchmarks an operation that needs fresh state every time, e.g. a pass
+     * that changes the AST it runs on. Only {@code operation} is measured,
+     * not {@code setup}.
+     */
+    public <S> void run(String name, Supplier<S> setup, Function<S, ?> operation) {
+        run(name, setup, operation, false);
+    }
+
+    private <S> void run(String name, Supplier<S> setup, Function<S, ?> operation, boolean batched) {
+        for (int i = 0; i < warmupIterations; i++)
+            iteration(setup, operation, batched);
+
+        double[] scores = new double[measurementIterations];
+        long operations = 0;
+        long bytes = 0;
+
+        for (int i = 0; i < measurementIterations; i++) {
+            long[] measured = iteration(setup, operation, batched);
+            scores[i] = (double) measured[1] / measured[0];
+            operations += measured[0];
+            bytes += measured[2];
+        }
+
+        double mean = 0;
+        for (double score : scores)
+            mean += score;
+        mean /= scores.length;
+
+        double variance = 0;
+        for (double score : scores)
+            variance += (score - mean) * (score - mean);
+        double error = scores.length > 1
+                ? 3.29 * Math.sqrt(variance / (scores.length - 1)) / Math.sqrt(scores.length)
+                : Double.NaN;
+
+        var result = new Result(name, scores.length, mean, error, (double) bytes / operations);
+        results.add(result);
+        print(System.out, result);
+    }
+
+    /**
+     * @return the number of operations, the nanoseconds and the bytes they
+     *         took.
+     */
+    private <S> long[] iteration(Supplier<S> setup, Function<S, ?> operation, boolean batched) {
+        long operations = 0;
+        long nanos = 0;
+        long bytes = 0;
+        long deadline = System.nanoTime() + iterationNanos;
+
+        if (batched) {
+            S state = setup.get();
+            var allocated = Allocations.now();
+            long start = System.nanoTime();
+            int batch = 1;
+
+            // Batches grow until they take about a millisecond, so that
+            // reading the clock does not add to very short operations.
+            do {
+                long batchStart = System.nanoTime();
+                for (int i = 0; i < batch; i++)
+                    sink = operation.apply(state);
+                operations += batch;
+
+                if (System.nanoTime() - batchStart < 1_000_000 && batch < 1 << 20)
+                    batch *= 2;
+            } while (System.nanoTime() < deadline);
+
+            nanos = System.nanoTime() - start;
+            bytes = allocated.since();
+        } else {
+            do {
+                S state = setup.get();
+                var allocated = Allocations.now();
+                long start = System.nanoTime();
+
+                sink = operation.apply(state);
+
+                nanos += System.nanoTime() - start;
+                bytes += allocated.since();
+                operations++;
+            } while (System.nanoTime() < deadline);
+        }
+
+        return new long[] { operations, nanos, bytes };
+    }
+
+    private static void print(PrintStream out, Result result) {
+        String unit = result.meanNanos() >= 1e6 ? "ms/op" : result.meanNanos() >= 1e3 ? "us/op" : "ns/op";
+        double scale = unit.equals("ms/op") ? 1e6 : unit.equals("us/op") ? 1e3 : 1;
+
+        out.printf("%-48s avgt %4d %12.3f +- %10.3f %s %14.1f B/op%n", result.name(), result.count(),
+                result.meanNanos() / scale, result.errorNanos() / scale, unit, result.bytesPerOp());
+    }
+
+    public void printSummary(PrintStream out) {
+        out.println();
+        out.printf("%-48s mode %4s %12s    %10s %s %14s%n", "Benchmark", "Cnt", "Score", "Error", "Units", "Alloc");
+        for (var result : results)
+            print(out, result);
+    }
+
+    /**
+     * Parses the options shared by all benchmarks, {@code --warmup=N},
+     * {@code --iterations=N} and {@code --time=MS}, leaving the others in
+     * {@code rest}.
+     */
+    public static Harness fromArgs(String[] args, List<String> rest) {
+        int warmup = 5;
+        int iterations = 10;
+        long time = 500;
+
+        for (var arg : args) {
+            if (arg.startsWith("--warmup="))
+                warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+            else if (arg.startsWith("--iterations="))
+                iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+            else if (arg.startsWith("--time="))
+                time = Long.parseLong(arg.substring("--time=".length()));
+            else
+                rest.add(arg);
+        }
+
+        return new Harness(warmup, iterations, time);
+    }
+}
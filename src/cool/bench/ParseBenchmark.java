@@ -0,0 +1,95 @@
+package cool.bench;
+
+import cool.compiler.CompileProfiler;
+import cool.compiler.ParseStatistics;
+import cool.compiler.SourceFile;
+import cool.compiler.SourceParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how the wall time of parsing a set of files scales with the
+ * number of threads.
+ *
+ *   java cool.bench.ParseBenchmark [--threads=1,2,4,8] [--runs=N] [--ll] files...
+ *
+ * With {@code --ll} files are parsed with full LL prediction only, instead
+ * of trying SLL prediction first.
+ *
+ * Files are read into memory up front, so only lexing and parsing is timed.
+ * Every thread count gets a few warm-up runs, then the median of
+ * {@code runs} measured runs is reported.
+ */
+public class ParseBenchmark {
+    private static final int WARMUP_RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int n = 1; n < cores; n *= 2)
+            threadCounts.add(n);
+        threadCounts.add(cores);
+
+        int runs = 10;
+        boolean twoStage = true;
+        List<SourceFile> sources = new ArrayList<>();
+
+        for (var arg : args) {
+            if (arg.startsWith("--threads="))
+                threadCounts = Arrays.stream(arg.substring("--threads=".length()).split(","))
+                        .map(Integer::parseInt).toList();
+            else if (arg.equals("--ll"))
+                twoStage = false;
+            else if (arg.startsWith("--runs="))
+                runs = Integer.parseInt(arg.substring("--runs=".length()));
+            else
+                sources.add(new SourceFile(arg, Files.readString(Path.of(arg))));
+        }
+
+        if (sources.isEmpty()) {
+            System.err.println("No file(s) given");
+            return;
+        }
+
+        // One untimed pass, to see how often SLL prediction falls short.
+        var statistics = new ParseStatistics();
+        for (var parsed : SourceParser.parseAll(sources, ForkJoinPool.commonPool(), twoStage,
+                CompileProfiler.DISABLED))
+            statistics.add(parsed);
+
+        System.out.printf("%d files, %d cores%n", sources.size(), cores);
+        statistics.print(System.out);
+        System.out.printf("%8s %12s %8s%n", "threads", "median ms", "speedup");
+
+        double baseline = 0;
+        for (int threads : threadCounts) {
+            var pool = new ForkJoinPool(threads);
+            try {
+                for (int i = 0; i < WARMUP_RUNS; i++)
+                    SourceParser.parseAll(sources, pool, twoStage, CompileProfiler.DISABLED);
+
+                long[] times = new long[runs];
+                for (int i = 0; i < runs; i++) {
+                    long start = System.nanoTime();
+                    SourceParser.parseAll(sources, pool, twoStage, CompileProfiler.DISABLED);
+                    times[i] = System.nanoTime() - start;
+                }
+
+                Arrays.sort(times);
+                double median = times[runs / 2] / 1e6;
+                if (baseline == 0)
+                    baseline = median;
+
+                System.out.printf("%8d %12.2f %8.2f%n", threads, median, baseline / median);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package cool.bench;
+
+import cool.ast.ASTConstructionVisitor;
+import cool.compiler.AnalysisCache;
+import cool.compiler.CompilationSession;
+import cool.compiler.CompileProfiler;
+import cool.compiler.Compiler;
+import cool.compiler.FragmentCache;
+import cool.compiler.SourceFile;
+import cool.compiler.SourceParser;
+import cool.lexer.CoolLexer;
+import cool.parser.CoolParser;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Times every phase of the compiler on its own, starting from the state
+ * the previous phases leave behind.
+ *
+ *   java cool.bench.PhaseBenchmark [--scale=N,...] [--warmup=N] [--iterations=N] [--time=MS] [files...]
+ *
+ * Without {@code --scale}, every given file that compiles cleanly is a
+ * separate program, and an operation is one phase over all of them. With
+ * no files either, the programs in tests/tema3 are used. With
+ * {@code --scale}, each phase is also timed on synthetic programs of the
+ * given numbers of classes, and whole compilations of programs of that many
+ * files are timed, from scratch and again after editing a method body.
+ *
+ * Each operation of a semantic pass, code generation, gets a freshly
+ * parsed AST, as the passes annotate the AST they run on. AST construction
+ * is timed from a parse tree built by a plain parser, although the
+ * compiler builds the AST while parsing. Cached code generation takes
+ * every class from a fragment cache filled by the warmup. Recompiling
+ * keeps an analysis cache across operations, each of which edits the first
+ * file back and forth.
+ */
+public class PhaseBenchmark {
+    private static final String[] PASS_NAMES = {
+            "definition", "firstResolution", "secondResolution", "typeResolution" };
+
+    public static void main(String[] args) throws IOException {
+        var rest = new ArrayList<String>();
+        var harness = Harness.fromArgs(args, rest);
+        List<Integer> scales = List.of();
+        var files = new ArrayList<String>();
+
+        for (var arg : rest) {
+            if (arg.startsWith("--scale="))
+                scales = Arrays.stream(arg.substring("--scale=".length()).split(","))
+                        .map(Integer::parseInt).toList();
+            else
+                files.add(arg);
+        }
+
+        if (files.isEmpty() && scales.isEmpty())
+            try (Stream<Path> paths = Files.list(Path.of("tests", "tema3"))) {
+                paths.map(Path::toString).filter(name -> name.endsWith(".cl")).sorted().forEach(files::add);
+            }
+
+        if (!files.isEmpty()) {
+            var programs = new ArrayList<List<SourceFile>>();
+            for (var file : files) {
+                var program = List.of(new SourceFile(file, Files.readString(Path.of(file))));
+                if (compiles(program))
+                    programs.add(program);
+            }
+
+            System.out.printf("%d of %d files compile cleanly%n", programs.size(), files.size());
+            benchmark(harness, "corpus", programs);
+        }
+
+        for (int scale : scales) {
+            benchmark(harness, "classes" + scale,
+                    List.of(List.of(new SourceFile("synthetic.cl", SyntheticProgram.classes(scale)))));
+            recompile(harness, scale);
+        }
+
+        harness.printSummary(System.out);
+    }
+
+    private static boolean compiles(List<SourceFile> program) {
+        var discard = new PrintStream(OutputStream.nullOutputStream());
+
+        try {
+            return Compiler.compile(program, discard, discard);
+        } catch (IOException | RuntimeException | StackOverflowError e) {
+            return false;
+        }
+    }
+
+    private static void benchmark(Harness harness, String input, List<List<SourceFile>> programs) {
+        harness.run("parse:" + input, () -> {
+            var results = new ArrayList<>();
+            for (var program : programs) {
+                try {
+                    results.add(SourceParser.parseAll(program, CompileProfiler.DISABLED));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return results;
+        });
+
+        harness.run("astConstruction:" + input, () -> parseTrees(programs), trees -> {
+            var classes = new ArrayList<>();
+            for (var tree : trees) {
+                var visitor = new ASTConstructionVisitor(0);
+                for (var classContext : tree.classes)
+                    classes.add(visitor.visit(classContext));
+            }
+            return classes;
+        });
+
+        for (int pass = 0; pass < PASS_NAMES.length; pass++) {
+            int done = pass;
+            harness.run(PASS_NAMES[pass] + ":" + input, () -> pipelines(programs, done), pipelines -> {
+                var results = new ArrayList<>();
+                for (var pipeline : pipelines)
+                    results.add(pipeline.runPass(done));
+                return results;
+            });
+        }
+
+        harness.run("codegen:" + input, () -> pipelines(programs, PASS_NAMES.length), pipelines -> {
+            var results = new ArrayList<String>();
+            for (var pipeline : pipelines)
+                results.add(pipeline.generate());
+            return results;
+        });
+
+        FragmentCache cache;
+        try {
+            cache = new FragmentCache(Files.createTempDirectory("fragments"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        harness.run("codegenCached:" + input, () -> {
+            var pipelines = pipelines(programs, PASS_NAMES.length);
+            pipelines.forEach(pipeline -> pipeline.session.setFragmentCache(cache));
+            return pipelines;
+        }, pipelines -> {
+            var results = new ArrayList<String>();
+            for (var pipeline : pipelines)
+                results.add(pipeline.generate());
+            return results;
+        });
+    }
+
+    private static void recompile(Harness harness, int files) {
+        var program = SyntheticProgram.files(files);
+        var first = program.get(0);
+        var edited = new ArrayList<>(program);
+        edited.set(0, new SourceFile(first.name(), first.contents().replace("+ 1 }", "+ 2 }")));
+
+        var analysis = new AnalysisCache();
+        var edits = new int[1];
+
+        harness.run("compile:files" + files, () -> compile(program, null));
+        harness.run("recompile:files" + files, () -> compile(edits[0]++ % 2 == 0 ? edited : program, analysis));
+    }
+
+    private static boolean compile(List<SourceFile> program, AnalysisCache analysis) {
+        var discard = new PrintStream(OutputStream.nullOutputStream());
+        var session = new CompilationSession(discard);
+        session.setAnalysisCache(analysis);
+
+        try {
+            return Compiler.compile(session, program, discard);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Pipeline> pipelines(List<List<SourceFile>> programs, int passes) {
+        var pipelines = new ArrayList<Pipeline>();
+        for (var program : programs)
+            pipelines.add(new Pipeline(program, passes));
+        return pipelines;
+    }
+
+    private static List<CoolParser.ProgramContext> parseTrees(List<List<SourceFile>> programs) {
+        var trees = new ArrayList<CoolParser.ProgramContext>();
+        for (var program : programs) {
+            for (var source : program) {
+                var parser = new CoolParser(new CommonTokenStream(
+                        new CoolLexer(CharStreams.fromString(source.contents(), source.name()))));
+                trees.add(parser.program());
+            }
+        }
+        return trees;
+    }
+}
@@ -0,0 +1,80 @@
+package cool.bench;
+
+import cool.ast.*;
+import cool.ast.classNode.ClassNode;
+import cool.ast.program.Program;
+import cool.compiler.AssemblyEmitter;
+import cool.compiler.CompilationSession;
+import cool.compiler.CompileProfiler;
+import cool.compiler.SourceFile;
+import cool.compiler.SourceParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A program taken through the compiler one pass at a time, so that a
+ * benchmark can start from the state a pass expects.
+ */
+class Pipeline {
+    // The semantic passes, in the order the compiler runs them.
+    static final List<Function<CompilationSession, ASTVisitor<?>>> SEMANTIC_PASSES = List.of(
+            ASTDefinitionVisitor::new,
+            ASTFirstResolutionVisitor::new,
+            ASTSecondResolutionVisitor::new,
+            ASTTypeResolutionVisitor::new);
+
+    final CompilationSession session = new CompilationSession(new PrintStream(OutputStream.nullOutputStream()));
+    final Program program;
+
+    /**
+     * Parses the sources and runs the first {@code passes} semantic passes
+     * on them.
+     */
+    Pipeline(List<SourceFile> sources, int passes) {
+        var classes = new ArrayList<ClassNode>();
+
+        try {
+            for (var parsed : SourceParser.parseAll(sources, CompileProfiler.DISABLED)) {
+                if (parsed.hasErrors())
+                    throw new IllegalArgumentException(parsed.errors().get(0).format(parsed.source().name()));
+                classes.addAll(parsed.classes());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        for (var source : sources)
+            session.getFileNames().add(source.name());
+        session.getSymbolTable().defineBasicClasses();
+        program = new Program(classes.get(0).getToken(), 0, classes);
+
+        for (int i = 0; i < passes; i++)
+            runPass(i);
+    }
+
+    Object runPass(int pass) {
+        return program.accept(SEMANTIC_PASSES.get(pass).apply(session));
+    }
+
+    String generate() {
+        var assembly = new ByteArrayOutputStream();
+
+        try (var emitter = new AssemblyEmitter()) {
+            program.accept(new ASTCodeGenVisitor(session, emitter));
+            emitter.writeTo(Channels.newChannel(assembly));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return assembly.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,129 @@
+package cool.bench;
+
+import cool.compiler.Compiler;
+import cool.compiler.SourceFile;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records how compile time and peak heap grow with the size of the input,
+ * for each shape of {@link SyntheticProgram}.
+ *
+ *   java cool.bench.ScalingBenchmark [--shapes=chain,...] [--sizes=100,1000,...] [--limit=SECONDS]
+ *
+ * Every program is compiled once after a few warm-up compilations of a
+ * small program of the same shape, on a thread with the default stack
+ * size, so a StackOverflowError shows up as it would for the compiler.
+ * The exponent column is the slope between two sizes on a log-log scale:
+ * about 1 for linear growth, 2 for quadratic. A shape stops growing at
+ * the first size that fails or takes longer than the limit.
+ */
+public class ScalingBenchmark {
+    private static final int WARMUP_RUNS = 3;
+    private static final List<Integer> DEFAULT_SIZES = List.of(100, 300, 1000, 3000, 10000, 30000, 100000);
+
+    private record Measurement(String status, long nanos, long peakHeapBytes) {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        List<String> shapes = SyntheticProgram.SHAPES.keySet().stream().sorted().toList();
+        List<Integer> sizes = DEFAULT_SIZES;
+        long limitNanos = 60_000_000_000L;
+
+        for (var arg : args) {
+            if (arg.startsWith("--shapes="))
+                shapes = List.of(arg.substring("--shapes=".length()).split(","));
+            else if (arg.startsWith("--sizes="))
+                sizes = Arrays.stream(arg.substring("--sizes=".length()).split(","))
+                        .map(Integer::parseInt).toList();
+            else if (arg.startsWith("--limit="))
+                limitNanos = Long.parseLong(arg.substring("--limit=".length())) * 1_000_000_000L;
+            else {
+                System.err.println("Unknown option " + arg);
+                return;
+            }
+        }
+
+        System.out.printf("%-12s %8s %-22s %12s %10s %14s%n",
+                "shape", "size", "status", "ms", "exponent", "peak heap MB");
+
+        for (var shape : shapes) {
+            var generator = SyntheticProgram.SHAPES.get(shape);
+            if (generator == null) {
+                System.err.println("Unknown shape " + shape);
+                return;
+            }
+
+            for (int i = 0; i < WARMUP_RUNS; i++)
+                measure(generator.apply(10));
+
+            int previousSize = 0;
+            long previousNanos = 0;
+
+            for (int size : sizes) {
+                var measurement = measure(generator.apply(size));
+                String exponent = previousSize == 0 || !measurement.status().equals("ok") ? "" :
+                        String.format("%.2f", Math.log((double) measurement.nanos() / previousNanos)
+                                / Math.log((double) size / previousSize));
+
+                System.out.printf("%-12s %8d %-22s %12.1f %10s %14.1f%n", shape, size, measurement.status(),
+                        measurement.nanos() / 1e6, exponent, measurement.peakHeapBytes() / (1024.0 * 1024.0));
+
+                if (!measurement.status().equals("ok") || measurement.nanos() > limitNanos)
+                    break;
+
+                previousSize = size;
+                previousNanos = measurement.nanos();
+            }
+        }
+    }
+
+    /**
+     * Compiles the program on a new thread, with the heap's peak usage
+     * reset just before.
+     */
+    private static Measurement measure(List<SourceFile> sources) throws InterruptedException {
+        var pools = new ArrayList<MemoryPoolMXBean>();
+        for (var pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP && pool.isValid())
+                pools.add(pool);
+
+        var result = new Measurement[1];
+        var compilation = new Thread(() -> {
+            String status;
+            long start = System.nanoTime();
+
+            try {
+                status = Compiler.compile(sources).success() ? "ok" : "errors";
+            } catch (StackOverflowError e) {
+                status = "StackOverflowError";
+            } catch (OutOfMemoryError e) {
+                status = "OutOfMemoryError";
+            } catch (Exception e) {
+                status = e.getClass().getSimpleName();
+            }
+
+            result[0] = new Measurement(status, System.nanoTime() - start, 0);
+        });
+
+        System.gc();
+        for (var pool : pools)
+            pool.resetPeakUsage();
+
+        compilation.start();
+        compilation.join();
+
+        // The peaks of the pools may be reached at different times, so this
+        // is an upper bound.
+        long peak = 0;
+        for (var pool : pools)
+            peak += pool.getPeakUsage().getUsed();
+
+        return new Measurement(result[0].status(), result[0].nanos(), peak);
+    }
+}
@@ -0,0 +1,64 @@
+package cool.bench;
+
+import cool.compiler.SourceFile;
+import cool.mips.InstructionList;
+import cool.structures.ClassSymbol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times the class hierarchy queries that semantic analysis and code
+ * generation make over and over, on a resolved synthetic program.
+ *
+ *   java cool.bench.SymbolBenchmark [--classes=N] [--warmup=N] [--iterations=N] [--time=MS]
+ *
+ * The program's classes form inheritance chains of ten classes below IO,
+ * so queries from the deepest class of a chain walk 12 levels up to Object.
+ */
+public class SymbolBenchmark {
+    public static void main(String[] args) {
+        var rest = new ArrayList<String>();
+        var harness = Harness.fromArgs(args, rest);
+        int classes = 1000;
+
+        for (var arg : rest) {
+            if (arg.startsWith("--classes="))
+                classes = Integer.parseInt(arg.substring("--classes=".length()));
+            else {
+                System.err.println("Unknown option " + arg);
+                return;
+            }
+        }
+
+        var pipeline = new Pipeline(List.of(new SourceFile("synthetic.cl", SyntheticProgram.classes(classes))),
+                Pipeline.SEMANTIC_PASSES.size());
+        var globals = pipeline.session.getSymbolTable().getGlobals();
+
+        var object = (ClassSymbol) globals.lookup("Object", false);
+        var io = (ClassSymbol) globals.lookup("IO", false);
+        var chainRoot = (ClassSymbol) globals.lookup("C0", false);
+        var chainLeaf = (ClassSymbol) globals.lookup("C9", false);
+        var otherLeaf = (ClassSymbol) globals.lookup("C19", false);
+
+        harness.run("isChildOf:leafOfRoot", () -> chainLeaf.isChildOf(chainRoot));
+        harness.run("isChildOf:rootOfLeaf", () -> chainRoot.isChildOf(chainLeaf));
+        harness.run("isChildOf:leafOfObject", () -> chainLeaf.isChildOf(object));
+        harness.run("leastUpperBound:sameChain", () -> chainLeaf.leastUpperBound(chainRoot));
+        harness.run("leastUpperBound:siblingChains", () -> chainLeaf.leastUpperBound(otherLeaf));
+        harness.run("leastUpperBound:withIO", () -> chainLeaf.leastUpperBound(io));
+        harness.run("lookupMethod:own", () -> chainLeaf.lookupMethod("m9"));
+        harness.run("lookupMethod:chainRoot", () -> chainLeaf.lookupMethod("m0"));
+        harness.run("lookupMethod:object", () -> chainLeaf.lookupMethod("abort"));
+        harness.run("lookupMethod:missing", () -> chainLeaf.lookupMethod("missing"));
+        harness.run("lookupField:own", () -> chainLeaf.lookupField("a9"));
+        harness.run("lookupField:chainRoot", () -> chainLeaf.lookupField("a0"));
+        harness.run("generateDispatchTable:leaf", () -> {
+            var methods = new InstructionList();
+            chainLeaf.generateDispatchTable(methods);
+            return methods;
+        });
+
+        harness.printSummary(System.out);
+    }
+}
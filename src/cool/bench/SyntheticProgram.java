@@ -0,0 +1,268 @@
+package cool.bench;
+
+import cool.compiler.SourceFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Generates well-typed COOL programs of a given size, for benchmarks that
+ * need more input than the test programs provide. Each shape stresses one
+ * dimension of the input: the depth of the class hierarchy, the number of
+ * members of a class, the length of an expression, how deeply expressions
+ * nest, or the number of files.
+ *
+ *   java cool.bench.SyntheticProgram shape size [directory]
+ *
+ * writes a program of one of the {@link #SHAPES} to the given directory,
+ * or prints it if it is a single file.
+ */
+public class SyntheticProgram {
+    // Classes come in inheritance chains of this length, each rooted at IO.
+    private static final int CHAIN_LENGTH = 10;
+
+    public static final Map<String, IntFunction<List<SourceFile>>> SHAPES = Map.of(
+            "classes", size -> single(classes(size)),
+            "chain", size -> single(chain(size)),
+            "members", size -> single(members(size)),
+            "formals", size -> single(formals(size)),
+            "arithmetic", size -> single(arithmetic(size)),
+            "let", size -> single(nestedLet(size)),
+            "if", size -> single(nestedIf(size)),
+            "case", size -> single(nestedCase(size)),
+            "files", SyntheticProgram::files);
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !SHAPES.containsKey(args[0])) {
+            System.err.println("Usage: SyntheticProgram " + String.join("|", SHAPES.keySet())
+                    + " size [directory]");
+            return;
+        }
+
+        var sources = SHAPES.get(args[0]).apply(Integer.parseInt(args[1]));
+
+        if (args.length < 3 && sources.size() == 1) {
+            System.out.print(sources.get(0).contents());
+            return;
+        }
+
+        var directory = Path.of(args.length < 3 ? "." : args[2]);
+        Files.createDirectories(directory);
+        for (var source : sources)
+            Files.writeString(directory.resolve(source.name()), source.contents());
+    }
+
+    private static List<SourceFile> single(String contents) {
+        return List.of(new SourceFile("synthetic.cl", contents));
+    }
+
+    /**
+     * A program with {@code classes} classes besides Main, each with two
+     * attributes and two methods, one of which calls the one it inherits.
+     */
+    public static String classes(int classes) {
+        var source = new StringBuilder();
+
+        for (int i = 0; i < classes; i++) {
+            boolean root = i % CHAIN_LENGTH == 0;
+
+            source.append("class C").append(i).append(" inherits ").append(root ? "IO" : "C" + (i - 1))
+                    .append(" {\n");
+            source.append("    a").append(i).append(" : Int <- ").append(i).append(";\n");
+            source.append("    s").append(i).append(" : String <- \"s").append(i).append("\";\n");
+            source.append("    m").append(i).append("(x : Int) : Int {\n");
+            source.append("        let y : Int <- x + a").append(i).append(" in\n");
+            source.append("            if y < 100 then y * 2 else ")
+                    .append(root ? "y - 1" : "m" + (i - 1) + "(y - 1)").append(" fi\n");
+            source.append("    };\n");
+            source.append("    show").append(i).append("() : Object { out_string(s").append(i).append(") };\n");
+            source.append("};\n\n");
+        }
+
+        source.append("class Main inherits IO {\n");
+        source.append("    main() : Object { out_int((new C").append(classes - 1).append(").m")
+                .append(classes - 1).append("(1)) };\n");
+        source.append("};\n");
+
+        return source.toString();
+    }
+
+    /**
+     * A single inheritance chain {@code depth} classes deep, each class
+     * adding an attribute and a method.
+     */
+    public static String chain(int depth) {
+        var source = new StringBuilder();
+
+        for (int i = 0; i < depth; i++) {
+            source.append("class C").append(i).append(" inherits ").append(i == 0 ? "IO" : "C" + (i - 1))
+                    .append(" {\n");
+            source.append("    a").append(i).append(" : Int <- ").append(i).append(";\n");
+            source.append("    m").append(i).append("() : Int { a").append(i).append(" };\n");
+            source.append("};\n\n");
+        }
+
+        source.append("class Main inherits IO {\n");
+        source.append("    main() : Object { out_int((new C").append(depth - 1).append(").m0()) };\n");
+        source.append("};\n");
+
+        return source.toString();
+    }
+
+    /**
+     * A class with {@code members} attributes and as many methods.
+     */
+    public static String members(int members) {
+        var source = new StringBuilder("class Wide inherits IO {\n");
+
+        for (int i = 0; i < members; i++)
+            source.append("    a").append(i).append(" : Int <- ").append(i).append(";\n");
+        for (int i = 0; i < members; i++)
+            source.append("    m").append(i).append("(x : Int) : Int { x + a").append(i).append(" };\n");
+        source.append("};\n\n");
+
+        source.append("class Main inherits IO {\n");
+        source.append("    main() : Object { out_int((new Wide).m").append(members - 1).append("(1)) };\n");
+        source.append("};\n");
+
+        return source.toString();
+    }
+
+    /**
+     * A class with {@code variables} attributes and a method of as many
+     * formals, binding as many let variables, whose body reads and assigns
+     * each of them.
+     */
+    public static String formals(int variables) {
+        var source = new StringBuilder("class Wide inherits IO {\n");
+
+        for (int i = 0; i < variables; i++)
+            source.append("    a").append(i).append(" : Int <- ").append(i).append(";\n");
+
+        source.append("    f(");
+        for (int i = 0; i < variables; i++)
+            source.append(i == 0 ? "" : ", ").append("x").append(i).append(" : Int");
+        source.append(") : Int {\n");
+
+        source.append("        let ");
+        for (int i = 0; i < variables; i++)
+            source.append(i == 0 ? "" : ",\n            ").append("y").append(i).append(" : Int <- x").append(i)
+                    .append(" + a").append(i);
+        source.append(" in {\n");
+        for (int i = 0; i < variables; i++)
+            source.append("            a").append(i).append(" <- x").append(i).append(" + y").append(i).append(";\n");
+        for (int i = 0; i < variables; i++)
+            source.append("            x").append(i).append(" <- y").append(i).append(" <- a").append(i).append(";\n");
+        source.append("            a").append(variables - 1).append(";\n");
+        source.append("        }\n");
+        source.append("    };\n");
+        source.append("};\n\n");
+
+        source.append("class Main inherits IO {\n");
+        source.append("    main() : Object { out_int((new Wide).f(");
+        for (int i = 0; i < variables; i++)
+            source.append(i == 0 ? "" : ", ").append(i);
+        source.append(")) };\n");
+        source.append("};\n");
+
+        return source.toString();
+    }
+
+    /**
+     * A single arithmetic expression of {@code terms} terms.
+     */
+    public static String arithmetic(int terms) {
+        var source = new StringBuilder("class Main inherits IO {\n");
+
+        source.append("    main() : Object { out_int(0");
+        for (int i = 1; i < terms; i++)
+            source.append(i % 3 == 0 ? " - " : i % 3 == 1 ? " + " : " * ").append(i % 7);
+        source.append(") };\n");
+        source.append("};\n");
+
+        return source.toString();
+    }
+
+    /**
+     * {@code depth} nested let expressions, each binding one variable.
+     */
+    public static String nestedLet(int depth) {
+        var source = new StringBuilder("class Main inherits IO {\n");
+
+        source.append("    main() : Object { out_int(\n");
+        source.append("        let x0 : Int <- 0 in\n");
+        for (int i = 1; i < depth; i++)
+            source.append("        let x").append(i).append(" : Int <- x").append(i - 1).append(" + 1 in\n");
+        source.append("        x").append(depth - 1).append(") };\n");
+        source.append("};\n");
+
+        return source.toString();
+    }
+
+    /**
+     * {@code depth} if expressions, each nested in the else branch of the
+     * previous one.
+     */
+    public static String nestedIf(int depth) {
+        var source = new StringBuilder("class Main inherits IO {\n");
+
+        source.append("    f(x : Int) : Int {\n");
+        for (int i = 0; i < depth; i++)
+            source.append("        if x < ").append(i).append(" then ").append(i).append(" else\n");
+        source.append("        x\n        ");
+        source.append(" fi".repeat(depth)).append("\n");
+        source.append("    };\n");
+        source.append("    main() : Object { out_int(f(").append(depth).append(")) };\n");
+        source.append("};\n");
+
+        return source.toString();
+    }
+
+    /**
+     * {@code depth} case expressions, each nested in the branch of the
+     * previous one.
+     */
+    public static String nestedCase(int depth) {
+        var source = new StringBuilder("class Main inherits IO {\n");
+
+        source.append("    f(y0 : Int) : Object {\n");
+        for (int i = 1; i <= depth; i++)
+            source.append("        case y").append(i - 1).append(" + 1 of y").append(i).append(" : Int =>\n");
+        source.append("        y").append(depth).append("\n        ");
+        source.append("; esac".repeat(depth)).append("\n");
+        source.append("    };\n");
+        source.append("    main() : Object { f(0) };\n");
+        source.append("};\n");
+
+        return source.toString();
+    }
+
+    /**
+     * A program of {@code files} files, each holding one class, and
+     * another file for Main.
+     */
+    public static List<SourceFile> files(int files) {
+        var sources = new ArrayList<SourceFile>();
+
+        for (int i = 0; i < files; i++) {
+            var source = new StringBuilder();
+            source.append("class F").append(i).append(" inherits ")
+                    .append(i % CHAIN_LENGTH == 0 ? "IO" : "F" + (i - 1)).append(" {\n");
+            source.append("    a").append(i).append(" : Int <- ").append(i).append(";\n");
+            source.append("    f").append(i).append("() : Int { a").append(i).append(" + 1 };\n");
+            source.append("};\n");
+            sources.add(new SourceFile("f" + i + ".cl", source.toString()));
+        }
+
+        sources.add(new SourceFile("main.cl", "class Main inherits IO {\n"
+                + "    main() : Object { out_int((new F0).f0()) };\n"
+                + "};\n"));
+
+        return sources;
+    }
+}
@@ -0,0 +1,44 @@
+package cool.bench;
+
+import cool.compiler.SourceFile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Times code generation for methods that use many variables: programs of
+ * the {@code formals} shape, where a method of N formals, binding N let
+ * variables, reads and assigns each of them and each of N attributes.
+ *
+ *   java cool.bench.VariableAccessBenchmark [--sizes=N,...] [--warmup=N] [--iterations=N] [--time=MS]
+ *
+ * Each operation generates code for a freshly resolved program, as code
+ * generation annotates the AST it runs on.
+ */
+public class VariableAccessBenchmark {
+    public static void main(String[] args) {
+        var rest = new ArrayList<String>();
+        var harness = Harness.fromArgs(args, rest);
+        List<Integer> sizes = List.of(10, 100, 1000);
+
+        for (var arg : rest) {
+            if (arg.startsWith("--sizes="))
+                sizes = Arrays.stream(arg.substring("--sizes=".length()).split(","))
+                        .map(Integer::parseInt).toList();
+            else {
+                System.err.println("Unknown option " + arg);
+                return;
+            }
+        }
+
+        for (int size : sizes) {
+            var sources = List.of(new SourceFile("synthetic.cl", SyntheticProgram.formals(size)));
+            harness.run("codegen:formals" + size,
+                    () -> new Pipeline(sources, Pipeline.SEMANTIC_PASSES.size()),
+                    Pipeline::generate);
+        }
+
+        harness.printSummary(System.out);
+    }
+}
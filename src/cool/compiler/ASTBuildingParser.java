@@ -0,0 +1,67 @@
+package cool.compiler;
+
+import cool.ast.ASTConstructionVisitor;
+import cool.ast.classNode.ClassNode;
+import cool.parser.CoolParser;
+import org.antlr.v4.runtime.TokenStream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parser that does not build a parse tree. Instead, every class is turned
+ * into AST nodes as soon as it has been parsed, after which its contexts
+ * are dropped. Only the contexts of the class being parsed are alive at any
+ * time, rather than the parse tree of the whole file.
+ */
+public class ASTBuildingParser extends CoolParser {
+    private final ASTConstructionVisitor astConstructionVisitor;
+    private final CompileProfiler profiler;
+    private final List<ClassNode> classes = new ArrayList<>();
+
+    public ASTBuildingParser(TokenStream input, int fileId, CompileProfiler profiler) {
+        super(input);
+        this.astConstructionVisitor = new ASTConstructionVisitor(fileId);
+        this.profiler = profiler;
+        setBuildParseTree(false);
+    }
+
+    /**
+     * The classes parsed so far, in source order. Only complete if the file
+     * had no syntax errors.
+     */
+    public List<ClassNode> getClasses() {
+        return classes;
+    }
+
+    @Override
+    public void exitRule() {
+        // After an error, compilation stops before any AST is used, and the
+        // contexts may be missing parts anyway.
+        if (_ctx instanceof ClassContext classContext
+                && classContext.exception == null && getNumberOfSyntaxErrors() == 0) {
+            // Set by the superclass only once the rule is exited, but the
+            // AST records how many tokens the class spans.
+            classContext.stop = _input.LT(-1);
+
+            var phase = profiler.phase("ASTConstructionVisitor", classContext.className.getText());
+            try {
+                classes.add((ClassNode) astConstructionVisitor.visit(classContext));
+            } finally {
+                phase.end();
+            }
+            classContext.features.clear();
+        }
+
+        super.exitRule();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+
+        // Also called by the superclass constructor, before fields are set.
+        if (classes != null)
+            classes.clear();
+    }
+}
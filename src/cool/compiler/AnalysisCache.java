@@ -0,0 +1,439 @@
+package cool.compiler;
+
+import cool.ast.classNode.ClassNode;
+import cool.ast.feature.Field;
+import cool.ast.feature.Method;
+import cool.ast.formal.Formal;
+import cool.ast.type.TypeId;
+import cool.structures.ClassDependencies;
+import cool.structures.ClassSymbol;
+import cool.structures.Names;
+import cool.structures.Scope;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * What semantic analysis found in a compilation, kept for the next one of
+ * the same files, so that only the classes whose inputs changed are
+ * defined and checked again, and the others keep their ASTs, symbols and
+ * errors.
+ *
+ * The passes record what checking each class depends on, by name (see
+ * {@link ClassDependencies}): the classes it names, those it looks
+ * members up in with {@code lookupMethod} and {@code lookupField}, those
+ * defining the members found and the types they are declared with, and
+ * the ancestors of all of these. A class is checked again if its file
+ * changed, or if what any class it depends on declares did: its parent,
+ * the names and types of its attributes, those of its methods and their
+ * formals, and which of these types are defined. The passes skip every
+ * other class, reporting the errors they found in it last time instead.
+ *
+ * A class checked again keeps its {@link ClassSymbol}, so the classes not
+ * checked again still refer to it. Those bound to one of its attributes
+ * keep the attribute's former symbol, whose type and slot are the same,
+ * as the declarations they depend on are.
+ *
+ * Analysis is done over from scratch when the files are not the same ones
+ * in the same order, when the classes kept are not in the same order, and
+ * after a compilation that defined a class twice, failed, or stopped at
+ * the error limit, so a compilation finds what it would find without the
+ * cache. A cache serves one sequence of compilations at a time.
+ */
+public final class AnalysisCache {
+    private record FileState(String name, byte[] digest, List<ClassNode> classes) {
+    }
+
+    /**
+     * What checking a class found and depended on.
+     *
+     * @param diagnostics the errors found, by stage.
+     */
+    private record ClassState(String signature, int[] dependencies, Scope parent,
+                              Map<Integer, List<Diagnostic>> diagnostics) {
+    }
+
+    private static final int DIGEST_BUFFER_SIZE = 8192;
+
+    private static final Set<Integer> BASIC_CLASSES = Set.of(Names.OBJECT, Names.IO, Names.INT, Names.STRING, Names.BOOL);
+
+    // Kept from the last compilation; globals is null if there is nothing
+    // to reuse.
+    private Scope globals;
+    private List<FileState> files = List.of();
+    private List<Integer> order = List.of();
+    private final Map<Integer, ClassSymbol> classSymbols = new HashMap<>();
+    private final Map<Integer, ClassState> classStates = new HashMap<>();
+
+    // The compilation under way.
+    private CompilationSession session;
+    private List<SourceFile> sources;
+    private boolean sameFiles;
+    private byte[][] digests;
+    private boolean[] changedFiles;
+    private boolean incremental;
+    // False if the compilation's results are not to be kept.
+    private boolean reusable;
+    private List<ClassNode> classes;
+    private List<Integer> classNames;
+    private Map<Integer, String> signatures;
+    private boolean[] reused;
+    private ClassDependencies[] dependencies;
+    private final AtomicInteger lastStage = new AtomicInteger();
+
+    /**
+     * Parses the files that changed since the last compilation, and takes
+     * the classes of the others from it.
+     *
+     * @return the files parsed, or kept, in the order of {@code sources}.
+     */
+    public List<SourceParser.ParsedSource> parse(CompilationSession session, List<SourceFile> sources) throws IOException {
+        this.session = session;
+
+        sameFiles = globals != null && files.size() == sources.size();
+        for (int fileId = 0; sameFiles && fileId < sources.size(); fileId++)
+            sameFiles = files.get(fileId).name().equals(sources.get(fileId).name());
+
+        // Files are hashed before they are parsed, so one that changes in
+        // between is seen as changed by the next compilation.
+        digests = new byte[sources.size()][];
+        changedFiles = new boolean[sources.size()];
+
+        for (int fileId = 0; fileId < sources.size(); fileId++) {
+            digests[fileId] = digest(sources.get(fileId));
+            changedFiles[fileId] = !sameFiles || !Arrays.equals(digests[fileId], files.get(fileId).digest());
+        }
+        this.sources = sources;
+
+        var parsed = SourceParser.parseAll(sources, changedIds(), session.getProfiler()).iterator();
+        var results = new ArrayList<SourceParser.ParsedSource>(sources.size());
+
+        for (int fileId = 0; fileId < sources.size(); fileId++)
+            results.add(changedFiles[fileId] ? parsed.next()
+                    : new SourceParser.ParsedSource(sources.get(fileId), files.get(fileId).classes(),
+                            List.of(), false, 0, 0));
+
+        return results;
+    }
+
+    private int[] changedIds() {
+        return IntStream.range(0, changedFiles.length).filter(fileId -> changedFiles[fileId]).toArray();
+    }
+
+    /**
+     * Hashes the contents of {@code source}, streaming those on disk
+     * rather than reading them whole.
+     */
+    private static byte[] digest(SourceFile source) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No SHA-256 in this runtime", e);
+        }
+
+        if (source.contents() != null)
+            return digest.digest(source.contents().getBytes(StandardCharsets.UTF_8));
+
+        try (var in = Files.newInputStream(Path.of(source.name()))) {
+            byte[] buffer = new byte[DIGEST_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) > 0)
+                digest.update(buffer, 0, read);
+        }
+
+        return digest.digest();
+    }
+
+    /**
+     * Decides which classes to check again, parses again the unchanged
+     * files that hold any, so they are checked from a fresh AST, and sets
+     * the symbol table up for the passes.
+     *
+     * @param parsedClasses the classes of the files {@link #parse} gave.
+     * @return the classes to analyze, in order.
+     */
+    public List<ClassNode> prepare(List<ClassNode> parsedClasses) throws IOException {
+        var symbolTable = session.getSymbolTable();
+        int count = parsedClasses.size();
+
+        classes = new ArrayList<>(parsedClasses);
+        reused = new boolean[count];
+        dependencies = new ClassDependencies[count];
+        for (int classIndex = 0; classIndex < count; classIndex++)
+            dependencies[classIndex] = new ClassDependencies();
+        lastStage.set(PassManager.FIRST_STAGE - 1);
+
+        var names = new ArrayList<Integer>(count);
+        var defined = new HashSet<>(BASIC_CLASSES);
+        reusable = true;
+        for (var classNode : classes) {
+            int nameId = classNode.getClassName().getNameId();
+            names.add(nameId);
+            reusable &= nameId != Names.SELF_TYPE && defined.add(nameId);
+        }
+
+        signatures = new HashMap<>();
+        if (reusable)
+            for (var classNode : classes)
+                signatures.put(classNode.getClassName().getNameId(), signature(classNode, defined));
+
+        incremental = reusable && sameFiles && keepsOrder(names);
+        classNames = names;
+
+        if (!incremental) {
+            classSymbols.clear();
+            classStates.clear();
+            symbolTable.defineBasicClasses();
+            session.getProfiler().count("checked classes", count);
+
+            return classes;
+        }
+
+        // The classes whose declarations changed, came or went.
+        var changed = new BitSet();
+        signatures.forEach((nameId, signature) -> {
+            var state = classStates.get(nameId);
+            if (state == null || !state.signature().equals(signature))
+                changed.set(nameId);
+        });
+        classStates.keySet().forEach(nameId -> {
+            if (!signatures.containsKey(nameId))
+                changed.set(nameId);
+        });
+
+        var reparsed = new TreeSet<Integer>();
+        for (int classIndex = 0; classIndex < count; classIndex++) {
+            var classNode = classes.get(classIndex);
+            var state = classStates.get(classNode.getClassName().getNameId());
+
+            reused[classIndex] = !changedFiles[classNode.getFileId()] && state != null
+                    && Arrays.stream(state.dependencies()).noneMatch(changed::get);
+            if (!reused[classIndex] && !changedFiles[classNode.getFileId()])
+                reparsed.add(classNode.getFileId());
+        }
+
+        if (!reparsed.isEmpty()) {
+            var first = firstClassOfEachFile();
+            var parsed = SourceParser.parseAll(sources, reparsed.stream().mapToInt(Integer::intValue).toArray(),
+                    session.getProfiler());
+
+            for (var source : parsed)
+                for (int i = 0; i < source.classes().size(); i++) {
+                    var classNode = source.classes().get(i);
+                    int classIndex = first[classNode.getFileId()] + i;
+                    if (!reused[classIndex])
+                        classes.set(classIndex, classNode);
+                }
+        }
+
+        // The classes kept are linked and numbered again by the passes.
+        symbolTable.reuseBasicClasses(globals);
+        classSymbols.keySet().retainAll(signatures.keySet());
+        classStates.keySet().retainAll(signatures.keySet());
+
+        int reusedCount = 0;
+        for (int classIndex = 0; classIndex < count; classIndex++)
+            if (reused[classIndex]) {
+                var classSymbol = classes.get(classIndex).getClassSymbolWrapper().getClassSymbol();
+                classSymbol.setDirectParent(null);
+                classSymbol.forgetHierarchy();
+                reusedCount++;
+            }
+
+        session.getProfiler().count("checked classes", count - reusedCount);
+        session.getProfiler().count("reused classes", reusedCount);
+
+        return classes;
+    }
+
+    /**
+     * @return whether the classes there were before, and still are, are
+     *         in the same order.
+     */
+    private boolean keepsOrder(List<Integer> names) {
+        var before = new HashSet<>(order);
+        var now = new HashSet<>(names);
+
+        return order.stream().filter(now::contains).toList()
+                .equals(names.stream().filter(before::contains).toList());
+    }
+
+    private int[] firstClassOfEachFile() {
+        var first = new int[sources.size()];
+        Arrays.fill(first, -1);
+
+        for (int classIndex = classes.size() - 1; classIndex >= 0; classIndex--)
+            first[classes.get(classIndex).getFileId()] = classIndex;
+
+        return first;
+    }
+
+    /**
+     * @return what other classes see of a class: its parent, and the names
+     *         and types of its attributes, methods and formals, each type
+     *         marked as defined or not.
+     */
+    private static String signature(ClassNode classNode, Set<Integer> defined) {
+        var text = new StringBuilder();
+        appendType(text, classNode.getParentName(), defined);
+
+        for (var feature : classNode.getFeatures()) {
+            if (feature instanceof Field field) {
+                text.append(";a ").append(field.getFieldId().getName()).append(':');
+                appendType(text, field.getTypeId(), defined);
+            } else if (feature instanceof Method method) {
+                text.append(";m ").append(method.getMethodId().getName()).append('(');
+                for (Formal formal : method.getFormals()) {
+                    text.append(formal.getObjectId().getName()).append(':');
+                    appendType(text, formal.getTypeId(), defined);
+                    text.append(',');
+                }
+                text.append("):");
+                appendType(text, method.getReturnType(), defined);
+            }
+        }
+
+        return text.toString();
+    }
+
+    private static void appendType(StringBuilder text, TypeId typeId, Set<Integer> defined) {
+        if (typeId == null)
+            text.append('-');
+        else
+            text.append(typeId.getName()).append(defined.contains(typeId.getNameId()) ? '+' : '?');
+    }
+
+    /**
+     * Runs the current pass's check of a class, recording what it depends
+     * on; or, for a class kept from the last compilation, runs
+     * {@code reuse} instead, and reports the errors the check found then.
+     */
+    public void check(int classIndex, Runnable check, Runnable reuse) {
+        int stage = session.getDiagnostics().getStage();
+        lastStage.accumulateAndGet(stage, Math::max);
+
+        if (reused[classIndex]) {
+            reuse.run();
+            session.getSymbolTable().error(state(classIndex).diagnostics().getOrDefault(stage, List.of()));
+        } else {
+            dependencies[classIndex].record(check);
+        }
+    }
+
+    /**
+     * @return the symbol for a class being defined: the one it had in the
+     *         last compilation, cleared, or a new one.
+     */
+    public ClassSymbol defineClass(String name, Scope globals) {
+        int nameId = Names.id(name);
+        var classSymbol = incremental ? classSymbols.get(nameId) : null;
+
+        if (classSymbol != null) {
+            classSymbol.clear();
+            return classSymbol;
+        }
+
+        classSymbol = new ClassSymbol(name, globals);
+        classSymbols.putIfAbsent(nameId, classSymbol);
+        return classSymbol;
+    }
+
+    /**
+     * @return the parent a kept class was linked to.
+     */
+    public Scope getParent(int classIndex) {
+        return state(classIndex).parent();
+    }
+
+    private ClassState state(int classIndex) {
+        return classStates.get(classes.get(classIndex).getClassName().getNameId());
+    }
+
+    /**
+     * Keeps what the passes found for the next compilation, or forgets it
+     * all if it cannot be reused. Must be called before the diagnostics
+     * are printed.
+     */
+    public void save() {
+        var diagnostics = session.getDiagnostics();
+        if (!reusable || diagnostics.isLimitReached()) {
+            clear();
+            return;
+        }
+
+        var byStage = new HashMap<Integer, Map<Integer, List<Diagnostic>>>();
+        for (int stage = PassManager.FIRST_STAGE; stage <= lastStage.get(); stage++)
+            byStage.put(stage, diagnostics.getDiagnostics(stage));
+
+        globals = session.getSymbolTable().getGlobals();
+        order = classNames;
+
+        for (int classIndex = 0; classIndex < classes.size(); classIndex++) {
+            if (reused[classIndex])
+                continue;
+
+            var classNode = classes.get(classIndex);
+            var classSymbol = classNode.getClassSymbolWrapper().getClassSymbol();
+            var classDependencies = dependencies[classIndex];
+
+            // A class depends on itself, and on the ancestors of what it
+            // depends on, through the lookups and conformance checks.
+            classDependencies.add(classSymbol.getNameId());
+            for (int nameId : classDependencies.toArray()) {
+                Set<ClassSymbol> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (Object ancestor = globals.lookup(nameId, false);
+                     ancestor instanceof ClassSymbol ancestorClass && seen.add(ancestorClass);
+                     ancestor = ancestorClass.getDirectParent())
+                    classDependencies.add(ancestorClass.getNameId());
+            }
+
+            var classDiagnostics = new HashMap<Integer, List<Diagnostic>>();
+            for (var stage : byStage.entrySet()) {
+                var found = stage.getValue().get(classIndex);
+                if (found != null)
+                    classDiagnostics.put(stage.getKey(), found);
+            }
+
+            classStates.put(classSymbol.getNameId(), new ClassState(signatures.get(classSymbol.getNameId()),
+                    classDependencies.toArray(), classSymbol.getDirectParent(), classDiagnostics));
+        }
+
+        var classesByFile = new ArrayList<List<ClassNode>>();
+        for (int fileId = 0; fileId < sources.size(); fileId++)
+            classesByFile.add(new ArrayList<>());
+        for (var classNode : classes)
+            classesByFile.get(classNode.getFileId()).add(classNode);
+
+        var kept = new ArrayList<FileState>(sources.size());
+        for (int fileId = 0; fileId < sources.size(); fileId++)
+            kept.add(new FileState(sources.get(fileId).name(), digests[fileId], classesByFile.get(fileId)));
+        files = kept;
+    }
+
+    /**
+     * @return whether nothing is kept, so nothing refers to the names of
+     *         an earlier compilation.
+     */
+    public boolean isEmpty() {
+        return globals == null;
+    }
+
+    /**
+     * Forgets everything, so the next compilation starts from scratch.
+     */
+    public void clear() {
+        globals = null;
+        files = List.of();
+        order = List.of();
+        classSymbols.clear();
+        classStates.clear();
+    }
+}
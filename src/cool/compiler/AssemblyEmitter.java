@@ -0,0 +1,197 @@
+package cool.compiler;
+
+import cool.ast.ASTCodeGenVisitor;
+import cool.mips.Fragment;
+import cool.mips.InstructionList;
+import org.stringtemplate.v4.ST;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Collects the assembly of a program, section by section, as code
+ * generation produces it, then writes it out in the layout of the
+ * {@code program} template.
+ *
+ * Every piece is written out as text as soon as it is added, so the code
+ * built for a class can be dropped once the class is done. A section holds at
+ * most {@link #SPILL_THRESHOLD} characters in memory, then moves them to a
+ * temporary file, so memory stays bounded however large the output. The
+ * literal constants come first in the output but are complete only once
+ * all code is generated, so nothing can be written before then.
+ */
+public class AssemblyEmitter implements Closeable {
+    public enum Section {
+        LITERAL_CONSTS("literalConsts", true),
+        PROT_OBJS("protObjs", false),
+        DISP_TABS("dispTabs", false),
+        INITS("inits", true),
+        METHODS("methods", false),
+        CLASS_NAMES("classNames", false),
+        CLASS_OBJECTS("classObjects", false);
+
+        private final String attribute;
+        // If its pieces are separated by a blank line.
+        private final boolean spaced;
+
+        Section(String attribute, boolean spaced) {
+            this.attribute = attribute;
+            this.spaced = spaced;
+        }
+    }
+
+    // The newline the program template renders with.
+    private static final String NEWLINE = System.lineSeparator();
+    private static final String BLANK_LINE = NEWLINE + NEWLINE;
+
+    static final int SPILL_THRESHOLD = 1 << 20;
+
+    private static final char MARK = '\u0001';
+
+    // The program template, cut around its sections: SKELETON[i] comes
+    // before LAYOUT[i], and the last piece after the last section.
+    private static final String[] SKELETON;
+    private static final Section[] LAYOUT;
+
+    static {
+        ST program = ASTCodeGenVisitor.templates.getInstanceOf("program");
+        for (var section : Section.values())
+            program.add(section.attribute, MARK + section.name() + MARK);
+
+        String text = program.render();
+        var pieces = new ArrayList<String>();
+        var layout = new ArrayList<Section>();
+        int from = 0;
+
+        for (int start; (start = text.indexOf(MARK, from)) >= 0; ) {
+            int end = text.indexOf(MARK, start + 1);
+            pieces.add(text.substring(from, start));
+            layout.add(Section.valueOf(text.substring(start + 1, end)));
+            from = end + 1;
+        }
+        pieces.add(text.substring(from));
+
+        SKELETON = pieces.toArray(new String[0]);
+        LAYOUT = layout.toArray(new Section[0]);
+    }
+
+    private static final class Buffer {
+        final StringBuilder text = new StringBuilder();
+        boolean empty = true;
+        // Where the text went past the threshold, or null.
+        FileChannel spill = null;
+    }
+
+    private final Map<Section, Buffer> buffers = new EnumMap<>(Section.class);
+
+    public AssemblyEmitter() {
+        for (var section : Section.values())
+            buffers.put(section, new Buffer());
+    }
+
+    /**
+     * Writes {@code code} as the text {@link #add(Section, InstructionList)}
+     * would, but for its labels. Safe to call from any thread.
+     */
+    public static Fragment render(InstructionList code) {
+        return code.toFragment(NEWLINE);
+    }
+
+    /**
+     * Writes {@code code} as text and appends it to the section.
+     */
+    public void add(Section section, InstructionList code) {
+        var buffer = buffers.get(section);
+        code.appendTo(startPiece(section, buffer), NEWLINE);
+        spillIfFull(buffer);
+    }
+
+    /**
+     * Appends {@code fragment} to the section, with its labels filled in.
+     */
+    public void add(Section section, Fragment fragment) {
+        var buffer = buffers.get(section);
+        fragment.appendTo(startPiece(section, buffer));
+        spillIfFull(buffer);
+    }
+
+    /**
+     * @return the text of the section, ready for the next piece.
+     */
+    private static StringBuilder startPiece(Section section, Buffer buffer) {
+        if (!buffer.empty)
+            buffer.text.append(section.spaced ? BLANK_LINE : NEWLINE);
+        buffer.empty = false;
+
+        return buffer.text;
+    }
+
+    private static void spillIfFull(Buffer buffer) {
+        if (buffer.text.length() >= SPILL_THRESHOLD) {
+            try {
+                spill(buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static void spill(Buffer buffer) throws IOException {
+        if (buffer.spill == null)
+            buffer.spill = FileChannel.open(Files.createTempFile("cool", ".s"), StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+
+        write(buffer.spill, buffer.text);
+        buffer.text.setLength(0);
+    }
+
+    private static void write(WritableByteChannel out, CharSequence text) throws IOException {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(text));
+        while (bytes.hasRemaining())
+            out.write(bytes);
+    }
+
+    /**
+     * Writes the program, followed by a newline.
+     */
+    public void writeTo(WritableByteChannel out) throws IOException {
+        for (int i = 0; i < LAYOUT.length; i++) {
+            write(out, SKELETON[i]);
+
+            var buffer = buffers.get(LAYOUT[i]);
+            if (buffer.spill == null) {
+                write(out, buffer.text);
+                continue;
+            }
+
+            spill(buffer);
+            long size = buffer.spill.size();
+            for (long position = 0; position < size; )
+                position += buffer.spill.transferTo(position, size - position, out);
+        }
+
+        write(out, SKELETON[LAYOUT.length]);
+        write(out, NEWLINE);
+    }
+
+    /**
+     * Deletes the temporary files, if any.
+     */
+    @Override
+    public void close() throws IOException {
+        for (var buffer : buffers.values())
+            if (buffer.spill != null)
+                buffer.spill.close();
+    }
+}
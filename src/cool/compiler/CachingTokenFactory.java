@@ -0,0 +1,82 @@
+package cool.compiler;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Pair;
+
+import java.io.Serial;
+import java.util.List;
+
+/**
+ * Creates tokens that only hold offsets into the input, and build their
+ * text the first time it is asked for. The AST asks for the text of the
+ * same token many times over, so it is kept after that.
+ *
+ * Tokens read from a memory-mapped file are {@link #detach detached} from
+ * it once the file is parsed, as the file may change, or be truncated,
+ * while its AST is still in use.
+ */
+public class CachingTokenFactory implements TokenFactory<CommonToken> {
+    public static final CachingTokenFactory DEFAULT = new CachingTokenFactory();
+
+    public static class CachingToken extends CommonToken {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        public CachingToken(Pair<TokenSource, CharStream> source, int type, int channel, int start, int stop) {
+            super(source, type, channel, start, stop);
+        }
+
+        public CachingToken(int type, String text) {
+            super(type, text);
+        }
+
+        @Override
+        public String getText() {
+            if (text == null)
+                text = super.getText();
+
+            return text;
+        }
+
+        /**
+         * Builds the text now, and forgets the input it came from.
+         */
+        void detach() {
+            getText();
+            source = EMPTY_SOURCE;
+        }
+    }
+
+    /**
+     * Gives each of {@code tokens} its text, so none of them reads its
+     * input again.
+     */
+    public static void detach(List<Token> tokens) {
+        for (var token : tokens)
+            if (token instanceof CachingToken cachingToken)
+                cachingToken.detach();
+    }
+
+    @Override
+    public CommonToken create(Pair<TokenSource, CharStream> source, int type, String text,
+                              int channel, int start, int stop, int line, int charPositionInLine) {
+        var token = new CachingToken(source, type, channel, start, stop);
+        token.setLine(line);
+        token.setCharPositionInLine(charPositionInLine);
+
+        // Set by lexer actions, e.g. for string literals.
+        if (text != null)
+            token.setText(text);
+
+        return token;
+    }
+
+    @Override
+    public CommonToken create(int type, String text) {
+        return new CachingToken(type, text);
+    }
+}
@@ -0,0 +1,9 @@
+package cool.compiler;
+
+/**
+ * Outcome of a compilation: the generated assembly (empty if compilation
+ * halted) and the error messages, in the format printed by the command line
+ * compiler.
+ */
+public record CompilationResult(String assembly, String diagnostics, boolean success) {
+}
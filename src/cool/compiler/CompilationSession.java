@@ -0,0 +1,78 @@
+package cool.compiler;
+
+import cool.structures.SymbolTable;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds all the state of a single compilation. Sessions share nothing with
+ * each other, so separate compilations may run on separate threads.
+ */
+public class CompilationSession {
+    private final SymbolTable symbolTable;
+    // Names of the compiled files, indexed by the file ids kept in AST nodes.
+    private final List<String> fileNames = new ArrayList<>();
+    private final Diagnostics diagnostics = new Diagnostics(fileNames);
+    private final ParseStatistics parseStatistics = new ParseStatistics();
+    private CompileProfiler profiler = CompileProfiler.DISABLED;
+    // Null unless generated code is to be cached.
+    private FragmentCache fragmentCache;
+    // Null unless analysis is to reuse what an earlier compilation found.
+    private AnalysisCache analysisCache;
+    private final PrintStream errorStream;
+
+    public CompilationSession(PrintStream errorStream) {
+        this.errorStream = errorStream;
+        this.symbolTable = new SymbolTable(this);
+    }
+
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    public List<String> getFileNames() {
+        return fileNames;
+    }
+
+    public String getFileName(int fileId) {
+        return fileNames.get(fileId);
+    }
+
+    public Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    public ParseStatistics getParseStatistics() {
+        return parseStatistics;
+    }
+
+    public CompileProfiler getProfiler() {
+        return profiler;
+    }
+
+    public void setProfiler(CompileProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public FragmentCache getFragmentCache() {
+        return fragmentCache;
+    }
+
+    public void setFragmentCache(FragmentCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+
+    public AnalysisCache getAnalysisCache() {
+        return analysisCache;
+    }
+
+    public void setAnalysisCache(AnalysisCache analysisCache) {
+        this.analysisCache = analysisCache;
+    }
+
+    public PrintStream getErrorStream() {
+        return errorStream;
+    }
+}
@@ -0,0 +1,179 @@
+package cool.compiler;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Collects where a compilation spends its time. Each phase gets wall time,
+ * CPU time and bytes allocated by the measuring thread; a phase measured
+ * several times, e.g. once per file on several threads, adds up. Units of
+ * work within a phase, such as single classes, are recorded as spans for
+ * a Chrome trace (chrome://tracing, or https://ui.perfetto.dev).
+ */
+public class CompileProfiler {
+    public interface Span {
+        void end();
+    }
+
+    public static final CompileProfiler DISABLED = new CompileProfiler(false);
+    private static final Span NO_SPAN = () -> { };
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static class Phase {
+        final long firstStart;
+        long wallNanos;
+        long cpuNanos;
+        long allocatedBytes;
+
+        Phase(long firstStart) {
+            this.firstStart = firstStart;
+        }
+    }
+
+    private record Event(String name, String category, long start, long duration, long threadId) {
+    }
+
+    private final boolean enabled;
+    private final long origin = System.nanoTime();
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+    private final List<String> notes = new ArrayList<>();
+    private final List<Event> events = new ArrayList<>();
+
+    public CompileProfiler() {
+        this(true);
+    }
+
+    private CompileProfiler(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Span phase(String phase) {
+        return phase(phase, phase);
+    }
+
+    /**
+     * Measures part of a phase on the current thread, until the span is
+     * ended. It also shows up in the trace as {@code name}.
+     */
+    public Span phase(String phase, String name) {
+        if (!enabled)
+            return NO_SPAN;
+
+        long start = System.nanoTime();
+        long cpu = threads.getCurrentThreadCpuTime();
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+
+        return () -> {
+            long end = System.nanoTime();
+            addPhase(phase, start, end - start, threads.getCurrentThreadCpuTime() - cpu,
+                    threads.getCurrentThreadAllocatedBytes() - allocated);
+            addEvent(new Event(name, phase, start, end - start, Thread.currentThread().getId()));
+        };
+    }
+
+    /**
+     * Records a trace span for a unit of work within a phase, e.g. one
+     * class, without measuring it separately.
+     */
+    public Span span(String phase, String name) {
+        if (!enabled)
+            return NO_SPAN;
+
+        long start = System.nanoTime();
+        return () -> addEvent(new Event(name, phase, start, System.nanoTime() - start,
+                Thread.currentThread().getId()));
+    }
+
+    /**
+     * Adds a line to explain the table, printed after the phases.
+     */
+    public synchronized void note(String note) {
+        if (enabled)
+            notes.add(note);
+    }
+
+    public synchronized void count(String name, long value) {
+        if (enabled)
+            counts.merge(name, value, Long::sum);
+    }
+
+    private synchronized void addPhase(String name, long start, long wallNanos, long cpuNanos, long allocatedBytes) {
+        var phase = phases.computeIfAbsent(name, key -> new Phase(start));
+        phase.wallNanos += wallNanos;
+        phase.cpuNanos += cpuNanos;
+        phase.allocatedBytes += allocatedBytes;
+    }
+
+    private synchronized void addEvent(Event event) {
+        events.add(event);
+    }
+
+    /**
+     * Prints the phases in the order they started, followed by the counters.
+     */
+    public synchronized void printTable(PrintStream out) {
+        out.printf("%-28s %10s %10s %12s%n", "phase", "wall ms", "cpu ms", "alloc MB");
+
+        var sorted = new ArrayList<>(phases.entrySet());
+        sorted.sort(Comparator.comparingLong(entry -> entry.getValue().firstStart));
+        for (var entry : sorted) {
+            var phase = entry.getValue();
+            out.printf("%-28s %10.2f %10.2f %12.2f%n", entry.getKey(), phase.wallNanos / 1e6,
+                    phase.cpuNanos / 1e6, phase.allocatedBytes / (1024.0 * 1024.0));
+        }
+        out.println("(phases run on several threads add up over all of them)");
+        for (var note : notes)
+            out.println("(" + note + ")");
+
+        for (var entry : counts.entrySet())
+            out.printf("%-28s %10d%n", entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * Writes the spans in Chrome's trace event format.
+     */
+    public synchronized void writeTrace(Writer out) throws IOException {
+        out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+
+        for (int i = 0; i < events.size(); i++) {
+            var event = events.get(i);
+            out.write(i == 0 ? "\n" : ",\n");
+            out.write("{\"name\":" + jsonString(event.name())
+                    + ",\"cat\":" + jsonString(event.category())
+                    + ",\"ph\":\"X\",\"pid\":1,\"tid\":" + event.threadId()
+                    + ",\"ts\":" + String.format(Locale.ROOT, "%.3f", (event.start() - origin) / 1e3)
+                    + ",\"dur\":" + String.format(Locale.ROOT, "%.3f", event.duration() / 1e3) + "}");
+        }
+
+        out.write("\n]}\n");
+    }
+
+    private static String jsonString(String value) {
+        var result = new StringBuilder("\"");
+
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\')
+                result.append('\\').append(c);
+            else if (c < 0x20)
+                result.append(String.format("\\u%04x", (int) c));
+            else
+                result.append(c);
+        }
+
+        return result.append('"').toString();
+    }
+}
@@ -0,0 +1,198 @@
+package cool.compiler;
+
+import cool.ast.ASTCodeGenVisitor;
+import cool.structures.Names;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-lived compiler process. Keeping the JVM around means the ANTLR ATN,
+ * the parser's DFA cache, the code generation templates and the JIT-compiled
+ * code are all reused between compilations.
+ *
+ * Every request is a single line holding the names of the files to compile,
+ * separated by whitespace. Every response looks like this:
+ *
+ *   assembly N
+ *   (N bytes of assembly)
+ *   diagnostics M
+ *   (M bytes of error messages)
+ *   status ok|halted|failed
+ *
+ * Each connection keeps what semantic analysis found in its last
+ * compilation, so a request for the same files again only checks the
+ * classes affected by what changed in them (see {@link AnalysisCache}).
+ * The names interned by compilations are forgotten whenever no request is
+ * running and no connection keeps any analysis. Connections that stay
+ * open would keep them forever, so once more than a set number of names
+ * are interned, every connection's analysis is forgotten as well when no
+ * request is running, and their next requests analyse all again. Under a
+ * load that never leaves the server idle, names are never forgotten.
+ */
+public class CompileServer {
+    // Enough for many programs to be served incrementally at a time.
+    private static final int NAME_LIMIT = 1 << 18;
+
+    // Requests running, and the analysis caches keeping names, in all the
+    // servers of the JVM, as they share the names.
+    private static int running = 0;
+    private static final Set<AnalysisCache> keeping = new HashSet<>();
+
+    private final int nameLimit;
+
+    public CompileServer() {
+        this(NAME_LIMIT);
+    }
+
+    /**
+     * @param nameLimit how many interned names the analyses connections
+     *                  keep may hold on to.
+     */
+    public CompileServer(int nameLimit) {
+        this.nameLimit = nameLimit;
+
+        // Load the templates up front, instead of during the first request.
+        ASTCodeGenVisitor.templates.load();
+    }
+
+    /**
+     * Answers requests read from {@code in} until end of input.
+     */
+    public void serve(InputStream in, OutputStream out) throws IOException {
+        var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        var writer = new BufferedOutputStream(out);
+        var analysis = new AnalysisCache();
+
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty())
+                    continue;
+
+                handle(Arrays.stream(line.split("\\s+")).map(SourceFile::onDisk).toList(), analysis, writer);
+                writer.flush();
+            }
+        } finally {
+            closed(analysis);
+        }
+    }
+
+    /**
+     * Answers requests coming over a Unix-domain socket bound to
+     * {@code socketPath}. Every compilation has its own session, so
+     * connections are served concurrently.
+     */
+    public void serve(Path socketPath) throws IOException {
+        Files.deleteIfExists(socketPath);
+        ExecutorService workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+
+            while (true) {
+                var client = server.accept();
+                workers.execute(() -> {
+                    try (client) {
+                        serve(Channels.newInputStream(client), Channels.newOutputStream(client));
+                    } catch (IOException e) {
+                        // A client going away must not bring the server down.
+                        System.err.println("compile server: " + e.getMessage());
+                    }
+                });
+            }
+        } finally {
+            workers.shutdownNow();
+            Files.deleteIfExists(socketPath);
+        }
+    }
+
+    private void handle(List<SourceFile> sources, AnalysisCache analysis, OutputStream out) throws IOException {
+        var assembly = new ByteArrayOutputStream();
+        var diagnostics = new ByteArrayOutputStream();
+        String status;
+
+        started();
+        try (var asmStream = new PrintStream(assembly, false, StandardCharsets.UTF_8);
+             var errStream = new PrintStream(diagnostics, false, StandardCharsets.UTF_8)) {
+            try {
+                var session = new CompilationSession(errStream);
+                session.setAnalysisCache(analysis);
+                status = Compiler.compile(session, sources, asmStream) ? "ok" : "halted";
+            } catch (IOException | RuntimeException | StackOverflowError e) {
+                e.printStackTrace(errStream);
+                status = "failed";
+            }
+        } finally {
+            finished(analysis);
+        }
+
+        writeSection(out, "assembly", assembly);
+        writeSection(out, "diagnostics", diagnostics);
+        out.write(("status " + status + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void started() {
+        synchronized (keeping) {
+            running++;
+        }
+    }
+
+    private void finished(AnalysisCache analysis) {
+        synchronized (keeping) {
+            running--;
+            released(analysis);
+        }
+    }
+
+    private void closed(AnalysisCache analysis) {
+        synchronized (keeping) {
+            analysis.clear();
+            released(analysis);
+        }
+    }
+
+    /**
+     * Notes what {@code analysis} keeps now, and forgets the interned names
+     * if nothing refers to them any more, or if there are too many, along
+     * with the analyses that refer to them. The connections owning these
+     * are between requests, and see the analyses cleared once their next
+     * one has started. Called holding the lock on {@code keeping}, in the
+     * same block as whatever released it.
+     */
+    private void released(AnalysisCache analysis) {
+        if (analysis.isEmpty())
+            keeping.remove(analysis);
+        else
+            keeping.add(analysis);
+
+        if (running > 0)
+            return;
+
+        if (!keeping.isEmpty() && Names.size() > nameLimit) {
+            keeping.forEach(AnalysisCache::clear);
+            keeping.clear();
+        }
+
+        if (keeping.isEmpty())
+            Names.reset();
+    }
+
+    private static void writeSection(OutputStream out, String name, ByteArrayOutputStream content) throws IOException {
+        out.write((name + " " + content.size() + "\n").getBytes(StandardCharsets.UTF_8));
+        content.writeTo(out);
+    }
+}
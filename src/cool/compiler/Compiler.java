@@ -1,149 +1,260 @@
 package cool.compiler;
 
 import cool.ast.*;
-import cool.ast.ASTTypeResolutionVisitor;
-import org.antlr.v4.runtime.*;
-import org.antlr.v4.runtime.tree.*;
-
-import cool.lexer.*;
-import cool.parser.*;
-import cool.structures.SymbolTable;
+import cool.ast.classNode.ClassNode;
+import cool.ast.program.Program;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 
 public class Compiler {
-    // Annotates class nodes with the names of files where they are defined.
-    public static ParseTreeProperty<String> fileNames = new ParseTreeProperty<>();
-
     public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].startsWith("--server")) {
+            // "--server" serves requests on stdin, "--server=<path>" on a
+            // Unix-domain socket bound to the given path.
+            var server = new CompileServer();
+            if (args[0].startsWith("--server="))
+                server.serve(Path.of(args[0].substring("--server=".length())));
+            else
+                server.serve(System.in, System.out);
+            return;
+        }
+
+        // "--parse-stats" reports how the two parsing stages fared.
+        // "--profile" prints where the time went, and "--profile=<path>"
+        // also writes a Chrome trace of it to the given path.
+        // "--max-errors=<n>" prints only the first n errors, and skips the
+        // passes left once there are that many; "--diagnostics=json"
+        // prints errors as JSON rather than text. "-o <path>" writes the
+        // assembly to the given file rather than to the standard output.
+        // "--cache=<dir>" keeps the code generated for each class in the
+        // given directory, and reuses it for classes that have not changed.
+        boolean parseStats = false;
+        boolean profile = false;
+        String tracePath = null;
+        int maxErrors = 0;
+        var format = Diagnostics.Format.TEXT;
+        Path outputPath = null;
+        Path cachePath = null;
+
+        int firstFile = 0;
+        for (; firstFile < args.length && args[firstFile].startsWith("-"); firstFile++) {
+            var option = args[firstFile];
+            if (option.equals("-o") && firstFile + 1 < args.length) {
+                outputPath = Path.of(args[++firstFile]);
+            } else if (option.equals("--parse-stats")) {
+                parseStats = true;
+            } else if (option.equals("--profile")) {
+                profile = true;
+            } else if (option.startsWith("--profile=")) {
+                profile = true;
+                tracePath = option.substring("--profile=".length());
+            } else if (option.startsWith("--cache=")) {
+                cachePath = Path.of(option.substring("--cache=".length()));
+            } else if (option.matches("--max-errors=\\d+")) {
+                maxErrors = Integer.parseInt(option.substring("--max-errors=".length()));
+            } else if (option.equals("--diagnostics=json")) {
+                format = Diagnostics.Format.JSON;
+            } else if (option.equals("--diagnostics=text")) {
+                format = Diagnostics.Format.TEXT;
+            } else {
+                System.err.println("Unknown option " + option);
+                return;
+            }
+        }
+        args = Arrays.copyOfRange(args, firstFile, args.length);
+
         if (args.length == 0) {
             System.err.println("No file(s) given");
             return;
         }
 
-        CoolLexer lexer = null;
-        CommonTokenStream tokenStream = null;
-        CoolParser parser = null;
-        ParserRuleContext globalTree = null;
-        ASTConstructionVisitor astConstructionVisitor = new ASTConstructionVisitor();
-        ASTDefinitionVisitor astDefinitionVisitor = new ASTDefinitionVisitor();
-        ASTFirstResolutionVisitor astFirstResolutionVisitor = new ASTFirstResolutionVisitor();
-        ASTSecondResolutionVisitor astSecondResolutionVisitor = new ASTSecondResolutionVisitor();
-        ASTTypeResolutionVisitor astTypeResolutionVisitor = new ASTTypeResolutionVisitor();
-        ASTCodeGenVisitor astCodeGenVisitor = new ASTCodeGenVisitor();
+        var session = new CompilationSession(System.err);
+        session.getDiagnostics().setErrorLimit(maxErrors);
+        session.getDiagnostics().setFormat(format);
+        if (profile)
+            session.setProfiler(new CompileProfiler());
+        if (cachePath != null)
+            session.setFragmentCache(new FragmentCache(cachePath));
 
-        // True if any lexical or syntax errors occur.
-        boolean lexicalSyntaxErrors = false;
+        var sources = Arrays.stream(args).map(SourceFile::onDisk).toList();
+        if (outputPath == null) {
+            compile(session, sources, System.out);
+        } else {
+            boolean success = false;
+            try (var output = FileChannel.open(outputPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                success = compile(session, sources, output);
+            } finally {
+                // Leave no partial output behind.
+                if (!success)
+                    Files.deleteIfExists(outputPath);
+            }
+        }
 
-        // Parse each input file and build one big parse tree out of
-        // individual parse trees.
-        for (var fileName : args) {
-            var input = CharStreams.fromFileName(fileName);
+        if (parseStats)
+            session.getParseStatistics().print(System.err);
 
-            // Lexer
-            if (lexer == null)
-                lexer = new CoolLexer(input);
-            else
-                lexer.setInputStream(input);
+        if (profile) {
+            session.getProfiler().printTable(System.err);
 
-            // Token stream
-            if (tokenStream == null)
-                tokenStream = new CommonTokenStream(lexer);
-            else
-                tokenStream.setTokenSource(lexer);
-
-            /*
-            // Test lexer only.
-            tokenStream.fill();
-            List<Token> tokens = tokenStream.getTokens();
-            tokens.stream().forEach(token -> {
-                var text = token.getText();
-                var name = CoolLexer.VOCABULARY.getSymbolicName(token.getType());
-
-                System.out.println(text + " : " + name);
-                //System.out.println(token);
-            });
-            */
-
-            // Parser
-            if (parser == null)
-                parser = new CoolParser(tokenStream);
-            else
-                parser.setTokenStream(tokenStream);
-
-            // Customized error listener, for including file names in error
-            // messages.
-            var errorListener = new BaseErrorListener() {
-                public boolean errors = false;
-
-                @Override
-                public void syntaxError(Recognizer<?, ?> recognizer,
-                                        Object offendingSymbol,
-                                        int line, int charPositionInLine,
-                                        String msg,
-                                        RecognitionException e) {
-                    String newMsg = "\"" + new File(fileName).getName() + "\", line " +
-                            line + ":" + (charPositionInLine + 1) + ", ";
-
-                    Token token = (Token)offendingSymbol;
-                    if (token.getType() == CoolLexer.ERROR)
-                        newMsg += "Lexical error: " + token.getText();
-                    else
-                        newMsg += "Syntax error: " + msg;
-
-                    System.err.println(newMsg);
-                    errors = true;
+            if (tracePath != null)
+                try (var trace = Files.newBufferedWriter(Path.of(tracePath))) {
+                    session.getProfiler().writeTrace(trace);
                 }
-            };
+        }
+    }
 
-            parser.removeErrorListeners();
-            parser.addErrorListener(errorListener);
+    /**
+     * Compiles in-memory sources. Safe to call from several threads at once,
+     * since every call gets its own {@link CompilationSession}.
+     */
+    public static CompilationResult compile(List<SourceFile> sources) throws IOException {
+        var assembly = new ByteArrayOutputStream();
+        var diagnostics = new ByteArrayOutputStream();
+        boolean success;
 
-            // Actual parsing
-            var tree = parser.program();
-            if (globalTree == null)
-                globalTree = tree;
-            else
-                // Add the current parse tree's children to the global tree.
-                for (int i = 0; i < tree.getChildCount(); i++)
-                    globalTree.addAnyChild(tree.getChild(i));
-
-            // Annotate class nodes with file names, to be used later
-            // in semantic error messages.
-            for (int i = 0; i < tree.getChildCount(); i++) {
-                var child = tree.getChild(i);
-                // The only ParserRuleContext children of the program node
-                // are class nodes.
-                if (child instanceof ParserRuleContext)
-                    fileNames.put(child, fileName);
-            }
+        try (var out = new PrintStream(assembly, false, StandardCharsets.UTF_8);
+             var err = new PrintStream(diagnostics, false, StandardCharsets.UTF_8)) {
+            success = compile(sources, out, err);
+        }
+
+        return new CompilationResult(assembly.toString(StandardCharsets.UTF_8),
+                diagnostics.toString(StandardCharsets.UTF_8), success);
+    }
+
+    /**
+     * Compiles the given sources, printing the assembly to {@code out} and any
+     * diagnostics to {@code err}.
+     *
+     * @return true if the assembly was generated.
+     */
+    public static boolean compile(List<SourceFile> sources, PrintStream out, PrintStream err) throws IOException {
+        return compile(new CompilationSession(err), sources, out);
+    }
+
+    /**
+     * Compiles the given sources within an existing session, whose error
+     * stream receives the diagnostics.
+     */
+    public static boolean compile(CompilationSession session, List<SourceFile> sources,
+                                  PrintStream out) throws IOException {
+        boolean success = compile(session, sources, Channels.newChannel(out));
+        out.flush();
+
+        return success;
+    }
+
+    /**
+     * Compiles the given sources within an existing session, writing the
+     * assembly to {@code out} once it is all generated.
+     */
+    public static boolean compile(CompilationSession session, List<SourceFile> sources,
+                                  WritableByteChannel out) throws IOException {
+        PrintStream err = session.getErrorStream();
+        Diagnostics diagnostics = session.getDiagnostics();
+        CompileProfiler profiler = session.getProfiler();
+        AnalysisCache analysis = session.getAnalysisCache();
+
+        // AST nodes refer to their files by index in this list.
+        for (var source : sources)
+            session.getFileNames().add(source.name());
+
+        ArrayList<ClassNode> classes = new ArrayList<>();
+        PassManager semanticPasses = PassManager.semanticPasses(session);
+
+        // True if any lexical or syntax errors occur.
+        boolean lexicalSyntaxErrors = false;
+
+        // Parse the input files independently, building the AST of each
+        // file on the way, then put the classes of all files together, in
+        // command line order. With an analysis cache, only the files that
+        // changed since its last compilation are parsed.
+        profiler.note("ASTConstructionVisitor runs while parsing, and is part of lex/parse");
+        var parsedSources = analysis != null ? analysis.parse(session, sources)
+                : SourceParser.parseAll(sources, profiler);
+        for (int fileId = 0; fileId < parsedSources.size(); fileId++) {
+            var parsed = parsedSources.get(fileId);
+            // Parsing is the first stage, with a unit per file.
+            diagnostics.within(0, fileId, () -> parsed.errors().forEach(diagnostics::report));
+
+            classes.addAll(parsed.classes());
 
             // Record any lexical or syntax errors.
-            lexicalSyntaxErrors |= errorListener.errors;
+            lexicalSyntaxErrors |= parsed.hasErrors();
+            session.getParseStatistics().add(parsed);
         }
 
         // Stop before semantic analysis phase, in case errors occurred.
         if (lexicalSyntaxErrors) {
-            System.err.println("Compilation halted");
-            return;
+            diagnostics.print(err, true);
+            return false;
         }
 
-        // Populate global scope.
-        SymbolTable.defineBasicClasses();
+        // Populate global scope, or set up the one the analysis cache kept.
+        if (analysis != null)
+            classes = new ArrayList<>(analysis.prepare(classes));
+        else
+            session.getSymbolTable().defineBasicClasses();
 
-        ASTNode astRoot = astConstructionVisitor.visit(globalTree);
-        astRoot.accept(astDefinitionVisitor);
-        astRoot.accept(astFirstResolutionVisitor);
-        astRoot.accept(astSecondResolutionVisitor);
-        astRoot.accept(astTypeResolutionVisitor);
+        Program astRoot = new Program(classes.get(0).getToken(), 0, classes);
 
-        if (SymbolTable.hasSemanticErrors()) {
-            System.err.println("Compilation halted");
-            return;
+        if (profiler.isEnabled()) {
+            var counter = new ASTCountVisitor();
+            astRoot.accept(counter);
+            profiler.count("AST nodes", counter.getTotal());
+            counter.getCounts().forEach((kind, count) -> profiler.count("  " + kind, count));
+        }
+
+        // Definition and first resolution walk the whole program in turn;
+        // second and type resolution then go through each class together,
+        // on several threads.
+        try {
+            semanticPasses.run(astRoot);
+        } catch (RuntimeException | Error e) {
+            if (analysis != null)
+                analysis.clear();
+            diagnostics.print(err, false);
+            throw e;
+        }
+
+        if (analysis != null)
+            analysis.save();
+
+        if (session.getSymbolTable().hasSemanticErrors()) {
+            diagnostics.print(err, true);
+            return false;
+        }
+        diagnostics.print(err, false);
+
+        // Classes are generated in parallel, and merged in order into the
+        // emitter, which holds the code, partly in temporary files, until
+        // it can be written in order.
+        try (var emitter = new AssemblyEmitter()) {
+            ASTCodeGenVisitor astCodeGenVisitor = new ASTCodeGenVisitor(session, emitter);
+            astRoot.accept(astCodeGenVisitor);
+            profiler.count("int literals", astCodeGenVisitor.getIntLiteralCount());
+            profiler.count("string literals", astCodeGenVisitor.getStringLiteralCount());
+            profiler.count("bool literals", astCodeGenVisitor.getBoolLiteralCount());
+
+            var phase = profiler.phase("write");
+            try {
+                emitter.writeTo(out);
+            } finally {
+                phase.end();
+            }
         }
 
-        var prog = astRoot.accept(astCodeGenVisitor);
-        System.out.println(prog.getSt().render());
+        return true;
     }
 }
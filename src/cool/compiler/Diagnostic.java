@@ -0,0 +1,48 @@
+package cool.compiler;
+
+/**
+ * An error found in the program being compiled.
+ *
+ * @param fileId the index of the file in the compilation, or
+ *               {@link #NO_FILE} for errors about the program as a whole.
+ * @param column counted from 1.
+ */
+public record Diagnostic(int fileId, int line, int column, Kind kind, String message) {
+    public static final int NO_FILE = -1;
+
+    public enum Kind {
+        LEXICAL("Lexical error", "lexical"),
+        SYNTAX("Syntax error", "syntax"),
+        SEMANTIC("Semantic error", "semantic");
+
+        private final String label;
+        private final String jsonName;
+
+        Kind(String label, String jsonName) {
+            this.label = label;
+            this.jsonName = jsonName;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * @return the kind as {@code --diagnostics=json} names it.
+         */
+        public String getJsonName() {
+            return jsonName;
+        }
+    }
+
+    /**
+     * @return the diagnostic as the command line compiler prints it.
+     * @param baseName the name of the file, without its directory.
+     */
+    public String format(String baseName) {
+        if (fileId == NO_FILE)
+            return kind.getLabel() + ": " + message;
+
+        return "\"" + baseName + "\", line " + line + ":" + column + ", " + kind.getLabel() + ": " + message;
+    }
+}
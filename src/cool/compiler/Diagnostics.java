@@ -0,0 +1,249 @@
+package cool.compiler;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the diagnostics of a compilation, possibly from several threads
+ * at once, and prints them when the compilation is over.
+ *
+ * Each diagnostic is reported within a stage and a unit of it, e.g. a pass
+ * and a class, set for the reporting thread by {@link #within}. Printing
+ * orders diagnostics by stage, then unit, then the order they came in, so
+ * the output does not depend on how the work was spread over threads, and
+ * is what running the stages one after the other would have printed.
+ */
+public class Diagnostics {
+    public enum Format { TEXT, JSON }
+
+    // Stage for diagnostics reported outside any; they come last.
+    private static final int NO_STAGE = Integer.MAX_VALUE;
+
+    private record Entry(int stage, int unit, long sequence, Diagnostic diagnostic) {
+    }
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt(Entry::stage)
+            .thenComparingInt(Entry::unit)
+            .thenComparingLong(Entry::sequence);
+
+    private record Context(int stage, int unit) {
+    }
+
+    private static final Context NO_CONTEXT = new Context(NO_STAGE, 0);
+
+    private final List<String> fileNames;
+    private final List<Entry> entries = new ArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger count = new AtomicInteger();
+    private final ThreadLocal<Context> context = ThreadLocal.withInitial(() -> NO_CONTEXT);
+    private Format format = Format.TEXT;
+    private int errorLimit = 0;
+
+    /**
+     * @param fileNames the names of the files, by file id.
+     */
+    public Diagnostics(List<String> fileNames) {
+        this.fileNames = fileNames;
+    }
+
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Sets how many diagnostics to print at most; 0, the default, prints
+     * them all. Once there are that many, {@link #isLimitReached()} tells
+     * the compiler to stop early.
+     */
+    public void setErrorLimit(int errorLimit) {
+        this.errorLimit = errorLimit;
+    }
+
+    public void report(Diagnostic diagnostic) {
+        var current = context.get();
+        var entry = new Entry(current.stage(), current.unit(), sequence.getAndIncrement(), diagnostic);
+
+        synchronized (entries) {
+            entries.add(entry);
+            count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Runs {@code work}, recording the diagnostics it reports on this
+     * thread as part of the given stage and unit.
+     */
+    public void within(int stage, int unit, Runnable work) {
+        var previous = context.get();
+        context.set(new Context(stage, unit));
+
+        try {
+            work.run();
+        } finally {
+            context.set(previous);
+        }
+    }
+
+    /**
+     * Runs {@code work}, recording the diagnostics it reports on this
+     * thread as part of the given unit of the stage the thread is in.
+     */
+    public void withinUnit(int unit, Runnable work) {
+        within(context.get().stage(), unit, work);
+    }
+
+    /**
+     * @return the stage diagnostics reported on this thread are part of.
+     */
+    public int getStage() {
+        return context.get().stage();
+    }
+
+    /**
+     * Forgets the diagnostics ordered after the given unit of a stage, for
+     * when that unit failed and what came after it would not have run.
+     */
+    public void discardAfter(int stage, int unit) {
+        synchronized (entries) {
+            int before = entries.size();
+            entries.removeIf(entry -> entry.stage() > stage || (entry.stage() == stage && entry.unit() > unit));
+            count.addAndGet(entries.size() - before);
+        }
+    }
+
+    public boolean hasErrors() {
+        return count.get() > 0;
+    }
+
+    public int getCount() {
+        return count.get();
+    }
+
+    public boolean isLimitReached() {
+        return errorLimit > 0 && count.get() >= errorLimit;
+    }
+
+    /**
+     * @return the diagnostics in the order they are printed.
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return sorted().stream().map(Entry::diagnostic).toList();
+    }
+
+    /**
+     * @return the diagnostics of the given stage, by unit, each unit's in
+     *         the order they came in.
+     */
+    public Map<Integer, List<Diagnostic>> getDiagnostics(int stage) {
+        var byUnit = new HashMap<Integer, List<Diagnostic>>();
+        for (var entry : sorted())
+            if (entry.stage() == stage)
+                byUnit.computeIfAbsent(entry.unit(), unit -> new ArrayList<>()).add(entry.diagnostic());
+
+        return byUnit;
+    }
+
+    private List<Entry> sorted() {
+        List<Entry> sorted;
+        synchronized (entries) {
+            sorted = new ArrayList<>(entries);
+        }
+
+        sorted.sort(ORDER);
+        return sorted;
+    }
+
+    /**
+     * Prints the diagnostics reported so far and forgets them. In text,
+     * one per line, followed by "Compilation halted" if {@code halted}; in
+     * JSON, as a single object holding both.
+     */
+    public void print(PrintStream out, boolean halted) {
+        var sorted = sorted();
+        int total = sorted.size();
+        if (errorLimit > 0 && total > errorLimit)
+            sorted = sorted.subList(0, errorLimit);
+
+        var baseNames = new String[fileNames.size()];
+        var text = new StringBuilder();
+        var newline = System.lineSeparator();
+
+        if (format == Format.JSON)
+            text.append("{\"diagnostics\":[");
+
+        for (int i = 0; i < sorted.size(); i++) {
+            var diagnostic = sorted.get(i).diagnostic();
+            String baseName = null;
+            if (diagnostic.fileId() != Diagnostic.NO_FILE) {
+                if (baseNames[diagnostic.fileId()] == null)
+                    baseNames[diagnostic.fileId()] = new File(fileNames.get(diagnostic.fileId())).getName();
+                baseName = baseNames[diagnostic.fileId()];
+            }
+
+            if (format == Format.JSON)
+                appendJson(text.append(i == 0 ? newline : "," + newline), diagnostic, baseName);
+            else
+                text.append(diagnostic.format(baseName)).append(newline);
+
+            // Print in chunks, rather than building all of it first.
+            if (text.length() > 1 << 16) {
+                out.print(text);
+                text.setLength(0);
+            }
+        }
+
+        if (format == Format.JSON) {
+            text.append(newline).append("],\"omitted\":").append(total - sorted.size())
+                    .append(",\"halted\":").append(halted).append('}').append(newline);
+        } else {
+            if (total > sorted.size())
+                text.append(total - sorted.size()).append(" more errors not shown").append(newline);
+            if (halted)
+                text.append("Compilation halted").append(newline);
+        }
+
+        out.print(text);
+        out.flush();
+
+        synchronized (entries) {
+            entries.clear();
+            count.set(0);
+        }
+    }
+
+    private static void appendJson(StringBuilder text, Diagnostic diagnostic, String baseName) {
+        text.append("{\"file\":");
+        if (baseName == null)
+            text.append("null");
+        else
+            appendJsonString(text, baseName);
+        text.append(",\"line\":").append(diagnostic.line())
+                .append(",\"column\":").append(diagnostic.column())
+                .append(",\"kind\":\"").append(diagnostic.kind().getJsonName()).append('"')
+                .append(",\"message\":");
+        appendJsonString(text, diagnostic.message());
+        text.append('}');
+    }
+
+    private static void appendJsonString(StringBuilder text, String value) {
+        text.append('"');
+
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\')
+                text.append('\\').append(c);
+            else if (c < 0x20)
+                text.append(String.format("\\u%04x", (int) c));
+            else
+                text.append(c);
+        }
+
+        text.append('"');
+    }
+}
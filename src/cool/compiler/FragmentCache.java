@@ -0,0 +1,91 @@
+package cool.compiler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * An on-disk store of generated code fragments, keyed by a hash of all
+ * that went into generating them, so a fragment found under a key is the
+ * one generating would give again. Safe for concurrent use, by threads or
+ * by compilers sharing the directory.
+ *
+ * Each fragment is a file named after its key, in a subdirectory named
+ * after the key's first two characters, and ends with a checksum. Files
+ * are written under a temporary name and moved into place, so a reader
+ * sees a fragment whole or not at all. The cache is an optimization only:
+ * a fragment that cannot be read is a miss, and one that cannot be written
+ * is dropped.
+ */
+public final class FragmentCache {
+    private final Path directory;
+
+    public FragmentCache(Path directory) {
+        this.directory = directory;
+    }
+
+    private Path path(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    /**
+     * @return the fragment stored under {@code key}, or null if there is
+     *         none, or it is damaged.
+     */
+    public byte[] get(String key) {
+        byte[] stored;
+        try {
+            stored = Files.readAllBytes(path(key));
+        } catch (IOException e) {
+            return null;
+        }
+
+        if (stored.length < Long.BYTES)
+            return null;
+
+        byte[] fragment = Arrays.copyOf(stored, stored.length - Long.BYTES);
+        if (ByteBuffer.wrap(stored, fragment.length, Long.BYTES).getLong() != checksum(fragment))
+            return null;
+
+        return fragment;
+    }
+
+    /**
+     * Stores {@code fragment} under {@code key}, replacing what was there.
+     */
+    public void put(String key, byte[] fragment) {
+        Path target = path(key);
+        Path temporary = null;
+
+        try {
+            Files.createDirectories(target.getParent());
+            temporary = Files.createTempFile(target.getParent(), key, ".tmp");
+
+            byte[] stored = Arrays.copyOf(fragment, fragment.length + Long.BYTES);
+            ByteBuffer.wrap(stored, fragment.length, Long.BYTES).putLong(checksum(fragment));
+            Files.write(temporary, stored);
+
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temporary = null;
+        } catch (IOException e) {
+            // Not worth failing the compilation over.
+        } finally {
+            if (temporary != null)
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException e) {
+                    // Left for the next cleanup of the directory.
+                }
+        }
+    }
+
+    private static long checksum(byte[] fragment) {
+        var crc = new CRC32();
+        crc.update(fragment);
+        return crc.getValue();
+    }
+}
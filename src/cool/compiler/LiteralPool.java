@@ -0,0 +1,117 @@
+package cool.compiler;
+
+import cool.mips.Label;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Int and String constants of a program, interned as code generation
+ * meets them, from any number of threads at once.
+ *
+ * Code refers to a constant before it has a name: constants are numbered,
+ * as {@code int_const<n>} and {@code str_const<n>}, only when the code of
+ * each class is merged into the output, in class order, so the numbers are
+ * those a single thread generating the classes one after the other would
+ * have given them, however the work was spread.
+ */
+public final class LiteralPool {
+    public abstract static sealed class Constant implements Label {
+        private final String prefix;
+        // Set once, by the merging thread.
+        private int number = -1;
+
+        private Constant(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public boolean isNumbered() {
+            return number >= 0;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        @Override
+        public void appendTo(StringBuilder out) {
+            if (number < 0)
+                throw new IllegalStateException("Constant written before it was numbered");
+
+            out.append(prefix).append(number);
+        }
+
+        @Override
+        public String toString() {
+            return prefix + number;
+        }
+    }
+
+    public static final class IntConstant extends Constant {
+        private final int value;
+
+        private IntConstant(int value) {
+            super("int_const");
+            this.value = value;
+        }
+
+        public int getValue() {
+            return value;
+        }
+    }
+
+    public static final class StringConstant extends Constant {
+        private final String value;
+
+        private StringConstant(String value) {
+            super("str_const");
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    private final ConcurrentHashMap<Integer, IntConstant> ints = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, StringConstant> strings = new ConcurrentHashMap<>();
+    private int intCount = 0;
+    private int stringCount = 0;
+
+    public IntConstant intern(int value) {
+        var constant = ints.get(value);
+        return constant != null ? constant : ints.computeIfAbsent(value, IntConstant::new);
+    }
+
+    public StringConstant intern(String value) {
+        var constant = strings.get(value);
+        return constant != null ? constant : strings.computeIfAbsent(value, StringConstant::new);
+    }
+
+    /**
+     * Gives {@code constant} the next number of its kind. Only the merging
+     * thread numbers constants.
+     *
+     * @return false if it already had one.
+     */
+    public boolean number(Constant constant) {
+        if (constant.isNumbered())
+            return false;
+
+        constant.number = constant instanceof IntConstant ? intCount++ : stringCount++;
+        return true;
+    }
+
+    /**
+     * @return the number of Int constants numbered so far.
+     */
+    public int getIntCount() {
+        return intCount;
+    }
+
+    /**
+     * @return the number of String constants numbered so far.
+     */
+    public int getStringCount() {
+        return stringCount;
+    }
+}
@@ -0,0 +1,142 @@
+package cool.compiler;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Character stream over the raw bytes of an ASCII source file. Large files
+ * are memory-mapped, so their contents stay off the heap and are never
+ * decoded; token text is only built when asked for. Reading a mapped file
+ * that has since been truncated is a fatal error, so what is kept once a
+ * file is parsed must not read it (see {@link CachingTokenFactory}).
+ *
+ * Files holding non-ASCII bytes are handed to {@link CharStreams} instead,
+ * since there a character may span several bytes.
+ */
+public class MappedCharStream implements CharStream {
+    // Smaller files are cheaper to read than to map.
+    private static final long MAP_THRESHOLD = 16 * 1024;
+
+    private final ByteBuffer bytes;
+    private final int size;
+    private final String name;
+    private int position = 0;
+
+    public MappedCharStream(ByteBuffer bytes, String name) {
+        this.bytes = bytes;
+        this.size = bytes.limit();
+        this.name = name;
+    }
+
+    public static CharStream fromFile(Path path) throws IOException {
+        ByteBuffer bytes;
+
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE)
+                return CharStreams.fromPath(path);
+
+            if (length < MAP_THRESHOLD)
+                bytes = ByteBuffer.wrap(Files.readAllBytes(path));
+            else
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+
+        for (int i = 0; i < bytes.limit(); i++)
+            if (bytes.get(i) < 0)
+                return CharStreams.fromPath(path);
+
+        return new MappedCharStream(bytes, path.toString());
+    }
+
+    /**
+     * @return whether the file is memory-mapped, rather than read.
+     */
+    public boolean isMapped() {
+        return bytes instanceof MappedByteBuffer;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int start = Math.min(interval.a, size);
+        int length = Math.min(interval.b - interval.a + 1, size - start);
+        if (length <= 0)
+            return "";
+
+        byte[] text = new byte[length];
+        bytes.get(start, text);
+        return new String(text, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public void consume() {
+        if (position >= size)
+            throw new IllegalStateException("cannot consume EOF");
+
+        position++;
+    }
+
+    @Override
+    public int LA(int i) {
+        int offset;
+        if (i > 0)
+            offset = position + i - 1;
+        else if (i < 0)
+            offset = position + i;
+        else
+            return 0;
+
+        if (offset < 0 || offset >= size)
+            return IntStream.EOF;
+
+        return bytes.get(offset);
+    }
+
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return position;
+    }
+
+    @Override
+    public void seek(int index) {
+        position = Math.min(index, size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getSourceName() {
+        if (name == null || name.isEmpty())
+            return IntStream.UNKNOWN_SOURCE_NAME;
+
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return getText(Interval.of(0, size - 1));
+    }
+}
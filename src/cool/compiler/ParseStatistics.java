@@ -0,0 +1,43 @@
+package cool.compiler;
+
+import java.io.PrintStream;
+
+/**
+ * Counts how many files needed the full LL parse after SLL prediction
+ * failed, and how long each parsing stage took in total.
+ */
+public class ParseStatistics {
+    private int files;
+    private int fallbacks;
+    private long sllNanos;
+    private long llNanos;
+
+    public synchronized void add(SourceParser.ParsedSource parsed) {
+        files++;
+        if (parsed.fellBack())
+            fallbacks++;
+        sllNanos += parsed.sllNanos();
+        llNanos += parsed.llNanos();
+    }
+
+    public synchronized int getFiles() {
+        return files;
+    }
+
+    public synchronized int getFallbacks() {
+        return fallbacks;
+    }
+
+    public synchronized long getSllNanos() {
+        return sllNanos;
+    }
+
+    public synchronized long getLlNanos() {
+        return llNanos;
+    }
+
+    public synchronized void print(PrintStream out) {
+        out.printf("parse: %d files, %d needed LL fallback, SLL %.2f ms, LL %.2f ms%n",
+                files, fallbacks, sllNanos / 1e6, llNanos / 1e6);
+    }
+}
@@ -0,0 +1,231 @@
+package cool.compiler;
+
+import cool.ast.*;
+import cool.ast.classNode.ClassNode;
+import cool.ast.program.Program;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Runs the semantic passes over a program. A global pass sees the whole
+ * program at once, in class order. A per-class pass treats every class on
+ * its own, once the global passes before it are done, so runs of
+ * consecutive per-class passes are fused into a single traversal, in
+ * which each class goes through all of them, and classes are spread over
+ * a fork-join pool.
+ *
+ * Each pass reports its diagnostics as a stage of its own, and each class
+ * as a unit of it, so they are printed in the order the passes would have
+ * printed them running one after the other: pass by pass, and class by
+ * class within a pass. Should a pass throw, the diagnostics after it are
+ * dropped, and the exception rethrown as it was. Once the diagnostics'
+ * error limit is reached, the remaining passes are skipped.
+ */
+public class PassManager {
+    public enum Kind { GLOBAL, PER_CLASS }
+
+    /**
+     * @param dependencies the passes that must have run first. A per-class
+     *                     pass may depend on another per-class pass only
+     *                     for the class at hand; one that needs a pass's
+     *                     results for all classes must be global.
+     */
+    public record Pass(String name, Kind kind, List<String> dependencies,
+                       Function<CompilationSession, ASTVisitor<?>> factory) {
+    }
+
+    private record Failure(int pass, int classIndex, Throwable exception) {
+    }
+
+    // Stage 0 is parsing.
+    public static final int FIRST_STAGE = 1;
+
+    private final CompilationSession session;
+    private final ForkJoinPool pool;
+    private final List<Pass> passes = new ArrayList<>();
+    private final Map<String, Long> timings = new LinkedHashMap<>();
+
+    public PassManager(CompilationSession session, ForkJoinPool pool) {
+        this.session = session;
+        this.pool = pool;
+    }
+
+    /**
+     * @return the compiler's semantic passes, running on the common pool.
+     */
+    public static PassManager semanticPasses(CompilationSession session) {
+        return new PassManager(session, ForkJoinPool.commonPool())
+                .add(new Pass("ASTDefinitionVisitor", Kind.GLOBAL, List.of(),
+                        ASTDefinitionVisitor::new))
+                // Parents are linked as classes are visited, and lookups
+                // made meanwhile see only the links made so far.
+                .add(new Pass("ASTFirstResolutionVisitor", Kind.GLOBAL, List.of("ASTDefinitionVisitor"),
+                        ASTFirstResolutionVisitor::new))
+                .add(new Pass("ASTSecondResolutionVisitor", Kind.PER_CLASS, List.of("ASTFirstResolutionVisitor"),
+                        ASTSecondResolutionVisitor::new))
+                .add(new Pass("ASTTypeResolutionVisitor", Kind.PER_CLASS, List.of("ASTSecondResolutionVisitor"),
+                        ASTTypeResolutionVisitor::new));
+    }
+
+    /**
+     * Adds a pass to run after those added so far.
+     *
+     * @throws IllegalArgumentException if it depends on a pass not added
+     *                                  before it.
+     */
+    public PassManager add(Pass pass) {
+        for (var dependency : pass.dependencies())
+            if (passes.stream().noneMatch(earlier -> earlier.name().equals(dependency)))
+                throw new IllegalArgumentException("Pass " + pass.name() + " depends on " + dependency
+                        + ", which does not run before it");
+
+        passes.add(pass);
+        timings.put(pass.name(), 0L);
+        return this;
+    }
+
+    public void run(Program program) {
+        for (int first = 0; first < passes.size(); ) {
+            if (session.getDiagnostics().isLimitReached())
+                return;
+
+            if (passes.get(first).kind() == Kind.GLOBAL) {
+                runGlobal(first, program);
+                first++;
+                continue;
+            }
+
+            int last = first;
+            while (last < passes.size() && passes.get(last).kind() == Kind.PER_CLASS)
+                last++;
+
+            runPerClass(first, last, program.getClasses());
+            first = last;
+        }
+    }
+
+    private void runGlobal(int index, Program program) {
+        var pass = passes.get(index);
+        long start = System.nanoTime();
+
+        var phase = session.getProfiler().phase(pass.name());
+        try {
+            session.getDiagnostics().within(FIRST_STAGE + index, 0,
+                    () -> program.accept(pass.factory().apply(session)));
+        } finally {
+            phase.end();
+            addTiming(pass.name(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Runs the per-class passes from {@code first} up to {@code last}, not
+     * included, taking each class through all of them in turn, but for the
+     * classes the session's {@link AnalysisCache} keeps, which only report
+     * again what they found before.
+     */
+    private void runPerClass(int first, int last, List<ClassNode> classes) {
+        Diagnostics diagnostics = session.getDiagnostics();
+        CompileProfiler profiler = session.getProfiler();
+        AnalysisCache analysis = session.getAnalysisCache();
+
+        var fused = passes.subList(first, last);
+        var visitors = fused.stream().map(pass -> pass.factory().apply(session)).toList();
+        var nanos = new AtomicLongArray(fused.size());
+        var failures = new Failure[classes.size()];
+
+        IntStream indices = IntStream.range(0, classes.size());
+        Runnable traversal = () -> (classes.size() > 1 ? indices.parallel() : indices).forEach(classIndex -> {
+            var classNode = classes.get(classIndex);
+
+            for (int pass = 0; pass < fused.size(); pass++) {
+                var visitor = visitors.get(pass);
+                long start = System.nanoTime();
+
+                var phase = profiler.phase(fused.get(pass).name(), classNode.getClassName().getName());
+                try {
+                    diagnostics.within(FIRST_STAGE + first + pass, classIndex, analysis == null
+                            ? () -> classNode.accept(visitor)
+                            : () -> analysis.check(classIndex, () -> classNode.accept(visitor), () -> { }));
+                } catch (RuntimeException | Error e) {
+                    failures[classIndex] = new Failure(first + pass, classIndex, e);
+                    return;
+                } finally {
+                    phase.end();
+                    nanos.addAndGet(pass, System.nanoTime() - start);
+                }
+            }
+        });
+
+        try {
+            pool.submit(traversal).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Semantic analysis interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+
+        for (int pass = 0; pass < fused.size(); pass++)
+            addTiming(fused.get(pass).name(), nanos.get(pass));
+
+        // The failure that would have happened first, running the passes
+        // one after the other.
+        Failure failure = null;
+        for (var candidate : failures)
+            if (candidate != null && (failure == null || candidate.pass() < failure.pass()))
+                failure = candidate;
+
+        if (failure != null) {
+            diagnostics.discardAfter(FIRST_STAGE + failure.pass(), failure.classIndex());
+            rethrow(failure.exception());
+        }
+    }
+
+    private static void rethrow(Throwable exception) {
+        if (exception instanceof RuntimeException runtime)
+            throw runtime;
+        if (exception instanceof Error error)
+            throw error;
+        throw new IllegalStateException(exception);
+    }
+
+    private synchronized void addTiming(String pass, long nanos) {
+        timings.merge(pass, nanos, Long::sum);
+    }
+
+    /**
+     * @return the nanoseconds spent in each pass so far, in the order the
+     *         passes run. A per-class pass's time adds up over the threads
+     *         it ran on.
+     */
+    public synchronized Map<String, Long> getTimings() {
+        return new LinkedHashMap<>(timings);
+    }
+
+    /**
+     * @return the names of the passes, grouped as they are traversed: one
+     *         group per global pass, one per run of fused per-class passes.
+     */
+    public List<List<String>> getTraversals() {
+        var traversals = new ArrayList<List<String>>();
+        Kind previous = Kind.GLOBAL;
+
+        for (var pass : passes) {
+            if (pass.kind() == Kind.GLOBAL || previous == Kind.GLOBAL)
+                traversals.add(new ArrayList<>());
+            traversals.get(traversals.size() - 1).add(pass.name());
+            previous = pass.kind();
+        }
+
+        return traversals;
+    }
+}
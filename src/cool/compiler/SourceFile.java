@@ -0,0 +1,24 @@
+package cool.compiler;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A compiler input. Its contents are either given directly or, when
+ * {@code contents} is null, read from the file called {@code name}.
+ */
+public record SourceFile(String name, String contents) {
+    public static SourceFile onDisk(String fileName) {
+        return new SourceFile(fileName, null);
+    }
+
+    public CharStream open() throws IOException {
+        if (contents == null)
+            return MappedCharStream.fromFile(Path.of(name));
+
+        return CharStreams.fromString(contents, name);
+    }
+}
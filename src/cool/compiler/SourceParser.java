@@ -0,0 +1,182 @@
+package cool.compiler;
+
+import cool.ast.classNode.ClassNode;
+import cool.lexer.CoolLexer;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Lexes and parses source files. Each file gets its own lexer and parser,
+ * so files can be parsed on separate threads. Error messages are kept with
+ * the parsed file instead of being printed, and are printed by the caller
+ * in command line order.
+ *
+ * By default a file is first parsed with SLL prediction, which is much
+ * cheaper on the left-recursive expression rule, giving up at the first
+ * error. Only if that fails is the file parsed again with full LL
+ * prediction and the usual error recovery, so error messages are the same
+ * as with LL alone.
+ */
+public class SourceParser {
+    /**
+     * The result of parsing a single file.
+     */
+    public record ParsedSource(SourceFile source, List<ClassNode> classes, List<Diagnostic> errors,
+                               boolean fellBack, long sllNanos, long llNanos) {
+        public boolean hasErrors() {
+            return !errors.isEmpty();
+        }
+    }
+
+    public static ParsedSource parse(SourceFile source, int fileId) throws IOException {
+        return parse(source, fileId, true, CompileProfiler.DISABLED);
+    }
+
+    /**
+     * @param fileId the id recorded in the file's AST nodes.
+     * @param twoStage whether to try SLL prediction first; if false, the
+     *                 file is parsed with full LL prediction right away.
+     */
+    public static ParsedSource parse(SourceFile source, int fileId, boolean twoStage,
+                                     CompileProfiler profiler) throws IOException {
+        var phase = profiler.phase("lex/parse", source.name());
+        try {
+            return parseFile(source, fileId, twoStage, profiler);
+        } finally {
+            phase.end();
+        }
+    }
+
+    private static ParsedSource parseFile(SourceFile source, int fileId, boolean twoStage,
+                                          CompileProfiler profiler) throws IOException {
+        var input = source.open();
+        var lexer = new CoolLexer(input);
+        lexer.setTokenFactory(CachingTokenFactory.DEFAULT);
+        var tokenStream = new CommonTokenStream(lexer);
+        var parsed = parseTokens(source, tokenStream, fileId, twoStage, profiler);
+
+        // The AST outlives the mapping's guarantee that the file is there.
+        if (input instanceof MappedCharStream mapped && mapped.isMapped())
+            CachingTokenFactory.detach(tokenStream.getTokens());
+
+        return parsed;
+    }
+
+    private static ParsedSource parseTokens(SourceFile source, CommonTokenStream tokenStream, int fileId,
+                                            boolean twoStage, CompileProfiler profiler) {
+        var parser = new ASTBuildingParser(tokenStream, fileId, profiler);
+        var errors = new ArrayList<Diagnostic>();
+
+        var errorListener = new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer,
+                                    Object offendingSymbol,
+                                    int line, int charPositionInLine,
+                                    String msg,
+                                    RecognitionException e) {
+                Token token = (Token)offendingSymbol;
+                if (token.getType() == CoolLexer.ERROR)
+                    errors.add(new Diagnostic(fileId, line, charPositionInLine + 1,
+                            Diagnostic.Kind.LEXICAL, token.getText()));
+                else
+                    errors.add(new Diagnostic(fileId, line, charPositionInLine + 1,
+                            Diagnostic.Kind.SYNTAX, msg));
+            }
+        };
+
+        parser.removeErrorListeners();
+
+        long start = System.nanoTime();
+        if (twoStage) {
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.setErrorHandler(new BailErrorStrategy());
+
+            try {
+                parser.program();
+                return new ParsedSource(source, parser.getClasses(), errors, false, System.nanoTime() - start, 0);
+            } catch (ParseCancellationException e) {
+                // Either a real error or SLL being too weak; LL will tell.
+                parser.reset();
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                parser.setErrorHandler(new DefaultErrorStrategy());
+            }
+        }
+
+        long sllNanos = System.nanoTime() - start;
+        parser.addErrorListener(errorListener);
+
+        start = System.nanoTime();
+        parser.program();
+        return new ParsedSource(source, parser.getClasses(), errors, twoStage, sllNanos, System.nanoTime() - start);
+    }
+
+    /**
+     * Parses all files on the common pool. The results are in the same
+     * order as {@code sources}, and each file's id is its index there.
+     */
+    public static List<ParsedSource> parseAll(List<SourceFile> sources, CompileProfiler profiler) throws IOException {
+        return parseAll(sources, ForkJoinPool.commonPool(), true, profiler);
+    }
+
+    public static List<ParsedSource> parseAll(List<SourceFile> sources, ForkJoinPool pool) throws IOException {
+        return parseAll(sources, pool, true, CompileProfiler.DISABLED);
+    }
+
+    public static List<ParsedSource> parseAll(List<SourceFile> sources, ForkJoinPool pool,
+                                              boolean twoStage, CompileProfiler profiler) throws IOException {
+        return parseAll(sources, IntStream.range(0, sources.size()).toArray(), pool, twoStage, profiler);
+    }
+
+    /**
+     * Parses only the files of the given ids, on the common pool. The
+     * results are in the order of {@code fileIds}.
+     */
+    public static List<ParsedSource> parseAll(List<SourceFile> sources, int[] fileIds,
+                                              CompileProfiler profiler) throws IOException {
+        return parseAll(sources, fileIds, ForkJoinPool.commonPool(), true, profiler);
+    }
+
+    private static List<ParsedSource> parseAll(List<SourceFile> sources, int[] fileIds, ForkJoinPool pool,
+                                               boolean twoStage, CompileProfiler profiler) throws IOException {
+        // Not worth a task switch.
+        if (fileIds.length == 1)
+            return List.of(parse(sources.get(fileIds[0]), fileIds[0], twoStage, profiler));
+
+        try {
+            return pool.submit(() -> Arrays.stream(fileIds).parallel()
+                    .mapToObj(fileId -> parseUnchecked(sources.get(fileId), fileId, twoStage, profiler))
+                    .toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Parsing interrupted", e);
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof UncheckedIOException io)
+                throw io.getCause();
+            if (cause instanceof RuntimeException runtime)
+                throw runtime;
+            if (cause instanceof Error error)
+                throw error;
+            throw new IOException(cause);
+        }
+    }
+
+    private static ParsedSource parseUnchecked(SourceFile source, int fileId, boolean twoStage,
+                                               CompileProfiler profiler) {
+        try {
+            return parse(source, fileId, twoStage, profiler);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package cool.mips;
+
+/**
+ * The comments the generated code carries, each with the spacing that
+ * separates it from its instruction.
+ */
+public enum Comment {
+    DISPATCH_TABLE("   # dispatch table"),
+    METHOD_OFFSET("   # method offset"),
+    LOCALS_ALLOC(" # locals alloc"),
+    LOCALS_FREE("  # locals free"),
+    CASE_LOCALS_ALLOC("   # locals alloc"),
+    BOOL_SLOT("     # bool slot"),
+    INT_SLOT("     # int slot"),
+    CLASS_TAG("          # class tag"),
+    TIMES_8("           # *8"),
+    CLASS_OBJ_ENTRY("         # class_objTab + 8 * tag"),
+    PROT_OBJ("          # _protObj"),
+    INIT("          # _init");
+
+    private final String text;
+
+    Comment(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @return the comment, as written after its instruction.
+     */
+    public String getText() {
+        return text;
+    }
+}
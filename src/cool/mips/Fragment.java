@@ -0,0 +1,88 @@
+package cool.mips;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Code already written as assembly text, but for its {@link Label}s, which
+ * are left as holes, to be filled in with their names when the fragment is
+ * written out. A fragment can thus be made, and kept, before its labels are
+ * numbered, then written by copying the text around the holes.
+ */
+public final class Fragment {
+    private final SymbolPool symbols;
+    private final String text;
+    // Pairs of the offset of a hole in the text, in increasing order, and
+    // the index in the pool of the label that goes in it.
+    private final int[] holes;
+
+    Fragment(SymbolPool symbols, String text, int[] holes) {
+        this.symbols = symbols;
+        this.text = text;
+        this.holes = holes;
+    }
+
+    public SymbolPool getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Writes the text, with the labels as they are named at the time.
+     */
+    public void appendTo(StringBuilder out) {
+        int from = 0;
+        for (int i = 0; i < holes.length; i += 2) {
+            out.append(text, from, holes[i]);
+            symbols.appendTo(out, holes[i + 1]);
+            from = holes[i];
+        }
+        out.append(text, from, text.length());
+    }
+
+    /**
+     * Writes the text and holes, but not the pool, as {@link #readFrom}
+     * reads them.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        SymbolPool.writeString(out, text);
+
+        out.writeInt(holes.length / 2);
+        for (int hole : holes)
+            out.writeInt(hole);
+    }
+
+    /**
+     * Reads a fragment written by {@link #writeTo}, whose labels are those
+     * of the given pool.
+     */
+    public static Fragment readFrom(ByteBuffer in, SymbolPool symbols) throws IOException {
+        try {
+            String text = SymbolPool.readString(in);
+
+            int holeCount = in.getInt();
+            if (holeCount < 0 || holeCount > in.remaining() / (2 * Integer.BYTES))
+                throw new IOException("Malformed fragment");
+
+            var holes = new int[holeCount * 2];
+            in.asIntBuffer().get(holes);
+            in.position(in.position() + holes.length * Integer.BYTES);
+
+            for (int i = 0, from = 0; i < holes.length; from = holes[i], i += 2)
+                if (holes[i] < from || holes[i] > text.length() || !symbols.isLabel(holes[i + 1]))
+                    throw new IOException("Malformed fragment");
+
+            return new Fragment(symbols, text, holes);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated fragment", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        var out = new StringBuilder();
+        appendTo(out);
+        return out.toString();
+    }
+}
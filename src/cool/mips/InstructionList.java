@@ -0,0 +1,306 @@
+package cool.mips;
+
+import java.util.Arrays;
+
+/**
+ * A sequence of MIPS instructions, labels and data directives, one entry
+ * per line of assembly, packed {@link #STRIDE} ints to an entry: a header,
+ * holding the opcode, style and comment, then the operands, as register
+ * ordinals, integers or indices into the list's {@link SymbolPool}.
+ *
+ * Code is built bottom up, each expression's list appended to the one of
+ * the expression around it, so appending copies the entries as they are,
+ * and lists to be appended to one another must share a pool. Text is made
+ * only once, in the format spim reads, by {@link #appendTo}, or by
+ * {@link #toFragment}, for text whose labels are not named yet.
+ */
+public final class InstructionList {
+    /**
+     * How an entry is written: indented, with the mnemonic padded to a
+     * column, as most of the code is; after a tab, or not indented at all,
+     * with single spaces between mnemonic and operands.
+     */
+    public enum Style { STANDARD, TABBED, BARE }
+
+    private static final int STRIDE = 4;
+
+    private static final int OPCODE_BITS = 8;
+    private static final int STYLE_BITS = 2;
+    private static final int COMMENT_SHIFT = OPCODE_BITS + STYLE_BITS;
+
+    private static final Opcode[] OPCODES = Opcode.values();
+    private static final Style[] STYLES = Style.values();
+    private static final Comment[] COMMENTS = Comment.values();
+    private static final Register[] REGISTERS = Register.values();
+
+    private static final int MNEMONIC_COLUMNS = 8;
+
+    // What comes before the operands, by opcode and style.
+    private static final String[][] PREFIXES = new String[OPCODES.length][STYLES.length];
+
+    static {
+        for (var opcode : OPCODES) {
+            if (opcode.getMnemonic() == null)
+                continue;
+
+            String mnemonic = opcode.getMnemonic();
+            String padded = opcode.isDirective() ? mnemonic + " "
+                    : mnemonic + " ".repeat(Math.max(1, MNEMONIC_COLUMNS - mnemonic.length()));
+
+            PREFIXES[opcode.ordinal()][Style.STANDARD.ordinal()] = "    " + padded;
+            PREFIXES[opcode.ordinal()][Style.TABBED.ordinal()] = "\t" + mnemonic + " ";
+            PREFIXES[opcode.ordinal()][Style.BARE.ordinal()] = mnemonic + " ";
+        }
+    }
+
+    private final SymbolPool symbols;
+    private int[] entries = new int[8 * STRIDE];
+    private int size = 0;
+
+    public InstructionList(SymbolPool symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Starts a list with a pool of its own.
+     */
+    public InstructionList() {
+        this(new SymbolPool());
+    }
+
+    public SymbolPool getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * @return the number of entries, i.e. of lines.
+     */
+    public int size() {
+        return size;
+    }
+
+    private InstructionList add(Opcode opcode, Opcode.Format format, int a, int b, int c) {
+        if (opcode.getFormat() != format)
+            throw new IllegalArgumentException(opcode + " takes operands " + opcode.getFormat() + ", not " + format);
+
+        if ((size + 1) * STRIDE > entries.length)
+            entries = Arrays.copyOf(entries, entries.length * 2);
+
+        int at = size * STRIDE;
+        entries[at] = opcode.ordinal();
+        entries[at + 1] = a;
+        entries[at + 2] = b;
+        entries[at + 3] = c;
+        size++;
+
+        return this;
+    }
+
+    public InstructionList emit(Opcode opcode, Register rd, Register rs, Register rt) {
+        return add(opcode, Opcode.Format.RRR, rd.ordinal(), rs.ordinal(), rt.ordinal());
+    }
+
+    public InstructionList emit(Opcode opcode, Register rd, Register rs, int immediate) {
+        return add(opcode, Opcode.Format.RRI, rd.ordinal(), rs.ordinal(), immediate);
+    }
+
+    public InstructionList emit(Opcode opcode, Register rd, Register rs) {
+        return add(opcode, Opcode.Format.RR, rd.ordinal(), rs.ordinal(), 0);
+    }
+
+    public InstructionList emit(Opcode opcode, Register rd, int immediate) {
+        return add(opcode, Opcode.Format.RI, rd.ordinal(), immediate, 0);
+    }
+
+    /**
+     * Adds a load or store of {@code rt} at {@code offset} from
+     * {@code base}.
+     */
+    public InstructionList emit(Opcode opcode, Register rt, int offset, Register base) {
+        return add(opcode, Opcode.Format.MEM, rt.ordinal(), offset, base.ordinal());
+    }
+
+    public InstructionList emit(Opcode opcode, Register rs, String symbol) {
+        return add(opcode, Opcode.Format.RS, rs.ordinal(), symbols.add(symbol), 0);
+    }
+
+    public InstructionList emit(Opcode opcode, Register rs, Label label) {
+        return add(opcode, Opcode.Format.RS, rs.ordinal(), symbols.add(label), 0);
+    }
+
+    public InstructionList emit(Opcode opcode, Register rs, Register rt, String symbol) {
+        return add(opcode, Opcode.Format.RRS, rs.ordinal(), rt.ordinal(), symbols.add(symbol));
+    }
+
+    public InstructionList emit(Opcode opcode, Register rs, Register rt, Label label) {
+        return add(opcode, Opcode.Format.RRS, rs.ordinal(), rt.ordinal(), symbols.add(label));
+    }
+
+    public InstructionList emit(Opcode opcode, String symbol) {
+        return add(opcode, Opcode.Format.S, symbols.add(symbol), 0, 0);
+    }
+
+    public InstructionList emit(Opcode opcode, Label label) {
+        return add(opcode, Opcode.Format.S, symbols.add(label), 0, 0);
+    }
+
+    public InstructionList emit(Opcode opcode, Register rs) {
+        return add(opcode, Opcode.Format.R, rs.ordinal(), 0, 0);
+    }
+
+    public InstructionList emit(Opcode opcode, int immediate) {
+        return add(opcode, Opcode.Format.I, immediate, 0, 0);
+    }
+
+    public InstructionList label(String name) {
+        return emit(Opcode.LABEL, name);
+    }
+
+    public InstructionList label(Label label) {
+        return emit(Opcode.LABEL, label);
+    }
+
+    public InstructionList blank() {
+        return add(Opcode.BLANK, Opcode.Format.NONE, 0, 0, 0);
+    }
+
+    private int lastHeader() {
+        if (size == 0)
+            throw new IllegalStateException("No entry to modify");
+
+        return (size - 1) * STRIDE;
+    }
+
+    /**
+     * Writes the last entry in the given style.
+     */
+    public InstructionList style(Style style) {
+        int at = lastHeader();
+        entries[at] = entries[at] & ~(((1 << STYLE_BITS) - 1) << OPCODE_BITS) | style.ordinal() << OPCODE_BITS;
+        return this;
+    }
+
+    /**
+     * Ends the last entry with a comment.
+     */
+    public InstructionList comment(Comment comment) {
+        int at = lastHeader();
+        entries[at] = entries[at] & ((1 << COMMENT_SHIFT) - 1) | (comment.ordinal() + 1) << COMMENT_SHIFT;
+        return this;
+    }
+
+    /**
+     * Appends the entries of {@code other}, which must share this list's
+     * pool.
+     */
+    public InstructionList append(InstructionList other) {
+        if (other.symbols != symbols)
+            throw new IllegalArgumentException("Lists with different symbol pools");
+
+        if ((size + other.size) * STRIDE > entries.length)
+            entries = Arrays.copyOf(entries, Math.max(entries.length * 2, (size + other.size) * STRIDE));
+
+        System.arraycopy(other.entries, 0, entries, size * STRIDE, other.size * STRIDE);
+        size += other.size;
+
+        return this;
+    }
+
+    /**
+     * Writes the entries to {@code out} as assembly text, separated by
+     * {@code newline}, with none after the last.
+     */
+    public void appendTo(StringBuilder out, String newline) {
+        appendTo(out, newline, null);
+    }
+
+    /**
+     * Writes the entries as {@link #appendTo} does, but for the labels,
+     * whose places are left as holes of the fragment.
+     */
+    public Fragment toFragment(String newline) {
+        var out = new StringBuilder();
+        var holes = new Holes();
+        appendTo(out, newline, holes);
+
+        return new Fragment(symbols, out.toString(), Arrays.copyOf(holes.holes, holes.size));
+    }
+
+    /**
+     * Where the labels go in text written as a fragment, as
+     * {@link Fragment} keeps them.
+     */
+    private static final class Holes {
+        int[] holes = new int[16];
+        int size = 0;
+
+        void add(int offset, int index) {
+            if (size + 2 > holes.length)
+                holes = Arrays.copyOf(holes, holes.length * 2);
+
+            holes[size++] = offset;
+            holes[size++] = index;
+        }
+    }
+
+    /**
+     * Writes the symbol at {@code index}, or, if {@code holes} is given
+     * and the symbol is a label, leaves a hole for it.
+     */
+    private StringBuilder appendSymbol(StringBuilder out, int index, Holes holes) {
+        if (holes != null && symbols.isLabel(index))
+            holes.add(out.length(), index);
+        else
+            symbols.appendTo(out, index);
+
+        return out;
+    }
+
+    private void appendTo(StringBuilder out, String newline, Holes holes) {
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
+                out.append(newline);
+
+            int at = i * STRIDE;
+            int header = entries[at];
+            Opcode opcode = OPCODES[header & ((1 << OPCODE_BITS) - 1)];
+            int a = entries[at + 1];
+            int b = entries[at + 2];
+            int c = entries[at + 3];
+
+            if (opcode == Opcode.LABEL) {
+                appendSymbol(out, a, holes).append(':');
+            } else if (opcode != Opcode.BLANK) {
+                out.append(PREFIXES[opcode.ordinal()][(header >>> OPCODE_BITS) & ((1 << STYLE_BITS) - 1)]);
+                appendOperands(out, opcode.getFormat(), a, b, c, holes);
+            }
+
+            int comment = header >>> COMMENT_SHIFT;
+            if (comment != 0)
+                out.append(COMMENTS[comment - 1].getText());
+        }
+    }
+
+    private void appendOperands(StringBuilder out, Opcode.Format format, int a, int b, int c, Holes holes) {
+        switch (format) {
+            case RRR -> out.append(REGISTERS[a]).append(' ').append(REGISTERS[b]).append(' ').append(REGISTERS[c]);
+            case RRI -> out.append(REGISTERS[a]).append(' ').append(REGISTERS[b]).append(' ').append(c);
+            case RR -> out.append(REGISTERS[a]).append(' ').append(REGISTERS[b]);
+            case RI -> out.append(REGISTERS[a]).append(' ').append(b);
+            case MEM -> out.append(REGISTERS[a]).append(' ').append(b).append('(').append(REGISTERS[c]).append(')');
+            case RS -> appendSymbol(out.append(REGISTERS[a]).append(' '), b, holes);
+            case RRS -> appendSymbol(out.append(REGISTERS[a]).append(' ').append(REGISTERS[b]).append(' '), c, holes);
+            case S -> appendSymbol(out, a, holes);
+            case R -> out.append(REGISTERS[a]);
+            case I -> out.append(a);
+            case NONE -> { }
+        }
+    }
+
+    @Override
+    public String toString() {
+        var out = new StringBuilder();
+        appendTo(out, System.lineSeparator());
+        return out.toString();
+    }
+}
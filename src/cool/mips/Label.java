@@ -0,0 +1,12 @@
+package cool.mips;
+
+/**
+ * A symbol whose name is settled only after the code referring to it is
+ * built, e.g. once the code of several classes is put together.
+ */
+public interface Label {
+    /**
+     * Writes the name, as it stands when the code is written out.
+     */
+    void appendTo(StringBuilder out);
+}
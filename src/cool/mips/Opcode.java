@@ -0,0 +1,66 @@
+package cool.mips;
+
+/**
+ * The instructions, directives and pseudo-entries an
+ * {@link InstructionList} holds, each with the operands it takes.
+ */
+public enum Opcode {
+    ADD("add", Format.RRR),
+    ADDU("addu", Format.RRR),
+    SUB("sub", Format.RRR),
+    MUL("mul", Format.RRR),
+    DIV("div", Format.RRR),
+    ADDIU("addiu", Format.RRI),
+    SLL("sll", Format.RRI),
+    MOVE("move", Format.RR),
+    NEG("neg", Format.RR),
+    LI("li", Format.RI),
+    LW("lw", Format.MEM),
+    SW("sw", Format.MEM),
+    LA("la", Format.RS),
+    BNEZ("bnez", Format.RS),
+    BEQZ("beqz", Format.RS),
+    BEQ("beq", Format.RRS),
+    BLT("blt", Format.RRS),
+    BLE("ble", Format.RRS),
+    B("b", Format.S),
+    JAL("jal", Format.S),
+    JR("jr", Format.R),
+    JALR("jalr", Format.R),
+
+    WORD(".word", Format.I),
+    WORD_SYMBOL(".word", Format.S),
+    ASCIIZ(".asciiz", Format.S),
+    ALIGN(".align", Format.I),
+
+    // Defines its symbol operand as a label.
+    LABEL(null, Format.S),
+    // An empty line.
+    BLANK(null, Format.NONE);
+
+    /**
+     * The operands of an entry, in order: R a register, I an integer, S a
+     * symbol, MEM an offset from a base register.
+     */
+    public enum Format { RRR, RRI, RR, RI, MEM, RS, RRS, S, R, I, NONE }
+
+    private final String mnemonic;
+    private final Format format;
+
+    Opcode(String mnemonic, Format format) {
+        this.mnemonic = mnemonic;
+        this.format = format;
+    }
+
+    public String getMnemonic() {
+        return mnemonic;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public boolean isDirective() {
+        return mnemonic != null && mnemonic.charAt(0) == '.';
+    }
+}
@@ -0,0 +1,15 @@
+package cool.mips;
+
+/**
+ * The registers the generated code uses.
+ */
+public enum Register {
+    ZERO, A0, A1, T1, T2, SP, FP, S0, RA;
+
+    private final String text = "$" + name().toLowerCase();
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,204 @@
+package cool.mips;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The symbols, i.e. labels and string operands, of a group of
+ * instruction lists, which refer to them by index, so lists sharing a
+ * pool can be appended to one another by copying their entries as they
+ * are.
+ *
+ * A pool is also a namespace for the labels made by {@link #newLabel},
+ * numbered from 0 as they are made, then shifted by a base set before the
+ * code is written, so that the code of several pools can be built apart
+ * and still number its labels as if it had been built in one go.
+ */
+public final class SymbolPool {
+    /**
+     * Writes the labels a pool holds that it did not make itself.
+     */
+    public interface LabelWriter {
+        void write(Label label, DataOutput out) throws IOException;
+    }
+
+    /**
+     * Reads back what a {@link LabelWriter} wrote.
+     */
+    public interface LabelReader {
+        Label read(ByteBuffer in) throws IOException;
+    }
+
+    private static final byte STRING = 0;
+    private static final byte REPEATED_STRING = 1;
+    private static final byte NUMBERED = 2;
+    private static final byte OTHER = 3;
+
+    private record Numbered(SymbolPool pool, String prefix, int number) implements Label {
+        @Override
+        public void appendTo(StringBuilder out) {
+            out.append(prefix).append(pool.labelBase + number);
+        }
+    }
+
+    // Each a String or a Label.
+    private Object[] symbols = new Object[64];
+    private int size = 0;
+    private int labelCount = 0;
+    private int labelBase = 0;
+
+    private int addSymbol(Object symbol) {
+        if (size == symbols.length)
+            symbols = Arrays.copyOf(symbols, size * 2);
+
+        symbols[size] = symbol;
+        return size++;
+    }
+
+    /**
+     * @return the index of {@code symbol}, added anew every time.
+     */
+    public int add(String symbol) {
+        return addSymbol(symbol);
+    }
+
+    public int add(Label label) {
+        return addSymbol(label);
+    }
+
+    /**
+     * @return a label named {@code prefix} followed by the next number of
+     *         this pool.
+     */
+    public Label newLabel(String prefix) {
+        return new Numbered(this, prefix, labelCount++);
+    }
+
+    /**
+     * @return the number of labels made so far.
+     */
+    public int getLabelCount() {
+        return labelCount;
+    }
+
+    /**
+     * Numbers the labels made by this pool from {@code labelBase} on.
+     */
+    public void setLabelBase(int labelBase) {
+        this.labelBase = labelBase;
+    }
+
+    /**
+     * Writes the name of the symbol at {@code index}.
+     */
+    public void appendTo(StringBuilder out, int index) {
+        if (symbols[index] instanceof String symbol)
+            out.append(symbol);
+        else
+            ((Label) symbols[index]).appendTo(out);
+    }
+
+    /**
+     * @return whether the symbol at {@code index} is a {@link Label}
+     *         rather than a string.
+     */
+    public boolean isLabel(int index) {
+        return index >= 0 && index < size && symbols[index] instanceof Label;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Writes {@code value} as {@link #readString} reads it.
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining())
+            throw new IOException("Malformed string");
+
+        var value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * Writes the symbols, and the number of labels made, as
+     * {@link #readFrom} reads them. A string the pool holds more than once
+     * is written once, then referred to by index. Labels of this pool are
+     * written unnumbered, so that they are numbered anew when read.
+     */
+    public void writeTo(DataOutput out, LabelWriter labels) throws IOException {
+        out.writeInt(labelCount);
+        out.writeInt(size);
+
+        var written = new HashMap<String, Integer>();
+        for (int i = 0; i < size; i++) {
+            if (symbols[i] instanceof String symbol) {
+                Integer first = written.putIfAbsent(symbol, i);
+                if (first == null) {
+                    out.writeByte(STRING);
+                    writeString(out, symbol);
+                } else {
+                    out.writeByte(REPEATED_STRING);
+                    out.writeInt(first);
+                }
+            } else if (symbols[i] instanceof Numbered label && label.pool() == this) {
+                out.writeByte(NUMBERED);
+                writeString(out, label.prefix());
+                out.writeInt(label.number());
+            } else {
+                out.writeByte(OTHER);
+                labels.write((Label) symbols[i], out);
+            }
+        }
+    }
+
+    /**
+     * Reads a pool written by {@link #writeTo}, from a buffer rather than
+     * a stream, since pools are read far more often than written, and a
+     * byte at a time.
+     */
+    public static SymbolPool readFrom(ByteBuffer in, LabelReader labels) throws IOException {
+        try {
+            var pool = new SymbolPool();
+            pool.labelCount = in.getInt();
+
+            int size = in.getInt();
+            if (size < 0 || size > in.remaining())
+                throw new IOException("Malformed symbol pool");
+            pool.symbols = new Object[Math.max(size, 1)];
+
+            for (int i = 0; i < size; i++) {
+                switch (in.get()) {
+                    case STRING -> pool.addSymbol(readString(in));
+                    case REPEATED_STRING -> {
+                        int first = in.getInt();
+                        if (first < 0 || first >= i || !(pool.symbols[first] instanceof String))
+                            throw new IOException("Malformed symbol pool");
+                        pool.addSymbol(pool.symbols[first]);
+                    }
+                    case NUMBERED -> pool.addSymbol(new Numbered(pool, readString(in), in.getInt()));
+                    case OTHER -> pool.addSymbol(labels.read(in));
+                    default -> throw new IOException("Malformed symbol pool");
+                }
+            }
+
+            return pool;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated symbol pool", e);
+        }
+    }
+}
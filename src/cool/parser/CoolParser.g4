@@ -33,19 +33,19 @@ expr
     | LET localVars+=local (COMMA localVars+=local)* IN inExpr=expr                                                      #letExpr
     | CASE caseExpr=expr OF (branches+=branch)+ ESAC                                                                     #caseExpr
     | NEW typeId=TYPEID                                                                                                  #newExpr
-    | TILDA expr                                                                                                         #unaryExpr
-    | ISVOID expr                                                                                                        #unaryExpr
+    | TILDA operand=expr                                                                                                 #unaryExpr
+    | ISVOID operand=expr                                                                                                #unaryExpr
     | left=expr (op=MULT | op=DIV) right=expr                                                                            #arithmeticExpr
     | left=expr (op=PLUS | op=MINUS) right=expr                                                                          #arithmeticExpr
     | left=expr (op=LT | op=LTE | op=EQUAL) right=expr                                                                   #logicalExpr
-    | NOT expr                                                                                                           #unaryExpr
-    | LPAREN expr RPAREN                                                                                                 #parenExpr
+    | NOT operand=expr                                                                                                   #unaryExpr
+    | LPAREN insideExpr=expr RPAREN                                                                                      #parenExpr
     | OBJECTID                                                                                                           #objectExpr
     | INTEGER                                                                                                            #integerExpr
     | STRING                                                                                                             #stringLiteralExpr
     | val=TRUE                                                                                                           #boolExpr
     | val=FALSE                                                                                                          #boolExpr
-    | objectId=OBJECTID ASSIGN expr                                                                                      #assignExpr
+    | objectId=OBJECTID ASSIGN assignedExpr=expr                                                                         #assignExpr
     ;
 
 branch
@@ -1,4 +1,4 @@
-// Generated from C:/Users/mblot/Desktop/CPL_Tema3/src/cool/parser/CoolParser.g4 by ANTLR 4.13.1
+// Generated from CoolParser.g4 by ANTLR 4.13.0
 
     package cool.parser;
 
@@ -13,7 +13,7 @@ import java.util.ArrayList;
 
 @SuppressWarnings({"all", "warnings", "unchecked", "unused", "cast", "CheckReturnValue"})
 public class CoolParser extends Parser {
-	static { RuntimeMetaData.checkVersion("4.13.1", RuntimeMetaData.VERSION); }
+	static { RuntimeMetaData.checkVersion("4.13.0", RuntimeMetaData.VERSION); }
 
 	protected static final DFA[] _decisionToDFA;
 	protected static final PredictionContextCache _sharedContextCache =
@@ -696,11 +696,12 @@ public class CoolParser extends Parser {
 	}
 	@SuppressWarnings("CheckReturnValue")
 	public static class ParenExprContext extends ExprContext {
+		public ExprContext insideExpr;
 		public TerminalNode LPAREN() { return getToken(CoolParser.LPAREN, 0); }
+		public TerminalNode RPAREN() { return getToken(CoolParser.RPAREN, 0); }
 		public ExprContext expr() {
 			return getRuleContext(ExprContext.class,0);
 		}
-		public TerminalNode RPAREN() { return getToken(CoolParser.RPAREN, 0); }
 		public ParenExprContext(ExprContext ctx) { copyFrom(ctx); }
 		@Override
 		public void enterRule(ParseTreeListener listener) {
@@ -751,6 +752,7 @@ public class CoolParser extends Parser {
 	}
 	@SuppressWarnings("CheckReturnValue")
 	public static class UnaryExprContext extends ExprContext {
+		public ExprContext operand;
 		public TerminalNode TILDA() { return getToken(CoolParser.TILDA, 0); }
 		public ExprContext expr() {
 			return getRuleContext(ExprContext.class,0);
@@ -946,11 +948,12 @@ public class CoolParser extends Parser {
 	@SuppressWarnings("CheckReturnValue")
 	public static class AssignExprContext extends ExprContext {
 		public Token objectId;
+		public ExprContext assignedExpr;
 		public TerminalNode ASSIGN() { return getToken(CoolParser.ASSIGN, 0); }
+		public TerminalNode OBJECTID() { return getToken(CoolParser.OBJECTID, 0); }
 		public ExprContext expr() {
 			return getRuleContext(ExprContext.class,0);
 		}
-		public TerminalNode OBJECTID() { return getToken(CoolParser.OBJECTID, 0); }
 		public AssignExprContext(ExprContext ctx) { copyFrom(ctx); }
 		@Override
 		public void enterRule(ParseTreeListener listener) {
@@ -1176,7 +1179,7 @@ public class CoolParser extends Parser {
 				setState(132);
 				match(TILDA);
 				setState(133);
-				expr(13);
+				((UnaryExprContext)_localctx).operand = expr(13);
 				}
 				break;
 			case 9:
@@ -1187,7 +1190,7 @@ public class CoolParser extends Parser {
 				setState(134);
 				match(ISVOID);
 				setState(135);
-				expr(12);
+				((UnaryExprContext)_localctx).operand = expr(12);
 				}
 				break;
 			case 10:
@@ -1198,7 +1201,7 @@ public class CoolParser extends Parser {
 				setState(136);
 				match(NOT);
 				setState(137);
-				expr(8);
+				((UnaryExprContext)_localctx).operand = expr(8);
 				}
 				break;
 			case 11:
@@ -1209,7 +1212,7 @@ public class CoolParser extends Parser {
 				setState(138);
 				match(LPAREN);
 				setState(139);
-				expr(0);
+				((ParenExprContext)_localctx).insideExpr = expr(0);
 				setState(140);
 				match(RPAREN);
 				}
@@ -1269,7 +1272,7 @@ public class CoolParser extends Parser {
 				setState(148);
 				match(ASSIGN);
 				setState(149);
-				expr(1);
+				((AssignExprContext)_localctx).assignedExpr = expr(1);
 				}
 				break;
 			}
@@ -0,0 +1,64 @@
+package cool.structures;
+
+/**
+ * What an identifier in a method or attribute body refers to, worked out
+ * once, when the identifier is resolved, so later passes and the code
+ * generator need not look it up again.
+ */
+public final class Binding {
+    public enum Kind { SELF, ATTRIBUTE, FORMAL, LET, CASE }
+
+    private final Kind kind;
+    private final int slot;
+    private final Symbol symbol;
+
+    public Binding(Kind kind, int slot, Symbol symbol) {
+        this.kind = kind;
+        this.slot = slot;
+        this.symbol = symbol;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return for an attribute, its slot in the object layout; for a
+     *         formal, its position among the method's formals; for a let
+     *         variable, how many let variables are bound directly around
+     *         it, with no formal or case variable in between. 0 otherwise.
+     */
+    public int getSlot() {
+        // Known only once the member tables are built.
+        if (kind == Kind.ATTRIBUTE)
+            return ((FieldSymbol) symbol).getSlot();
+
+        return slot;
+    }
+
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return the declared type of the identifier, or null if it is not
+     *         resolved yet.
+     */
+    public ClassSymbolWrapper getTypeSymbol() {
+        if (symbol instanceof FieldSymbol field)
+            return field.getTypeSymbol();
+        if (symbol instanceof FormalSymbol formal)
+            return formal.getTypeSymbol();
+        if (symbol instanceof LocalSymbol local)
+            return local.getTypeSymbol();
+        if (symbol instanceof BranchSymbol branch)
+            return branch.getTypeSymbol();
+
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + symbol.getName() + " @" + slot;
+    }
+}
@@ -0,0 +1,102 @@
+package cool.structures;
+
+import cool.ast.formal.Formal;
+
+import java.util.Arrays;
+
+/**
+ * The classes whose declarations the checking of a class depended on, by
+ * name id: the classes it named, those it looked members up in, and those
+ * defining the members found, with the types these were declared with.
+ * What a check depends on is recorded as it goes, by the lookups it makes
+ * on its thread while running within {@link #record}, in a compilation
+ * whose globals {@link DefaultScope#recordsDependencies record} them.
+ *
+ * Names are recorded whether or not they named a class, as checking also
+ * depends on a class not being there.
+ */
+public final class ClassDependencies {
+    private static final ThreadLocal<ClassDependencies> recording = new ThreadLocal<>();
+
+    // With repeats, until compacted by toArray().
+    private int[] names = new int[16];
+    private int size = 0;
+
+    /**
+     * Runs {@code work}, recording the lookups it makes on this thread.
+     */
+    public void record(Runnable work) {
+        var previous = recording.get();
+        recording.set(this);
+
+        try {
+            work.run();
+        } finally {
+            recording.set(previous);
+        }
+    }
+
+    /**
+     * Adds a class that was not looked up, e.g. an ancestor of one that
+     * was.
+     */
+    public void add(int nameId) {
+        if (size == names.length)
+            names = Arrays.copyOf(names, size * 2);
+
+        names[size++] = nameId;
+    }
+
+    /**
+     * @return the name ids recorded so far, sorted and without repeats.
+     */
+    public int[] toArray() {
+        var sorted = Arrays.copyOf(names, size);
+        Arrays.sort(sorted);
+
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++)
+            if (i == 0 || sorted[i] != sorted[i - 1])
+                sorted[distinct++] = sorted[i];
+
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+    /**
+     * Records a class looked up by name.
+     */
+    static void addClass(int nameId) {
+        var current = recording.get();
+        if (current != null)
+            current.add(nameId);
+    }
+
+    /**
+     * Records a member looked up in {@code classSymbol}, and what was found.
+     */
+    static void addLookup(ClassSymbol classSymbol, Symbol member) {
+        var current = recording.get();
+        if (current == null)
+            return;
+
+        current.add(classSymbol.getNameId());
+
+        if (member instanceof FieldSymbol field) {
+            if (field.getIntroducingClass() != null)
+                current.add(field.getIntroducingClass().getNameId());
+            if (field.getTypeSymbol() != null && field.getTypeSymbol().getClassSymbol() != null)
+                current.add(field.getTypeSymbol().getClassSymbol().getNameId());
+        } else if (member instanceof MethodSymbol method) {
+            if (method.getParent() instanceof ClassSymbol definingClass)
+                current.add(definingClass.getNameId());
+
+            // The basic classes' methods have no types written out.
+            var definition = method.getMethod();
+            if (definition.getReturnType() != null)
+                current.add(definition.getReturnType().getNameId());
+            for (Formal formal : definition.getFormals())
+                if (formal.getTypeId() != null)
+                    current.add(formal.getTypeId().getNameId());
+        }
+    }
+}
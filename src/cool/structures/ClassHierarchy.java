@@ -0,0 +1,228 @@
+package cool.structures;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The inheritance tree below Object, numbered once inheritance has been
+ * resolved. A class is a subclass of another if it comes no earlier in
+ * preorder and no later in postorder, and least upper bounds are found by
+ * binary lifting, so neither walks the chain of parents. Least upper
+ * bounds are also remembered, as the same few pairs of classes tend to be
+ * joined over and over.
+ *
+ * Classes that cannot reach Object through their parents, i.e. those in
+ * inheritance cycles, inheriting from one, or with an unresolved parent,
+ * are left out. The cycles are found in the same linear sweep, without
+ * walking the parents of each class separately.
+ */
+public class ClassHierarchy {
+    private enum Colour { GREY, BLACK }
+
+    private final ClassSymbol[] classes;
+    private final int[] postorder;
+    private final int[] depths;
+    // ancestors[k][i] is the 2^k-th ancestor of class i, or the root.
+    private final int[][] ancestors;
+    // Remembered least upper bounds. Each entry packs the ids of a pair of
+    // classes and of their bound, ID_BITS each, so that it is read and
+    // written in one go; an all-zero entry is right too, Object being
+    // its own bound.
+    private static final int ID_BITS = 21;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+    private final AtomicLongArray bounds;
+    private final List<List<ClassSymbol>> cycles;
+    private final Set<ClassSymbol> cyclic = new HashSet<>();
+
+    /**
+     * Numbers the classes reachable from {@code root}, and records their
+     * numbers in them.
+     */
+    public ClassHierarchy(ClassSymbol root, Collection<ClassSymbol> allClasses) {
+        cycles = findCycles(allClasses);
+        cycles.forEach(cyclic::addAll);
+
+        Map<ClassSymbol, List<ClassSymbol>> children = new HashMap<>();
+        for (var classSymbol : allClasses)
+            if (classSymbol.getDirectParent() instanceof ClassSymbol parent)
+                children.computeIfAbsent(parent, key -> new ArrayList<>()).add(classSymbol);
+
+        var preorder = new ArrayList<ClassSymbol>();
+        var post = new int[allClasses.size()];
+        var depth = new int[allClasses.size()];
+        var parentIds = new int[allClasses.size()];
+        int nextPostorder = 0;
+
+        // Depth-first, with an explicit stack so that deep hierarchies do
+        // not overflow the thread's.
+        var stack = new ArrayDeque<Iterator<ClassSymbol>>();
+        var ids = new ArrayDeque<Integer>();
+        preorder.add(root);
+        stack.push(children.getOrDefault(root, List.of()).iterator());
+        ids.push(0);
+
+        while (!stack.isEmpty()) {
+            int id = ids.peek();
+
+            if (stack.peek().hasNext()) {
+                var child = stack.peek().next();
+                int childId = preorder.size();
+
+                preorder.add(child);
+                depth[childId] = depth[id] + 1;
+                parentIds[childId] = id;
+                stack.push(children.getOrDefault(child, List.of()).iterator());
+                ids.push(childId);
+            } else {
+                post[id] = nextPostorder++;
+                stack.pop();
+                ids.pop();
+            }
+        }
+
+        int size = preorder.size();
+        int maxDepth = 0;
+        for (int i = 0; i < size; i++)
+            maxDepth = Math.max(maxDepth, depth[i]);
+
+        int levels = 32 - Integer.numberOfLeadingZeros(maxDepth) + 1;
+        ancestors = new int[levels][size];
+        ancestors[0] = Arrays.copyOf(parentIds, size);
+        for (int k = 1; k < levels; k++)
+            for (int i = 0; i < size; i++)
+                ancestors[k][i] = ancestors[k - 1][ancestors[k - 1][i]];
+
+        classes = preorder.toArray(new ClassSymbol[0]);
+        postorder = Arrays.copyOf(post, size);
+        depths = Arrays.copyOf(depth, size);
+
+        // Too many classes to pack, the bounds are not remembered.
+        int entries = size <= ID_MASK ? Integer.highestOneBit(Math.min(size * 4, 1 << 16)) : 0;
+        bounds = new AtomicLongArray(entries);
+
+        for (int i = 0; i < size; i++)
+            classes[i].setHierarchy(this, i);
+    }
+
+    /**
+     * Follows the parents of every class, colouring a class grey while the
+     * walk that reached it is under way and black once it is over. A walk
+     * that runs into a grey class has gone round a cycle; one that runs
+     * into a black class, or out of classes, stops. Each class is thus
+     * coloured once, whatever the depth of the hierarchy.
+     *
+     * @return the cycles, in the order their first class is found in
+     *         {@code allClasses}, each starting there and following parents.
+     */
+    private static List<List<ClassSymbol>> findCycles(Collection<ClassSymbol> allClasses) {
+        Map<ClassSymbol, Colour> colours = new HashMap<>();
+        var cycles = new ArrayList<List<ClassSymbol>>();
+        var path = new ArrayList<ClassSymbol>();
+
+        for (var start : allClasses) {
+            ClassSymbol current = start;
+
+            while (current != null && !colours.containsKey(current)) {
+                colours.put(current, Colour.GREY);
+                path.add(current);
+                current = current.getDirectParent() instanceof ClassSymbol parent ? parent : null;
+            }
+
+            if (current != null && colours.get(current) == Colour.GREY)
+                cycles.add(List.copyOf(path.subList(path.indexOf(current), path.size())));
+
+            path.forEach(classSymbol -> colours.put(classSymbol, Colour.BLACK));
+            path.clear();
+        }
+
+        return cycles;
+    }
+
+    /**
+     * @return the classes in preorder, so every class comes after its
+     *         parent; layouts can be built in this order, each extending
+     *         its parent's.
+     */
+    public List<ClassSymbol> getClasses() {
+        return List.of(classes);
+    }
+
+    public boolean contains(ClassSymbol classSymbol) {
+        return classSymbol.getHierarchy() == this;
+    }
+
+    /**
+     * @return every inheritance cycle, each listing its classes once.
+     */
+    public List<List<ClassSymbol>> getCycles() {
+        return cycles;
+    }
+
+    public boolean isInCycle(ClassSymbol classSymbol) {
+        return cyclic.contains(classSymbol);
+    }
+
+    /**
+     * @return true if {@code child} is {@code parent} or inherits from it;
+     *         both must be in the hierarchy.
+     */
+    public boolean isChildOf(ClassSymbol child, ClassSymbol parent) {
+        return isChildOf(child.getHierarchyId(), parent.getHierarchyId());
+    }
+
+    private boolean isChildOf(int child, int parent) {
+        return parent <= child && postorder[child] <= postorder[parent];
+    }
+
+    public int depth(ClassSymbol classSymbol) {
+        return depths[classSymbol.getHierarchyId()];
+    }
+
+    /**
+     * @return the closest common ancestor of two classes in the hierarchy.
+     */
+    public ClassSymbol leastUpperBound(ClassSymbol first, ClassSymbol second) {
+        int a = first.getHierarchyId();
+        int b = second.getHierarchyId();
+
+        if (isChildOf(b, a))
+            return first;
+
+        if (isChildOf(a, b))
+            return second;
+
+        if (bounds.length() == 0)
+            return classes[leastUpperBound(a, b)];
+
+        long pair = ((long) Math.min(a, b) << ID_BITS) | Math.max(a, b);
+        int position = (int) ((pair * 0x9E3779B97F4A7C15L) >>> 32) & (bounds.length() - 1);
+
+        long entry = bounds.get(position);
+        if (entry >>> ID_BITS == pair)
+            return classes[(int) (entry & ID_MASK)];
+
+        int bound = leastUpperBound(a, b);
+        bounds.set(position, (pair << ID_BITS) | bound);
+        return classes[bound];
+    }
+
+    // Neither class may be an ancestor of the other.
+    private int leastUpperBound(int a, int b) {
+        // Climb from a to the highest ancestor that is still not above b;
+        // its parent is the answer.
+        for (int k = ancestors.length - 1; k >= 0; k--)
+            if (!isChildOf(b, ancestors[k][a]))
+                a = ancestors[k][a];
+
+        return ancestors[0][a];
+    }
+}
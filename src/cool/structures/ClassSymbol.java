@@ -1,292 +1,194 @@
 package cool.structures;
 
 import cool.ast.ASTCodeGenVisitor;
-import org.stringtemplate.v4.ST;
+import cool.mips.InstructionList;
+import cool.mips.Opcode;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
-class Pair {
-    private String className;
-    private String methodName;
-
-    public Pair(String className, String methodName) {
-        this.className = className;
-        this.methodName = methodName;
+public class ClassSymbol extends Symbol implements Scope {
+    private final SymbolMap fieldSymbols = new SymbolMap();
+    private final SymbolMap methodSymbols = new SymbolMap();
+    private final Scope parent;
+    private final boolean recordsDependencies;
+    private Scope directParent = null;
+    private ClassHierarchy hierarchy = null;
+    private int hierarchyId;
+    private MemberTable fieldTable = null;
+    private MemberTable methodTable = null;
+    private ObjectLayout layout = null;
+    private final ClassSymbolWrapper type = new ClassSymbolWrapper(this, false);
+    private final ClassSymbolWrapper selfType = new ClassSymbolWrapper(this, true);
+
+    public ClassSymbol(String name, Scope parent) {
+        super(name);
+        this.parent = parent;
+        this.recordsDependencies = parent instanceof DefaultScope globals && globals.recordsDependencies();
     }
 
-    public String getClassName() {
-        return className;
+    /**
+     * @return the type of expressions of this class.
+     */
+    public ClassSymbolWrapper getType() {
+        return type;
     }
 
-    public String getMethodName() {
-        return methodName;
-    }
-}
-
-public class ClassSymbol extends Symbol implements Scope {
-    private final Map<String, Symbol> fieldSymbols = new LinkedHashMap<>();
-    private final Map<String, Symbol> methodSymbols = new LinkedHashMap<>();
-    private static final ArrayList<Pair> overriddenMethods = new ArrayList<>();
-    private final Scope parent = SymbolTable.globals;
-    private Scope directParent = null;
-
-    public ClassSymbol(String name) {
-        super(name);
+    /**
+     * @return SELF_TYPE, in this class.
+     */
+    public ClassSymbolWrapper getSelfType() {
+        return selfType;
     }
 
     public boolean addField(Symbol sym) {
         // Reject duplicates in the same scope.
-        if (fieldSymbols.containsKey(sym.getName()))
-            return false;
-
-        fieldSymbols.put(sym.getName(), sym);
-
-        return true;
+        return fieldSymbols.add(sym);
     }
 
     public boolean addMethod(Symbol sym) {
         // Reject duplicates in the same scope.
-        if (methodSymbols.containsKey(sym.getName()))
-            return false;
-
-        methodSymbols.put(sym.getName(), sym);
-
-        return true;
+        return methodSymbols.add(sym);
     }
 
     public Symbol lookupField(String name) {
-        var sym = fieldSymbols.get(name);
-
-        if (sym != null)
-            return sym;
+        int nameId = Names.find(name);
+        return nameId == Names.NONE ? null : lookupField(nameId);
+    }
 
-        if (directParent != null && directParent != SymbolTable.globals)
-            return ((ClassSymbol) directParent).lookupField(name);
+    public Symbol lookupField(int nameId) {
+        var sym = fieldTable != null ? fieldTable.lookup(nameId) : lookupInherited(nameId, true);
 
-        return null;
+        if (recordsDependencies)
+            ClassDependencies.addLookup(this, sym);
+        return sym;
     }
 
     public Symbol lookupMethod(String name) {
-        var sym = methodSymbols.get(name);
-
-        if (sym != null)
-            return sym;
+        int nameId = Names.find(name);
+        return nameId == Names.NONE ? null : lookupMethod(nameId);
+    }
 
-        if (directParent != null && directParent != SymbolTable.globals)
-            return ((ClassSymbol) directParent).lookupMethod(name);
+    public Symbol lookupMethod(int nameId) {
+        var sym = methodTable != null ? methodTable.lookup(nameId) : lookupInherited(nameId, false);
 
-        return null;
+        if (recordsDependencies)
+            ClassDependencies.addLookup(this, sym);
+        return sym;
     }
 
-    public boolean isChildOf(ClassSymbol parent) {
-        if (parent.name.equals("Object"))
-            return true;
+    /**
+     * Looks a member up through the parents one at a time, as done until
+     * the member tables are built. A second class follows at half speed,
+     * and the walk stops if it catches up with it, so cyclic inheritance
+     * does not make it loop.
+     */
+    private Symbol lookupInherited(int nameId, boolean isField) {
+        ClassSymbol lagging = this;
+        int steps = 0;
 
-        if (this.name.equals(parent.name))
-            return true;
+        for (ClassSymbol current = this; current != null; current = current.getParentClass()) {
+            var sym = (isField ? current.fieldSymbols : current.methodSymbols).get(nameId);
 
-        if (this.directParent == SymbolTable.globals || this.directParent == null)
-            return false;
+            if (sym != null)
+                return sym;
 
-        return ((ClassSymbol) this.directParent).isChildOf(parent);
-    }
+            if (++steps % 2 == 0)
+                lagging = lagging.getParentClass();
 
-    public int countParents() {
-        if (this.name.equals("Object"))
-            return 0;
+            if (current.getParentClass() == lagging)
+                return null;
+        }
 
-        return 1 + ((ClassSymbol) this.directParent).countParents();
+        return null;
     }
 
-    public ClassSymbol leastUpperBound(ClassSymbol other) {
-        if (this == other)
-            return this;
+    private ClassSymbol getParentClass() {
+        return directParent instanceof ClassSymbol parentClass ? parentClass : null;
+    }
 
-        if (this.isChildOf(other))
-            return other;
+    /**
+     * @return this class followed by its ancestors, nearest first; if
+     *         inheritance is cyclic, each class of the cycle once.
+     */
+    private List<ClassSymbol> lineage() {
+        var lineage = new ArrayList<ClassSymbol>();
+        Set<ClassSymbol> seen = Collections.newSetFromMap(new IdentityHashMap<>());
 
-        if (other.isChildOf(this))
-            return this;
+        for (ClassSymbol current = this; current != null && seen.add(current); current = current.getParentClass())
+            lineage.add(current);
 
-        return ((ClassSymbol) this.directParent).leastUpperBound(other);
+        return lineage;
     }
 
-    public boolean isInCycle(ClassSymbol initialClass) {
-        if (this.name.equals("Object") || this.directParent == null)
-            return false;
+    public boolean isChildOf(ClassSymbol parent) {
+        if (hierarchy != null && hierarchy.contains(parent))
+            return hierarchy.isChildOf(this, parent);
 
-        if (this == initialClass)
+        if (parent.nameId == Names.OBJECT)
             return true;
 
-        return ((ClassSymbol) this.directParent).isInCycle(initialClass);
-    }
-
-    public int numberOfAttributes() {
-        if (!(directParent instanceof ClassSymbol)) {
-            if (fieldSymbols.containsKey("self"))
-                return fieldSymbols.size() - 1;
-            else
-                return fieldSymbols.size();
-        }
+        for (var ancestor : lineage())
+            if (ancestor.nameId == parent.nameId)
+                return true;
 
-        if (fieldSymbols.containsKey("self"))
-            return fieldSymbols.size() - 1 + ((ClassSymbol) directParent).numberOfAttributes();
-        else
-            return fieldSymbols.size() + ((ClassSymbol) directParent).numberOfAttributes();
+        return false;
     }
 
-    public void populateMethods(String initialClassName) {
-        if (!(directParent instanceof ClassSymbol)) {
-            methodSymbols.forEach((name, sym) -> {
-                if (ASTCodeGenVisitor.classMethods.get(initialClassName).contains(name))
-                    return;
-
-                ASTCodeGenVisitor.classMethods.get(initialClassName).add(name);
-            });
-
-            return;
-        }
-
-        ((ClassSymbol) directParent).populateMethods(initialClassName);
-        methodSymbols.forEach((name, sym) -> {
-            if (ASTCodeGenVisitor.classMethods.get(initialClassName).contains(name))
-                return;
+    public int countParents() {
+        if (hierarchy != null)
+            return hierarchy.depth(this);
 
-            ASTCodeGenVisitor.classMethods.get(initialClassName).add(name);
-        });
+        return lineage().size() - 1;
     }
 
-    public void generateDispatchTable(ST methods, String initialClassName) {
-        if (this.name.equals(initialClassName)) {
-            overriddenMethods.clear();
-        }
-
-        if (!(directParent instanceof ClassSymbol)) {
-            methodSymbols.forEach((name, sym) -> {
-                for (Pair pair : overriddenMethods) {
-                    if (pair.getMethodName().equals(name)) {
-                        ST method = ASTCodeGenVisitor.templates.getInstanceOf("attrib");
-                        method.add("initVal", pair.getClassName() + "." + name);
-
-                        methods.add("e", method);
-
-                        return;
-                    }
-                }
-
-                ST method = ASTCodeGenVisitor.templates.getInstanceOf("attrib");
-                method.add("initVal", this.getName() + "." + name);
-
-                methods.add("e", method);
-            });
-
-            return;
-        }
-
-        ArrayList<Pair> currentOverriddenMethods = new ArrayList<>();
-        for (Map.Entry<String, Symbol> entry : methodSymbols.entrySet()) {
-            String name = entry.getKey();
-            int existed = 0;
-
-            for (Pair pair : overriddenMethods) {
-                if (pair.getMethodName().equals(name)) {
-                    existed = 1;
-                    break;
-                }
-            }
-
-            if (existed == 0) {
-                currentOverriddenMethods.add(new Pair(this.getName(), name));
-            }
-        }
-
-        overriddenMethods.addAll(0, currentOverriddenMethods);
-        ((ClassSymbol) directParent).generateDispatchTable(methods, initialClassName);
-
-        for (Map.Entry<String, Symbol> entry : methodSymbols.entrySet()) {
-            String name = entry.getKey();
+    public ClassSymbol leastUpperBound(ClassSymbol other) {
+        if (this == other)
+            return this;
 
-            ArrayList<Pair> toRemove = new ArrayList<>();
-            for (Pair pair : overriddenMethods) {
-                if (pair.getMethodName().equals(name)) {
-                    ST method = ASTCodeGenVisitor.templates.getInstanceOf("attrib");
-                    method.add("initVal", pair.getClassName() + "." + pair.getMethodName());
+        if (hierarchy != null && hierarchy.contains(other))
+            return hierarchy.leastUpperBound(this, other);
 
-                    methods.add("e", method);
+        if (this.isChildOf(other))
+            return other;
 
-                    toRemove.add(pair);
-                }
-            }
+        for (var ancestor : lineage())
+            if (other.isChildOf(ancestor))
+                return ancestor;
 
-            overriddenMethods.removeAll(toRemove);
-        }
+        return null;
     }
 
-    public void populateFields(String initialClassName) {
-        if (!(directParent instanceof ClassSymbol)) {
-            fieldSymbols.forEach((name, sym) -> {
-                if (name.equals("self"))
-                    return;
-
-                ASTCodeGenVisitor.classAttributes.get(initialClassName).add(name);
-            });
-
-            return;
+    /**
+     * Adds this class's dispatch table to {@code methods}: an entry per
+     * slot of the method table, naming the definition of the method in
+     * the closest class that defines it.
+     */
+    public void generateDispatchTable(InstructionList methods) {
+        for (int slot = 0; slot < methodTable.slotCount(); slot++) {
+            Symbol sym = methodTable.getSlot(slot);
+            var definingClass = (ClassSymbol) ((MethodSymbol) sym).getParent();
+
+            methods.emit(Opcode.WORD_SYMBOL, definingClass.getName() + "." + sym.getName());
         }
-
-        ((ClassSymbol) directParent).populateFields(initialClassName);
-        fieldSymbols.forEach((name, sym) -> {
-            if (name.equals("self"))
-                return;
-
-            ASTCodeGenVisitor.classAttributes.get(initialClassName).add(name);
-        });
     }
 
-    public void generateAttributes(ST attributes, String initialClassName) {
-        if (!(directParent instanceof ClassSymbol)) {
-            fieldSymbols.forEach((name, sym) -> {
-                ST attribute = ASTCodeGenVisitor.templates.getInstanceOf("attrib");
-
-                if (name.equals("self"))
-                    return;
-
-                switch (((FieldSymbol) sym).getTypeSymbol().getClassSymbol().getName()) {
-                    case "Int" -> attribute.add("initVal", ASTCodeGenVisitor.generateIntLiteral(0));
-                    case "Bool" -> attribute.add("initVal", ASTCodeGenVisitor.generateBoolLiteral(false));
-                    case "String" -> attribute.add("initVal", ASTCodeGenVisitor.generateStringLiteral(""));
-                    default -> attribute.add("initVal", "0");
-                }
-
-                attributes.add("e", attribute);
-            });
-
-            return;
-        }
-
-        ((ClassSymbol) directParent).generateAttributes(attributes, initialClassName);
-        fieldSymbols.forEach((name, sym) -> {
-            ST attribute = ASTCodeGenVisitor.templates.getInstanceOf("attrib");
-
-            if (name.equals("self"))
-                return;
-
-            switch (((FieldSymbol) sym).getTypeSymbol().getClassSymbol().getName()) {
-                case "Int" -> attribute.add("initVal", ASTCodeGenVisitor.generateIntLiteral(0));
-                case "Bool" -> attribute.add("initVal", ASTCodeGenVisitor.generateBoolLiteral(false));
-                case "String" -> attribute.add("initVal", ASTCodeGenVisitor.generateStringLiteral(""));
-                default -> attribute.add("initVal", "0");
+    /**
+     * Adds the attributes of this class's prototype object to
+     * {@code attributes}, each set to the default value of its type.
+     */
+    public void generateAttributes(InstructionList attributes, ASTCodeGenVisitor codeGen) {
+        for (int slot = 0; slot < layout.attributeCount(); slot++) {
+            switch (layout.getDefault(slot)) {
+                case INT -> attributes.emit(Opcode.WORD_SYMBOL, codeGen.generateIntLiteral(0));
+                case BOOL -> attributes.emit(Opcode.WORD_SYMBOL, codeGen.generateBoolLiteral(false));
+                case STRING -> attributes.emit(Opcode.WORD_SYMBOL, codeGen.generateStringLiteral(""));
+                case VOID -> attributes.emit(Opcode.WORD, 0);
             }
-
-            attributes.add("e", attribute);
-        });
-
-    }
-    public void generateInitMethods(ST init, ST attr) {
-        init.add("className", this.getName());
-        init.add("directParent", ((ClassSymbol) this.directParent).getName());
+        }
     }
 
     @Override
@@ -295,11 +197,11 @@ public class ClassSymbol extends Symbol implements Scope {
     }
 
     @Override
-    public Symbol lookup(String str, boolean isField) {
+    public Symbol lookup(int nameId, boolean isField) {
         if (isField)
-            return lookupField(str);
+            return lookupField(nameId);
         else
-            return lookupMethod(str);
+            return lookupMethod(nameId);
     }
 
     @Override
@@ -307,11 +209,11 @@ public class ClassSymbol extends Symbol implements Scope {
         return parent;
     }
 
-    public Map<String, Symbol> getFieldSymbols() {
+    public SymbolMap getFieldSymbols() {
         return fieldSymbols;
     }
 
-    public Map<String, Symbol> getMethodSymbols() {
+    public SymbolMap getMethodSymbols() {
         return methodSymbols;
     }
 
@@ -322,4 +224,91 @@ public class ClassSymbol extends Symbol implements Scope {
     public void setDirectParent(Scope directParent) {
         this.directParent = directParent;
     }
+
+    /**
+     * Forgets the hierarchy this class was numbered in and the tables
+     * built from its ancestors, for a later compilation that keeps the
+     * class to build them again.
+     */
+    public void forgetHierarchy() {
+        hierarchy = null;
+        hierarchyId = 0;
+        fieldTable = null;
+        methodTable = null;
+        layout = null;
+    }
+
+    /**
+     * Forgets the members and parent of this class too, for it to be
+     * defined again.
+     */
+    public void clear() {
+        fieldSymbols.clear();
+        methodSymbols.clear();
+        directParent = null;
+        forgetHierarchy();
+    }
+
+    /**
+     * @return the hierarchy this class has been numbered in, or null if it
+     *         has not been built yet or the class is not part of it.
+     */
+    public ClassHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    int getHierarchyId() {
+        return hierarchyId;
+    }
+
+    void setHierarchy(ClassHierarchy hierarchy, int hierarchyId) {
+        this.hierarchy = hierarchy;
+        this.hierarchyId = hierarchyId;
+    }
+
+    /**
+     * @return the fields of this class and its ancestors, with their
+     *         offsets in the object's attributes, or null if the class is
+     *         not part of the hierarchy.
+     */
+    public MemberTable getFieldTable() {
+        return fieldTable;
+    }
+
+    /**
+     * @return the layout of the objects of this class, or null if the
+     *         class is not part of the hierarchy.
+     */
+    public ObjectLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return the methods of this class and its ancestors, with their
+     *         offsets in the dispatch table, or null if the class is not
+     *         part of the hierarchy.
+     */
+    public MemberTable getMethodTable() {
+        return methodTable;
+    }
+
+    /**
+     * Flattens the members of this class and its ancestors; the parent's
+     * tables must have been built.
+     */
+    void buildMemberTables() {
+        var parent = directParent instanceof ClassSymbol classSymbol ? classSymbol : null;
+
+        var fields = new MemberTable.Builder(parent == null ? null : parent.fieldTable);
+        fieldSymbols.values().forEach(sym -> fields.add(sym, sym.getNameId() != Names.SELF));
+        fieldTable = fields.build();
+        layout = new ObjectLayout(parent == null ? null : parent.layout, fieldTable);
+        for (var sym : fieldSymbols.values())
+            if (sym instanceof FieldSymbol fieldSymbol)
+                fieldSymbol.setSlot(fieldTable.slot(sym.getNameId()));
+
+        var methods = new MemberTable.Builder(parent == null ? null : parent.methodTable);
+        methodSymbols.values().forEach(sym -> methods.add(sym, true));
+        methodTable = methods.build();
+    }
 }
@@ -1,14 +1,34 @@
 package cool.structures;
 
-public class ClassSymbolWrapper {
+/**
+ * The static type of an expression: a class, or SELF_TYPE within it.
+ * Types are immutable and canonical, one of each kind per class, held by
+ * the class itself, so they can be shared by every expression and
+ * compared by reference.
+ */
+public final class ClassSymbolWrapper {
+    // The types of expressions whose class could not be resolved.
+    private static final ClassSymbolWrapper UNRESOLVED = new ClassSymbolWrapper(null, false);
+    private static final ClassSymbolWrapper UNRESOLVED_SELF_TYPE = new ClassSymbolWrapper(null, true);
+
     private final ClassSymbol classSymbol;
-    private boolean isSelfType;
+    private final boolean isSelfType;
 
-    public ClassSymbolWrapper(ClassSymbol classSymbol, boolean isSelfType) {
+    ClassSymbolWrapper(ClassSymbol classSymbol, boolean isSelfType) {
         this.classSymbol = classSymbol;
         this.isSelfType = isSelfType;
     }
 
+    /**
+     * @return the type of {@code classSymbol}, or SELF_TYPE within it.
+     */
+    public static ClassSymbolWrapper of(ClassSymbol classSymbol, boolean isSelfType) {
+        if (classSymbol == null)
+            return isSelfType ? UNRESOLVED_SELF_TYPE : UNRESOLVED;
+
+        return isSelfType ? classSymbol.getSelfType() : classSymbol.getType();
+    }
+
     public ClassSymbol getClassSymbol() {
         return classSymbol;
     }
@@ -17,7 +37,8 @@ public class ClassSymbolWrapper {
         return isSelfType;
     }
 
-    public void setSelfType(boolean isSelfType) {
-        this.isSelfType = isSelfType;
+    @Override
+    public String toString() {
+        return isSelfType ? "SELF_TYPE(" + classSymbol + ")" : String.valueOf(classSymbol);
     }
 }
@@ -1,42 +1,72 @@
 package cool.structures;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Collection;
 
 public class DefaultScope implements Scope {
     
-    private final Map<String, Symbol> symbols = new LinkedHashMap<>();
+    private final SymbolMap symbols = new SymbolMap();
     
     private final Scope parent;
+
+    // Only for the globals of a compilation that keeps what checking each
+    // class depends on, as recording costs every lookup a thread-local.
+    private final boolean recordsDependencies;
     
     public DefaultScope(Scope parent) {
+        this(parent, false);
+    }
+
+    public DefaultScope(Scope parent, boolean recordsDependencies) {
         this.parent = parent;
+        this.recordsDependencies = recordsDependencies;
+    }
+
+    /**
+     * @return whether lookups of classes, and of their members, are
+     *         recorded as dependencies (see {@link ClassDependencies}).
+     */
+    public boolean recordsDependencies() {
+        return recordsDependencies;
     }
 
     @Override
     public boolean add(Symbol sym) {
         // Reject duplicates in the same scope.
-        if (symbols.containsKey(sym.getName()))
-            return false;
-        
-        symbols.put(sym.getName(), sym);
-        
-        return true;
+        return symbols.add(sym);
     }
 
     @Override
-    public Symbol lookup(String name, boolean isField) {
-        var sym = symbols.get(name);
+    public Symbol lookup(int nameId, boolean isField) {
+        // The globals are the only default scope, so this is a class.
+        if (recordsDependencies)
+            ClassDependencies.addClass(nameId);
+
+        var sym = symbols.get(nameId);
         
         if (sym != null)
             return sym;
         
         if (parent != null)
-            return parent.lookup(name, isField);
+            return parent.lookup(nameId, isField);
         
         return null;
     }
 
+    /**
+     * Removes the symbols defined directly in this scope.
+     */
+    public void clear() {
+        symbols.clear();
+    }
+
+    /**
+     * @return the symbols defined directly in this scope, in the order they
+     *         were added.
+     */
+    public Collection<Symbol> getSymbols() {
+        return symbols.values();
+    }
+
     @Override
     public Scope getParent() {
         return parent;
@@ -44,7 +74,7 @@ public class DefaultScope implements Scope {
     
     @Override
     public String toString() {
-        return symbols.values().toString();
+        return symbols.toString();
     }
 
 }
@@ -3,16 +3,37 @@ package cool.structures;
 public class FieldSymbol extends Symbol {
     private ClassSymbolWrapper typeSymbol;
     private ClassSymbol introducingClass;
+    // Shared by all the identifiers referring to the field.
+    private final Binding binding;
+    private int slot = MemberTable.NO_SLOT;
 
     public FieldSymbol(String name) {
         super(name);
+        this.binding = new Binding(nameId == Names.SELF ? Binding.Kind.SELF : Binding.Kind.ATTRIBUTE, 0, this);
     }
 
     public FieldSymbol(String name, ClassSymbol introducingClass) {
-        super(name);
+        this(name);
         this.introducingClass = introducingClass;
     }
 
+    /**
+     * @return the field's slot in the object layout, or
+     *         {@link MemberTable#NO_SLOT} before the class's member tables
+     *         are built.
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    public Binding getBinding() {
+        return binding;
+    }
+
     public ClassSymbolWrapper getTypeSymbol() {
         return typeSymbol;
     }
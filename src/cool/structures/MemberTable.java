@@ -0,0 +1,152 @@
+package cool.structures;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The fields or the methods of a class, including the inherited ones,
+ * keyed by interned name. A member the class redefines replaces the
+ * inherited one but keeps its slot, the position in the object layout or
+ * dispatch table, so a class's slots extend those of its parent.
+ *
+ * Entries are kept in an open-addressing table with linear probing, at
+ * most half full, so a lookup is usually a single probe.
+ */
+public class MemberTable {
+    public static final int NO_SLOT = -1;
+
+    // Name id + 1 of each entry; 0 marks an empty position.
+    private final int[] keys;
+    private final Symbol[] symbols;
+    private final int[] slots;
+    private final int mask;
+    private final Symbol[] bySlot;
+    // Name ids in insertion order, to copy into subclasses' tables.
+    private final int[] order;
+
+    private MemberTable(List<Integer> ids, List<Symbol> entrySymbols, List<Integer> entrySlots, int slotCount) {
+        int capacity = Integer.highestOneBit(Math.max(1, ids.size()) * 2 - 1) << 1;
+
+        keys = new int[capacity];
+        symbols = new Symbol[capacity];
+        slots = new int[capacity];
+        mask = capacity - 1;
+        bySlot = new Symbol[slotCount];
+        order = new int[ids.size()];
+
+        for (int i = 0; i < ids.size(); i++) {
+            int id = ids.get(i);
+            int position = hash(id) & mask;
+            while (keys[position] != 0)
+                position = (position + 1) & mask;
+
+            keys[position] = id + 1;
+            symbols[position] = entrySymbols.get(i);
+            slots[position] = entrySlots.get(i);
+            order[i] = id;
+
+            if (entrySlots.get(i) != NO_SLOT)
+                bySlot[entrySlots.get(i)] = entrySymbols.get(i);
+        }
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int find(int nameId) {
+        int position = hash(nameId) & mask;
+
+        while (keys[position] != 0) {
+            if (keys[position] == nameId + 1)
+                return position;
+            position = (position + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the member called {@code nameId}, or null.
+     */
+    public Symbol lookup(int nameId) {
+        int position = find(nameId);
+        return position < 0 ? null : symbols[position];
+    }
+
+    /**
+     * @return the slot of the member called {@code nameId}, or
+     *         {@link #NO_SLOT} if there is none, or it takes no slot.
+     */
+    public int slot(int nameId) {
+        int position = find(nameId);
+        return position < 0 ? NO_SLOT : slots[position];
+    }
+
+    public int slotCount() {
+        return bySlot.length;
+    }
+
+    /**
+     * @return the member in the given slot; for a redefined member, the
+     *         redefinition.
+     */
+    public Symbol getSlot(int slot) {
+        return bySlot[slot];
+    }
+
+    public static class Builder {
+        private final List<Integer> ids = new ArrayList<>();
+        private final List<Symbol> symbols = new ArrayList<>();
+        private final List<Integer> slots = new ArrayList<>();
+        private final Map<Integer, Integer> indices = new HashMap<>();
+        private int slotCount = 0;
+
+        /**
+         * @param inherited the parent's table, or null.
+         */
+        public Builder(MemberTable inherited) {
+            if (inherited == null)
+                return;
+
+            for (int id : inherited.order) {
+                int position = inherited.find(id);
+                indices.put(id, ids.size());
+                ids.add(id);
+                symbols.add(inherited.symbols[position]);
+                slots.add(inherited.slots[position]);
+            }
+            slotCount = inherited.slotCount();
+        }
+
+        /**
+         * Adds a member, or replaces the inherited member of the same name.
+         *
+         * @param slotted whether the member takes a slot.
+         */
+        public Builder add(Symbol symbol, boolean slotted) {
+            int id = symbol.getNameId();
+            Integer index = indices.get(id);
+
+            if (index != null) {
+                symbols.set(index, symbol);
+                if (slots.get(index) == NO_SLOT && slotted)
+                    slots.set(index, slotCount++);
+            } else {
+                indices.put(id, ids.size());
+                ids.add(id);
+                symbols.add(symbol);
+                slots.add(slotted ? slotCount++ : NO_SLOT);
+            }
+
+            return this;
+        }
+
+        public MemberTable build() {
+            return new MemberTable(ids, symbols, slots, slotCount);
+        }
+    }
+}
@@ -2,11 +2,9 @@ package cool.structures;
 
 import cool.ast.feature.Method;
 
-import java.util.HashMap;
-
 public class MethodSymbol extends Symbol implements Scope {
     private ClassSymbolWrapper typeSymbol;
-    private final HashMap<String, Symbol> formalSymbols = new HashMap<>();
+    private final SymbolMap formalSymbols = new SymbolMap();
     private Scope parent;
     private final Method method;
 
@@ -34,23 +32,18 @@ public class MethodSymbol extends Symbol implements Scope {
     @Override
     public boolean add(Symbol sym) {
         // Reject duplicates in the same scope.
-        if (formalSymbols.containsKey(sym.getName()))
-            return false;
-
-        formalSymbols.put(sym.getName(), sym);
-
-        return true;
+        return formalSymbols.add(sym);
     }
 
     @Override
-    public Symbol lookup(String name, boolean isField) {
-        var sym = formalSymbols.get(name);
+    public Symbol lookup(int nameId, boolean isField) {
+        var sym = formalSymbols.get(nameId);
 
         if (sym != null)
             return sym;
 
         if (parent != null)
-            return parent.lookup(name, isField);
+            return parent.lookup(nameId, isField);
 
         return null;
     }
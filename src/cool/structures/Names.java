@@ -0,0 +1,104 @@
+package cool.structures;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns identifiers, giving each distinct name a small int id, so that
+ * names can be compared and symbol tables keyed by ints instead of
+ * strings. Ids are shared by all compilations in the JVM, and are only
+ * reused once {@link #reset} has forgotten them. Until then every name
+ * interned stays, so a process compiling many different programs, such as
+ * the compile server, must reset now and then for the table not to grow
+ * without bound; those calling the compiler in-process are to do the same
+ * between compilations.
+ *
+ * The names the compiler itself refers to have fixed ids, so they can be
+ * compared against, or switched on, as constants.
+ */
+public class Names {
+    public static final int NONE = -1;
+
+    public static final int SELF = 0;
+    public static final int SELF_TYPE = 1;
+    public static final int OBJECT = 2;
+    public static final int IO = 3;
+    public static final int INT = 4;
+    public static final int STRING = 5;
+    public static final int BOOL = 6;
+    public static final int MAIN = 7;
+
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    // The name of each id; replaced by a larger copy when full.
+    private static volatile String[] names = new String[256];
+    private static int nextId = 0;
+
+    // In the order of their fixed ids.
+    private static final List<String> FIXED_NAMES =
+            List.of("self", "SELF_TYPE", "Object", "IO", "Int", "String", "Bool", "Main");
+
+    static {
+        FIXED_NAMES.forEach(Names::id);
+    }
+
+    /**
+     * Forgets every name but those with fixed ids, for a long-lived process
+     * not to keep the names of all it ever compiled. Only safe while no id
+     * is in use: no compilation is running, and nothing from an earlier
+     * one, such as an AST or a symbol table, is kept.
+     */
+    public static synchronized void reset() {
+        ids.clear();
+        names = new String[256];
+        nextId = 0;
+
+        FIXED_NAMES.forEach(Names::id);
+    }
+
+    /**
+     * @return how many names are interned.
+     */
+    public static synchronized int size() {
+        return nextId;
+    }
+
+    /**
+     * @return the id of {@code name}, interning it if it has none yet.
+     */
+    public static int id(String name) {
+        Integer id = ids.get(name);
+        if (id != null)
+            return id;
+
+        synchronized (Names.class) {
+            id = ids.get(name);
+            if (id != null)
+                return id;
+
+            if (nextId == names.length)
+                names = Arrays.copyOf(names, names.length * 2);
+            names[nextId] = name;
+
+            // Published after the name, so whoever sees the id sees it.
+            ids.put(name, nextId);
+            return nextId++;
+        }
+    }
+
+    /**
+     * @return the id of {@code name}, or {@link #NONE} if it has never been
+     *         interned, in which case no table can contain it.
+     */
+    public static int find(String name) {
+        Integer id = ids.get(name);
+        return id == null ? NONE : id;
+    }
+
+    /**
+     * @return the name with the given id, always the same String instance.
+     */
+    public static String name(int id) {
+        return names[id];
+    }
+}
@@ -0,0 +1,87 @@
+package cool.structures;
+
+import java.util.Arrays;
+
+/**
+ * The layout of the objects of a class: a header of {@link #HEADER_WORDS}
+ * words (class tag, size, dispatch table pointer), then a word per
+ * attribute slot, inherited ones first. Built once per class, extending
+ * the parent's layout, so nothing about it is recomputed per access.
+ */
+public final class ObjectLayout {
+    public static final int HEADER_WORDS = 3;
+    public static final int WORD_SIZE = 4;
+
+    /**
+     * What an attribute holds before its initializer runs, as set in the
+     * prototype object.
+     */
+    public enum DefaultValue { INT, BOOL, STRING, VOID }
+
+    private final MemberTable fields;
+    private final DefaultValue[] defaults;
+
+    /**
+     * @param parent the layout of the parent class, or null for a root.
+     * @param fields the class's field table, whose attributes the layout
+     *               of the parent's is a prefix of.
+     */
+    ObjectLayout(ObjectLayout parent, MemberTable fields) {
+        this.fields = fields;
+
+        int inherited = parent == null ? 0 : parent.defaults.length;
+        defaults = parent == null
+                ? new DefaultValue[fields.slotCount()]
+                : Arrays.copyOf(parent.defaults, fields.slotCount());
+
+        for (int slot = inherited; slot < defaults.length; slot++)
+            defaults[slot] = defaultValue((FieldSymbol) fields.getSlot(slot));
+    }
+
+    private static DefaultValue defaultValue(FieldSymbol field) {
+        if (field.getTypeSymbol() == null)
+            return DefaultValue.VOID;
+
+        return switch (field.getTypeSymbol().getClassSymbol().getNameId()) {
+            case Names.INT -> DefaultValue.INT;
+            case Names.BOOL -> DefaultValue.BOOL;
+            case Names.STRING -> DefaultValue.STRING;
+            default -> DefaultValue.VOID;
+        };
+    }
+
+    public int attributeCount() {
+        return defaults.length;
+    }
+
+    /**
+     * @return the size of an object, in words, header included.
+     */
+    public int size() {
+        return HEADER_WORDS + defaults.length;
+    }
+
+    /**
+     * @return the slot of the attribute called {@code nameId}, or
+     *         {@link MemberTable#NO_SLOT}.
+     */
+    public int slot(int nameId) {
+        return fields.slot(nameId);
+    }
+
+    public FieldSymbol getAttribute(int slot) {
+        return (FieldSymbol) fields.getSlot(slot);
+    }
+
+    public DefaultValue getDefault(int slot) {
+        return defaults[slot];
+    }
+
+    /**
+     * @return the offset in bytes of the given attribute slot from the
+     *         start of the object.
+     */
+    public static int offset(int slot) {
+        return (HEADER_WORDS + slot) * WORD_SIZE;
+    }
+}
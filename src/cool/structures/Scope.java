@@ -3,7 +3,12 @@ package cool.structures;
 public interface Scope {
     public boolean add(Symbol sym);
     
-    public Symbol lookup(String str, boolean isField);
+    public Symbol lookup(int nameId, boolean isField);
+
+    public default Symbol lookup(String str, boolean isField) {
+        int nameId = Names.find(str);
+        return nameId == Names.NONE ? null : lookup(nameId, isField);
+    }
     
     public Scope getParent();
 }
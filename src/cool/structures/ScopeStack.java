@@ -0,0 +1,78 @@
+package cool.structures;
+
+import java.util.Arrays;
+
+/**
+ * The formals, let variables and case variables in scope at a point of a
+ * method or attribute body, innermost last. Bindings are kept in flat
+ * arrays, and each name id maps to its innermost binding, which links to
+ * the one it shadows, so a lookup is a single array access, and entering
+ * or leaving a scope allocates nothing but the binding itself.
+ *
+ * Scopes are left by resetting the stack to a {@link #mark()} taken on
+ * entering them.
+ */
+public class ScopeStack {
+    private Binding[] bindings = new Binding[16];
+    // Position + 1 of the binding each one shadows; 0 if none.
+    private int[] shadowed = new int[16];
+    // Position + 1 of the innermost binding of each name id; 0 if none.
+    private int[] innermost = new int[64];
+    private int size = 0;
+
+    /**
+     * Binds {@code symbol}'s name, shadowing any binding of it in scope.
+     *
+     * @return the new binding.
+     */
+    public Binding push(Symbol symbol, Binding.Kind kind, int slot) {
+        int nameId = symbol.getNameId();
+
+        if (size == bindings.length) {
+            bindings = Arrays.copyOf(bindings, size * 2);
+            shadowed = Arrays.copyOf(shadowed, size * 2);
+        }
+        if (nameId >= innermost.length)
+            innermost = Arrays.copyOf(innermost, Math.max(innermost.length * 2, nameId + 1));
+
+        var binding = new Binding(kind, slot, symbol);
+        bindings[size] = binding;
+        shadowed[size] = innermost[nameId];
+        innermost[nameId] = ++size;
+
+        return binding;
+    }
+
+    /**
+     * @return the innermost binding of the name, or null.
+     */
+    public Binding lookup(int nameId) {
+        if (nameId >= innermost.length || innermost[nameId] == 0)
+            return null;
+
+        return bindings[innermost[nameId] - 1];
+    }
+
+    /**
+     * @return the binding pushed last, or null if the stack is empty.
+     */
+    public Binding top() {
+        return size == 0 ? null : bindings[size - 1];
+    }
+
+    public int mark() {
+        return size;
+    }
+
+    /**
+     * Drops the bindings pushed since {@code mark} was taken, bringing
+     * back those they shadowed.
+     */
+    public void reset(int mark) {
+        while (size > mark) {
+            size--;
+            innermost[bindings[size].getSymbol().getNameId()] = shadowed[size];
+            bindings[size] = null;
+        }
+    }
+}
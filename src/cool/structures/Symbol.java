@@ -2,14 +2,20 @@ package cool.structures;
 
 public class Symbol {
     protected String name;
+    protected final int nameId;
     
     public Symbol(String name) {
         this.name = name;
+        this.nameId = Names.id(name);
     }
     
     public String getName() {
         return name;
     }
+
+    public int getNameId() {
+        return nameId;
+    }
     
     @Override
     public String toString() {
@@ -0,0 +1,107 @@
+package cool.structures;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The symbols defined in a scope, keyed by interned name id, in the order
+ * they were added. Lookups hash an int, so they neither hash strings nor
+ * box keys. Nothing is allocated until the first symbol is added, as most
+ * scopes hold few symbols or none.
+ */
+public class SymbolMap {
+    // Name id + 1 of each entry; 0 marks an empty position.
+    private int[] keys = null;
+    private Symbol[] symbols = null;
+    private List<Symbol> order = List.of();
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public Symbol get(int nameId) {
+        if (keys == null)
+            return null;
+
+        int mask = keys.length - 1;
+        int position = hash(nameId) & mask;
+
+        while (keys[position] != 0) {
+            if (keys[position] == nameId + 1)
+                return symbols[position];
+            position = (position + 1) & mask;
+        }
+
+        return null;
+    }
+
+    public boolean contains(int nameId) {
+        return get(nameId) != null;
+    }
+
+    /**
+     * Adds a symbol, unless one of the same name is already there.
+     *
+     * @return false if the name was taken.
+     */
+    public boolean add(Symbol sym) {
+        if (contains(sym.getNameId()))
+            return false;
+
+        if (keys == null) {
+            keys = new int[4];
+            symbols = new Symbol[4];
+            order = new ArrayList<>();
+        } else if ((order.size() + 1) * 2 > keys.length) {
+            grow();
+        }
+
+        insert(sym);
+        order.add(sym);
+
+        return true;
+    }
+
+    private void insert(Symbol sym) {
+        int mask = keys.length - 1;
+        int position = hash(sym.getNameId()) & mask;
+
+        while (keys[position] != 0)
+            position = (position + 1) & mask;
+
+        keys[position] = sym.getNameId() + 1;
+        symbols[position] = sym;
+    }
+
+    private void grow() {
+        keys = new int[keys.length * 2];
+        symbols = new Symbol[symbols.length * 2];
+
+        for (var sym : order)
+            insert(sym);
+    }
+
+    public void clear() {
+        keys = null;
+        symbols = null;
+        order = List.of();
+    }
+
+    public int size() {
+        return order.size();
+    }
+
+    /**
+     * @return the symbols, in the order they were added.
+     */
+    public List<Symbol> values() {
+        return Collections.unmodifiableList(order);
+    }
+
+    @Override
+    public String toString() {
+        return order.toString();
+    }
+}
@@ -1,138 +1,147 @@
 package cool.structures;
 
+import cool.ast.ASTNode;
 import cool.ast.expression.ObjectId;
 import cool.ast.feature.Method;
 import cool.ast.formal.Formal;
-import cool.compiler.Compiler;
-import cool.parser.CoolParser;
-import org.antlr.v4.runtime.ParserRuleContext;
+import cool.compiler.CompilationSession;
+import cool.compiler.Diagnostic;
 import org.antlr.v4.runtime.Token;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 public class SymbolTable {
-    public static Scope globals;
+    private final CompilationSession session;
+
+    private DefaultScope globals;
+
+    private ClassHierarchy hierarchy;
     
-    private static boolean semanticErrors;
+    private volatile boolean semanticErrors;
+
+    public SymbolTable(CompilationSession session) {
+        this.session = session;
+    }
     
-    public static void defineBasicClasses() {
-        globals = new DefaultScope(null);
+    public void defineBasicClasses() {
+        // The analysis cache needs to know what checking each class uses.
+        globals = new DefaultScope(null, session.getAnalysisCache() != null);
+        hierarchy = null;
         semanticErrors = false;
         
-        ClassSymbol objectClass = new ClassSymbol("Object");
+        ClassSymbol objectClass = new ClassSymbol("Object", globals);
         objectClass.setDirectParent(globals);
 
-        ClassSymbol ioClass = new ClassSymbol("IO");
+        ClassSymbol ioClass = new ClassSymbol("IO", globals);
         ioClass.setDirectParent(objectClass);
 
-        ClassSymbol intClass = new ClassSymbol("Int");
+        ClassSymbol intClass = new ClassSymbol("Int", globals);
         intClass.setDirectParent(objectClass);
 
-        ClassSymbol stringClass = new ClassSymbol("String");
+        ClassSymbol stringClass = new ClassSymbol("String", globals);
         stringClass.setDirectParent(objectClass);
 
-        ClassSymbol boolClass = new ClassSymbol("Bool");
+        ClassSymbol boolClass = new ClassSymbol("Bool", globals);
         boolClass.setDirectParent(objectClass);
 
-        Method abortMethod = new Method(null, null, null, new ArrayList<>(), null, null);
+        Method abortMethod = new Method(null, ASTNode.NO_FILE, null, new ArrayList<>(), null, null);
         MethodSymbol abortMethodSymbol = new MethodSymbol("abort", abortMethod);
-        abortMethodSymbol.setTypeSymbol(new ClassSymbolWrapper(objectClass, false));
+        abortMethodSymbol.setTypeSymbol(ClassSymbolWrapper.of(objectClass, false));
         abortMethodSymbol.setParent(objectClass);
         objectClass.addMethod(abortMethodSymbol);
 
-        Method type_nameMethod = new Method(null, null, null, new ArrayList<>(), null, null);
+        Method type_nameMethod = new Method(null, ASTNode.NO_FILE, null, new ArrayList<>(), null, null);
         MethodSymbol type_nameMethodSymbol = new MethodSymbol("type_name", type_nameMethod);
-        type_nameMethodSymbol.setTypeSymbol(new ClassSymbolWrapper(stringClass, false));
+        type_nameMethodSymbol.setTypeSymbol(ClassSymbolWrapper.of(stringClass, false));
         type_nameMethodSymbol.setParent(objectClass);
         objectClass.addMethod(type_nameMethodSymbol);
 
-        Method copyMethod = new Method(null, null, null, new ArrayList<>(), null, null);
+        Method copyMethod = new Method(null, ASTNode.NO_FILE, null, new ArrayList<>(), null, null);
         MethodSymbol copyMethodSymbol = new MethodSymbol("copy", copyMethod);
-        copyMethodSymbol.setTypeSymbol(new ClassSymbolWrapper(objectClass, true));
+        copyMethodSymbol.setTypeSymbol(ClassSymbolWrapper.of(objectClass, true));
         copyMethodSymbol.setParent(objectClass);
         objectClass.addMethod(copyMethodSymbol);
 
 
 
-        Formal out_stringFormal = new Formal(null, null, null, null);
+        Formal out_stringFormal = new Formal(null, ASTNode.NO_FILE, null, null);
         FormalSymbol out_stringFormalSymbol = new FormalSymbol("x");
-        out_stringFormalSymbol.setTypeSymbol(new ClassSymbolWrapper(stringClass, false));
+        out_stringFormalSymbol.setTypeSymbol(ClassSymbolWrapper.of(stringClass, false));
         out_stringFormal.setFormalSymbol(out_stringFormalSymbol);
 
-        Method out_stringMethod = new Method(null, null, null, new ArrayList<>(List.of(out_stringFormal)), null, null);
+        Method out_stringMethod = new Method(null, ASTNode.NO_FILE, null, new ArrayList<>(List.of(out_stringFormal)), null, null);
         MethodSymbol out_stringMethodSymbol = new MethodSymbol("out_string", out_stringMethod);
         out_stringFormal.setMethodSymbol(out_stringMethodSymbol);
 
-        out_stringMethodSymbol.setTypeSymbol(new ClassSymbolWrapper(ioClass, true));
+        out_stringMethodSymbol.setTypeSymbol(ClassSymbolWrapper.of(ioClass, true));
         out_stringMethodSymbol.setParent(ioClass);
         ioClass.addMethod(out_stringMethodSymbol);
 
-        Formal out_intFormal = new Formal(null, null, null, null);
+        Formal out_intFormal = new Formal(null, ASTNode.NO_FILE, null, null);
         FormalSymbol out_intFormalSymbol = new FormalSymbol("x");
-        out_intFormalSymbol.setTypeSymbol(new ClassSymbolWrapper(intClass, false));
+        out_intFormalSymbol.setTypeSymbol(ClassSymbolWrapper.of(intClass, false));
         out_intFormal.setFormalSymbol(out_intFormalSymbol);
 
-        Method out_intMethod = new Method(null, null, null, new ArrayList<>(List.of(out_intFormal)), null, null);
+        Method out_intMethod = new Method(null, ASTNode.NO_FILE, null, new ArrayList<>(List.of(out_intFormal)), null, null);
         MethodSymbol out_intMethodSymbol = new MethodSymbol("out_int", out_intMethod);
         out_intFormal.setMethodSymbol(out_intMethodSymbol);
 
-        out_intMethodSymbol.setTypeSymbol(new ClassSymbolWrapper(ioClass, true));
+        out_intMethodSymbol.setTypeSymbol(ClassSymbolWrapper.of(ioClass, true));
         out_intMethodSymbol.setParent(ioClass);
         ioClass.addMethod(out_intMethodSymbol);
 
-        Method in_stringMethod = new Method(null, null, null, new ArrayList<>(), null, null);
+        Method in_stringMethod = new Method(null, ASTNode.NO_FILE, null, new ArrayList<>(), null, null);
         MethodSymbol in_stringMethodSymbol = new MethodSymbol("in_string", in_stringMethod);
-        in_stringMethodSymbol.setTypeSymbol(new ClassSymbolWrapper(stringClass, false));
+        in_stringMethodSymbol.setTypeSymbol(ClassSymbolWrapper.of(stringClass, false));
         in_stringMethodSymbol.setParent(ioClass);
         ioClass.addMethod(in_stringMethodSymbol);
 
-        Method in_intMethod = new Method(null, null, null, new ArrayList<>(), null, null);
+        Method in_intMethod = new Method(null, ASTNode.NO_FILE, null, new ArrayList<>(), null, null);
         MethodSymbol in_intMethodSymbol = new MethodSymbol("in_int", in_intMethod);
-        in_intMethodSymbol.setTypeSymbol(new ClassSymbolWrapper(intClass, false));
+        in_intMethodSymbol.setTypeSymbol(ClassSymbolWrapper.of(intClass, false));
         in_intMethodSymbol.setParent(ioClass);
         ioClass.addMethod(in_intMethodSymbol);
 
 
 
-        Method lengthMethod = new Method(null, null, null, new ArrayList<>(), null, null);
+        Method lengthMethod = new Method(null, ASTNode.NO_FILE, null, new ArrayList<>(), null, null);
         MethodSymbol lengthMethodSymbol = new MethodSymbol("length", lengthMethod);
-        lengthMethodSymbol.setTypeSymbol(new ClassSymbolWrapper(intClass, false));
+        lengthMethodSymbol.setTypeSymbol(ClassSymbolWrapper.of(intClass, false));
         lengthMethodSymbol.setParent(stringClass);
         stringClass.addMethod(lengthMethodSymbol);
 
-        Formal concatFormal = new Formal(null, null, null, null);
+        Formal concatFormal = new Formal(null, ASTNode.NO_FILE, null, null);
         FormalSymbol concatFormalSymbol = new FormalSymbol("s");
-        concatFormalSymbol.setTypeSymbol(new ClassSymbolWrapper(stringClass, false));
+        concatFormalSymbol.setTypeSymbol(ClassSymbolWrapper.of(stringClass, false));
         concatFormal.setFormalSymbol(concatFormalSymbol);
 
-        Method concatMethod = new Method(null, null, null, new ArrayList<>(List.of(concatFormal)), null, null);
+        Method concatMethod = new Method(null, ASTNode.NO_FILE, null, new ArrayList<>(List.of(concatFormal)), null, null);
         MethodSymbol concatMethodSymbol = new MethodSymbol("concat", concatMethod);
         concatFormal.setMethodSymbol(concatMethodSymbol);
 
-        concatMethodSymbol.setTypeSymbol(new ClassSymbolWrapper(stringClass, false));
+        concatMethodSymbol.setTypeSymbol(ClassSymbolWrapper.of(stringClass, false));
         concatMethodSymbol.setParent(stringClass);
         stringClass.addMethod(concatMethodSymbol);
 
 
-        Formal substrFormal1 = new Formal(null, null, null, null);
+        Formal substrFormal1 = new Formal(null, ASTNode.NO_FILE, null, null);
         FormalSymbol substrFormalSymbol1 = new FormalSymbol("i");
-        substrFormalSymbol1.setTypeSymbol(new ClassSymbolWrapper(intClass, false));
+        substrFormalSymbol1.setTypeSymbol(ClassSymbolWrapper.of(intClass, false));
         substrFormal1.setFormalSymbol(substrFormalSymbol1);
 
-        Formal substrFormal2 = new Formal(null, null, null, null);
+        Formal substrFormal2 = new Formal(null, ASTNode.NO_FILE, null, null);
         FormalSymbol substrFormalSymbol2 = new FormalSymbol("l");
-        substrFormalSymbol2.setTypeSymbol(new ClassSymbolWrapper(intClass, false));
+        substrFormalSymbol2.setTypeSymbol(ClassSymbolWrapper.of(intClass, false));
         substrFormal2.setFormalSymbol(substrFormalSymbol2);
 
-        Method substrMethod = new Method(null, null, null, new ArrayList<>(List.of(substrFormal1, substrFormal2)), null, null);
+        Method substrMethod = new Method(null, ASTNode.NO_FILE, null, new ArrayList<>(List.of(substrFormal1, substrFormal2)), null, null);
         MethodSymbol substrMethodSymbol = new MethodSymbol("substr", substrMethod);
         substrFormal1.setMethodSymbol(substrMethodSymbol);
         substrFormal2.setMethodSymbol(substrMethodSymbol);
 
-        substrMethodSymbol.setTypeSymbol(new ClassSymbolWrapper(stringClass, false));
+        substrMethodSymbol.setTypeSymbol(ClassSymbolWrapper.of(stringClass, false));
         substrMethodSymbol.setParent(stringClass);
         stringClass.addMethod(substrMethodSymbol);
 
@@ -144,36 +153,97 @@ public class SymbolTable {
     }
     
     /**
-     * Displays a semantic error message.
+     * Starts over from the globals of an earlier compilation, keeping only
+     * its basic classes, so that the classes kept from that compilation
+     * still refer to the same ones.
+     */
+    public void reuseBasicClasses(Scope previousGlobals) {
+        globals = (DefaultScope) previousGlobals;
+        hierarchy = null;
+        semanticErrors = false;
+
+        var basicClasses = new ArrayList<ClassSymbol>();
+        for (int nameId : new int[] { Names.OBJECT, Names.IO, Names.INT, Names.STRING, Names.BOOL })
+            basicClasses.add((ClassSymbol) globals.lookup(nameId, false));
+
+        globals.clear();
+        for (var basicClass : basicClasses) {
+            basicClass.forgetHierarchy();
+            globals.add(basicClass);
+        }
+    }
+
+    /**
+     * Reports a semantic error.
      * 
-     * @param ctx Used to determine the enclosing class context of this error,
-     *            which knows the file name in which the class was defined.
+     * @param fileId Identifies the file in which the error occurred.
      * @param info Used for line and column information.
      * @param str The error message.
      */
-    public static void error(ParserRuleContext ctx, Token info, String str) {
-        while (! (ctx.getParent() instanceof CoolParser.ProgramContext))
-            ctx = ctx.getParent();
-        
-        String message = "\"" + new File(Compiler.fileNames.get(ctx)).getName()
-                + "\", line " + info.getLine()
-                + ":" + (info.getCharPositionInLine() + 1)
-                + ", Semantic error: " + str;
-        
-        System.err.println(message);
-        
+    public void error(int fileId, Token info, String str) {
+        session.getDiagnostics().report(new Diagnostic(fileId, info.getLine(),
+                info.getCharPositionInLine() + 1, Diagnostic.Kind.SEMANTIC, str));
+
         semanticErrors = true;
     }
     
-    public static void error(String str) {
-        String message = "Semantic error: " + str;
-        
-        System.err.println(message);
-        
+    /**
+     * Reports again errors found by an earlier compilation.
+     */
+    public void error(List<Diagnostic> diagnostics) {
+        if (diagnostics.isEmpty())
+            return;
+
+        diagnostics.forEach(session.getDiagnostics()::report);
+        semanticErrors = true;
+    }
+
+    public void error(String str) {
+        session.getDiagnostics().report(new Diagnostic(Diagnostic.NO_FILE, 0, 0, Diagnostic.Kind.SEMANTIC, str));
+
         semanticErrors = true;
     }
     
-    public static boolean hasSemanticErrors() {
+    public Scope getGlobals() {
+        return globals;
+    }
+
+    /**
+     * Numbers the inheritance tree and flattens the members of each class,
+     * once every class's parent and members are known.
+     */
+    public void buildHierarchy() {
+        var classes = new ArrayList<ClassSymbol>();
+        for (Symbol symbol : globals.getSymbols())
+            if (symbol instanceof ClassSymbol classSymbol)
+                classes.add(classSymbol);
+
+        hierarchy = new ClassHierarchy((ClassSymbol) globals.lookup(Names.OBJECT, false), classes);
+        for (var classSymbol : hierarchy.getClasses())
+            classSymbol.buildMemberTables();
+    }
+
+    /**
+     * @return the inheritance tree, or null before it has been built.
+     */
+    public ClassHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    /**
+     * @return the least upper bound of two classes, the type of a
+     *         conditional whose branches are of these classes.
+     */
+    public ClassSymbol join(ClassSymbol first, ClassSymbol second) {
+        // Without the hierarchy, as after inheritance errors, the walk to
+        // the bound starts from the deeper class.
+        if (first.countParents() > second.countParents())
+            return first.leastUpperBound(second);
+        else
+            return second.leastUpperBound(first);
+    }
+
+    public boolean hasSemanticErrors() {
         return semanticErrors;
     }
 }
@@ -0,0 +1,171 @@
+import cool.compiler.CompileServer;
+import cool.structures.Names;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that a compile server answering two connections at once, each
+ * keeping its analysis between requests, answers as a fresh server would
+ * when the interned names are forgotten between their requests.
+ *
+ * The server is given a small name limit, which the program of the second
+ * connection exceeds by itself, so every one of its requests makes the
+ * server forget the names and both connections' analyses. Run from src,
+ * after building:
+ *
+ *   java -cp <classes>:cool/antlr-4.13.0-complete.jar tests/server/InterleavedConnections.java
+ */
+public class InterleavedConnections {
+    private static final int NAME_LIMIT = 100;
+
+    private static final String[] SMALL = {
+            "class Main inherits IO {\n  main() : Object { out_int(new Foo.f(2)) };\n};\n"
+                    + "class Foo {\n  x : Int <- 3;\n  f(y : Int) : Int { x + y };\n};\n",
+            "class Main inherits IO {\n  main() : Object { out_int(new Foo.f(2)) };\n};\n"
+                    + "class Foo {\n  x : Int <- 3;\n  f(y : Int) : Int { x * y + 1 };\n};\n",
+            "class Main inherits IO {\n  main() : Object { out_int(new Foo.f(2)) };\n};\n"
+                    + "class Foo {\n  x : Int <- \"3\";\n  f(y : Int) : Int { x * y + 1 };\n};\n",
+    };
+
+    public static void main(String[] args) throws Exception {
+        Path directory = Files.createTempDirectory("interleaved");
+        Path small = directory.resolve("small.cl");
+        Path large = directory.resolve("large.cl");
+
+        var server = new CompileServer(NAME_LIMIT);
+        var first = new Connection(server);
+        var second = new Connection(server);
+        int failures = 0;
+
+        for (int step = 0; step < 6; step++) {
+            // The second request of the first connection reuses the
+            // analysis of the first, as it stays under the limit.
+            for (int edit = 0; edit < 2; edit++) {
+                Files.writeString(small, SMALL[(step + edit) % SMALL.length]);
+                failures += check("small, step " + step, first.request(small), fresh(small));
+            }
+
+            Files.writeString(large, largeProgram(NAME_LIMIT + step));
+            var reply = second.request(large);
+            if (Names.find("Large") != Names.NONE) {
+                System.out.println("names not forgotten at step " + step);
+                failures++;
+            }
+            failures += check("large, step " + step, reply, fresh(large));
+
+            // Interned as by some other compilation, so the names of the
+            // first connection's program get other ids than before the
+            // reset, and an analysis kept across it would show.
+            Names.id("Other" + step);
+        }
+
+        first.close();
+        second.close();
+
+        System.out.println(failures == 0 ? "ok" : failures + " failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * @return a program with a class holding {@code methods} methods, each
+     *         with its own name, so compiling it interns that many names.
+     */
+    private static String largeProgram(int methods) {
+        var text = new StringBuilder("class Main inherits IO {\n  main() : Object { out_int(new Large.m0()) };\n};\n");
+        text.append("class Large {\n");
+        for (int i = 0; i < methods; i++)
+            text.append("  m").append(i).append("() : Int { ").append(i).append(" };\n");
+        text.append("};\n");
+
+        return text.toString();
+    }
+
+    /**
+     * @return the reply of a server that never compiled anything before.
+     */
+    private static List<String> fresh(Path file) throws IOException {
+        var out = new ByteArrayOutputStream();
+        new CompileServer().serve(new ByteArrayInputStream((file + "\n").getBytes(StandardCharsets.UTF_8)), out);
+
+        return Connection.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static int check(String what, List<String> got, List<String> expected) {
+        if (got.equals(expected))
+            return 0;
+
+        System.out.println(what + ": got " + got.get(2) + ", expected " + expected.get(2));
+        System.out.println(got.get(1));
+        return 1;
+    }
+
+    /**
+     * A connection to {@code server}, served by a thread of its own.
+     */
+    private static class Connection {
+        private final PipedOutputStream requests = new PipedOutputStream();
+        private final PipedInputStream replies = new PipedInputStream(1 << 20);
+        private final Thread thread;
+
+        Connection(CompileServer server) throws IOException {
+            var in = new PipedInputStream(requests);
+            var out = new PipedOutputStream(replies);
+
+            thread = new Thread(() -> {
+                try (out) {
+                    server.serve(in, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            thread.start();
+        }
+
+        List<String> request(Path file) throws IOException {
+            requests.write((file + "\n").getBytes(StandardCharsets.UTF_8));
+            requests.flush();
+
+            return read(replies);
+        }
+
+        void close() throws IOException, InterruptedException {
+            requests.close();
+            thread.join();
+        }
+
+        /**
+         * @return the assembly, diagnostics and status of one reply.
+         */
+        static List<String> read(InputStream in) throws IOException {
+            var sections = new ArrayList<String>();
+            for (int i = 0; i < 3; i++) {
+                String[] header = readLine(in).split(" ");
+                if (header[0].equals("status")) {
+                    sections.add(header[1]);
+                } else {
+                    byte[] content = in.readNBytes(Integer.parseInt(header[1]));
+                    sections.add(new String(content, StandardCharsets.UTF_8));
+                }
+            }
+
+            return sections;
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            var line = new ByteArrayOutputStream();
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0)
+                    throw new EOFException("reply cut short");
+                line.write(c);
+            }
+
+            return line.toString(StandardCharsets.UTF_8);
+        }
+    }
+}